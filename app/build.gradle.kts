@@ -13,7 +13,10 @@ android {
         versionCode = 1
         versionName = "0.1.2"
 
-        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        // AndroidBenchmarkRunner 继承自 AndroidJUnitRunner，普通仪器测试照常运行
+        testInstrumentationRunner = "androidx.benchmark.junit4.AndroidBenchmarkRunner"
+        // 基准测试在 debug 包上运行，结果只用于前后对比
+        testInstrumentationRunnerArguments["androidx.benchmark.suppressErrors"] = "DEBUGGABLE,EMULATOR"
     }
 
     buildTypes {
@@ -24,6 +27,12 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // 与 release 相同但用 debug 签名，供 :macrobenchmark 测量启动耗时
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
     }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_1_8
@@ -32,13 +41,17 @@ android {
 }
 
 dependencies {
+    implementation(project(":core"))
     implementation("org.greenrobot:eventbus:3.3.1")
     implementation("androidx.work:work-runtime:2.8.0")
     implementation(libs.appcompat)
     implementation(libs.material)
     implementation(libs.activity)
     implementation(libs.constraintlayout)
+    implementation(libs.recyclerview)
+    implementation(libs.exifinterface)
     testImplementation(libs.junit)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
+    androidTestImplementation(libs.benchmark.junit4)
 }
\ No newline at end of file
@@ -0,0 +1,90 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertNotNull;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * 上传前图片转换的耗时：解码、缩放和重新编码都依赖系统的 Bitmap 实现，只能在设备上测量。
+ * ./gradlew :app:connectedDebugAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=cn.sab1e.autosync.ImageTransformerBenchmark
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageTransformerBenchmark {
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private Context context;
+    private File source;
+
+    @Before
+    public void createPhoto() throws IOException {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        // 12MP 的 JPEG，大致相当于手机拍摄的照片；随机色块让编码器无法取巧
+        Bitmap bitmap = Bitmap.createBitmap(4000, 3000, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint();
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            paint.setColor(Color.rgb(random.nextInt(256), random.nextInt(256), random.nextInt(256)));
+            float x = random.nextInt(4000);
+            float y = random.nextInt(3000);
+            canvas.drawRect(x, y, x + random.nextInt(400), y + random.nextInt(400), paint);
+        }
+        source = new File(context.getCacheDir(), "benchmark.jpg");
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 95, out);
+        }
+        bitmap.recycle();
+    }
+
+    @After
+    public void deletePhoto() {
+        source.delete();
+    }
+
+    @Test
+    public void transformToJpeg() throws Exception {
+        measure(ImageTransformer.FORMAT_JPEG);
+    }
+
+    @Test
+    public void transformToWebp() throws Exception {
+        measure(ImageTransformer.FORMAT_WEBP);
+    }
+
+    private void measure(String format) throws Exception {
+        ImageTransformer transformer = new ImageTransformer(context.getContentResolver(), context.getCacheDir(),
+                2048, format, 85, true);
+        Uri uri = Uri.fromFile(source);
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ImageTransformer.Result result = transformer.transform(uri, source.getName(), source.length());
+            state.pauseTiming();
+            assertNotNull(result);
+            result.getFile().delete();
+            state.resumeTiming();
+        }
+    }
+}
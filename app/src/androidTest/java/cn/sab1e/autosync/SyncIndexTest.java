@@ -0,0 +1,201 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * 在设备上用单独的数据库文件检查同步索引：升级、崩溃恢复、上传记录和清理。
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncIndexTest {
+
+    private static final String DATABASE_NAME = "sync_index_test.db";
+    private static final String TREE = "content://tree/primary%3ADCIM";
+
+    private Context context;
+    private SyncIndex index;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (index != null) {
+            index.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void upgradeFromVersion5KeepsFileStatesAndAddsUploads() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DATABASE_NAME), null);
+        createVersion5Tables(db);
+        ContentValues row = new ContentValues();
+        row.put("tree_uri", TREE);
+        row.put("document_id", "a.jpg");
+        row.put("size", 100);
+        row.put("last_modified", 1000);
+        row.put("state", UploadJournal.STATE_DELETED);
+        row.put("updated_at", 1000);
+        db.insert("files", null, row);
+        db.setVersion(5);
+        db.close();
+
+        index = new SyncIndex(context, DATABASE_NAME);
+
+        // 旧记录保留：未变化的已删除文件不再上传
+        assertTrue(index.merge(TREE, Collections.singletonList(entry("a.jpg", 100))).isEmpty());
+        assertTrue(index.loadUploads(Long.MAX_VALUE, 10).isEmpty());
+        index.markUploaded(entry("b.jpg", 100), UploadResponse.of(200, "https://img.example/b.jpg", "b"));
+        List<SyncIndex.UploadRecord> uploads = index.loadUploads(Long.MAX_VALUE, 10);
+        assertEquals(1, uploads.size());
+        assertEquals("https://img.example/b.jpg", uploads.get(0).getUrl());
+    }
+
+    @Test
+    public void upgradeFromVersion6GuessesTypeOfExistingUploads() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(context.getDatabasePath(DATABASE_NAME), null);
+        createVersion5Tables(db);
+        db.execSQL("CREATE TABLE uploads (_id INTEGER PRIMARY KEY AUTOINCREMENT, tree_uri TEXT NOT NULL, "
+                + "document_id TEXT NOT NULL, file_name TEXT, size INTEGER NOT NULL, remote_id TEXT, remote_url TEXT, "
+                + "thumb_url TEXT, delete_url TEXT, message TEXT, uploaded_at INTEGER NOT NULL)");
+        for (String name : Arrays.asList("a.jpg", "clip.mp4")) {
+            ContentValues upload = new ContentValues();
+            upload.put("tree_uri", TREE);
+            upload.put("document_id", name);
+            upload.put("file_name", name);
+            upload.put("size", 100);
+            upload.put("remote_url", "https://img.example/" + name);
+            upload.put("uploaded_at", 1000);
+            db.insert("uploads", null, upload);
+        }
+        db.setVersion(6);
+        db.close();
+
+        index = new SyncIndex(context, DATABASE_NAME);
+
+        List<SyncIndex.UploadRecord> uploads = index.loadUploads(Long.MAX_VALUE, 10);
+        assertEquals(2, uploads.size());
+        assertNull(uploads.get(0).getPreviewUrl());
+        assertEquals("https://img.example/a.jpg", uploads.get(1).getPreviewUrl());
+    }
+
+    @Test
+    public void previewFallsBackToOriginalOnlyForImages() {
+        index = new SyncIndex(context, DATABASE_NAME);
+        SyncEntry photo = entry("a.jpg", 100);
+        SyncEntry video = new SyncEntry(TREE, "b", TREE + "/document/b", "VID_0001", "video/mp4", 100, 1000,
+                System.currentTimeMillis());
+        index.merge(TREE, Arrays.asList(photo, video));
+
+        index.markUploaded(photo, UploadResponse.of(200, "https://img.example/a.jpg", "a"));
+        index.markUploaded(video, UploadResponse.of(200, "https://img.example/b.mp4", "b"));
+
+        List<SyncIndex.UploadRecord> uploads = index.loadUploads(Long.MAX_VALUE, 10);
+        assertEquals("video/mp4", uploads.get(0).getMimeType());
+        // 视频没有缩略图时不下载原文件
+        assertNull(uploads.get(0).getPreviewUrl());
+        assertEquals("https://img.example/a.jpg", uploads.get(1).getPreviewUrl());
+    }
+
+    @Test
+    public void recoverResetsUploadingAndReturnsUndeleted() {
+        index = new SyncIndex(context, DATABASE_NAME);
+        SyncEntry interrupted = entry("a.jpg", 100);
+        SyncEntry uploaded = entry("b.jpg", 200);
+        index.merge(TREE, Arrays.asList(interrupted, uploaded));
+        index.setState(TREE, "a.jpg", UploadJournal.STATE_UPLOADING);
+        index.markUploaded(uploaded, UploadResponse.of(200, "https://img.example/b.jpg", "remote-b"));
+
+        List<UploadJournal.JournalEntry> undeleted = index.recover();
+
+        assertEquals(1, undeleted.size());
+        assertEquals("b.jpg", undeleted.get(0).getDocumentId());
+        assertEquals("remote-b", undeleted.get(0).getRemoteId());
+        // a 回到待上传，b 等待补做删除，不会再次上传
+        assertEquals(Collections.singletonList(interrupted), index.merge(TREE, Arrays.asList(interrupted, uploaded)));
+    }
+
+    @Test
+    public void markUploadedRecordsServerResponseOnlyWhenThereIsOne() {
+        index = new SyncIndex(context, DATABASE_NAME);
+        SyncEntry sent = entry("a.jpg", 100);
+        SyncEntry duplicate = entry("b.jpg", 100);
+        index.merge(TREE, Arrays.asList(sent, duplicate));
+
+        index.markUploaded(sent, UploadResponse.of(200, "https://img.example/a.jpg", "a"));
+        index.markUploaded(duplicate, null);
+
+        List<SyncIndex.UploadRecord> uploads = index.loadUploads(Long.MAX_VALUE, 10);
+        assertEquals(1, uploads.size());
+        assertEquals("a.jpg", uploads.get(0).getFileName());
+        assertEquals("https://img.example/a.jpg", uploads.get(0).getUrl());
+        assertTrue(index.merge(TREE, Arrays.asList(sent, duplicate)).isEmpty());
+    }
+
+    @Test
+    public void pruneForgetsFilesNoLongerInTheDirectory() {
+        index = new SyncIndex(context, DATABASE_NAME);
+        SyncEntry kept = entry("a.jpg", 100);
+        SyncEntry removed = entry("b.jpg", 100);
+        index.merge(TREE, Arrays.asList(kept, removed));
+        index.setState(TREE, "a.jpg", UploadJournal.STATE_DELETED);
+        index.setState(TREE, "b.jpg", UploadJournal.STATE_DELETED);
+
+        index.prune(TREE, new HashSet<>(Collections.singletonList("a.jpg")));
+
+        // b 的记录已删除，同名文件再次出现时当作新文件
+        assertEquals(Collections.singletonList(removed), index.merge(TREE, Arrays.asList(kept, removed)));
+    }
+
+    @Test
+    public void mergeHandlesMoreDocumentsThanOneQueryCanBind() {
+        index = new SyncIndex(context, DATABASE_NAME);
+        List<SyncEntry> batch = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            batch.add(entry("IMG_" + i + ".jpg", i));
+        }
+        assertEquals(1200, index.merge(TREE, batch).size());
+        for (SyncEntry entry : batch) {
+            index.setState(TREE, entry.getDocumentId(), UploadJournal.STATE_DELETED);
+        }
+
+        assertTrue(index.merge(TREE, batch).isEmpty());
+    }
+
+    private static void createVersion5Tables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE files (tree_uri TEXT NOT NULL, document_id TEXT NOT NULL, size INTEGER NOT NULL, "
+                + "last_modified INTEGER NOT NULL, state INTEGER NOT NULL, updated_at INTEGER NOT NULL, "
+                + "upload_session TEXT, upload_offset INTEGER NOT NULL DEFAULT 0, remote_id TEXT, "
+                + "attempts INTEGER NOT NULL DEFAULT 0, next_attempt_at INTEGER NOT NULL DEFAULT 0, last_error TEXT, "
+                + "PRIMARY KEY (tree_uri, document_id))");
+        db.execSQL("CREATE TABLE content_hashes (sha256 TEXT PRIMARY KEY, size INTEGER NOT NULL, uploaded_at INTEGER NOT NULL)");
+    }
+
+    private static SyncEntry entry(String documentId, long size) {
+        return new SyncEntry(TREE, documentId, TREE + "/document/" + documentId, documentId, "image/jpeg",
+                size, 1000, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,31 @@
+package cn.sab1e.autosync;
+
+import android.app.Application;
+import android.util.Log;
+
+/**
+ * 进程启动时把同步引擎的日志转到 logcat，Worker 在任何组件之前启动时也能看到。
+ */
+public class AutoSyncApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        SyncLog.setSink(new SyncLog.Sink() {
+            @Override
+            public void debug(String tag, String message) {
+                Log.d(tag, message);
+            }
+
+            @Override
+            public void info(String tag, String message) {
+                Log.i(tag, message);
+            }
+
+            @Override
+            public void error(String tag, String message, Throwable error) {
+                Log.e(tag, message, error);
+            }
+        });
+    }
+}
@@ -0,0 +1,177 @@
+package cn.sab1e.autosync;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 用 buildChildDocumentsUriUsingTree 查询读出目录下所有文档的 ID、名称、类型、大小和修改时间，
+ * 代替 DocumentFile.listFiles() 之后再逐个 getName() 的做法（每次调用都是一次 IPC）。
+ * 递归遍历时每个子目录是一次独立的查询，由固定大小的线程池并行执行；
+ * 每读完一个目录就把其中的文件交给调用方，上传不必等整棵目录树遍历完。
+ */
+public class DirectoryScanner implements SourceScanner {
+
+    private static final String[] PROJECTION = {
+            DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+            DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+            DocumentsContract.Document.COLUMN_MIME_TYPE,
+            DocumentsContract.Document.COLUMN_SIZE,
+            DocumentsContract.Document.COLUMN_LAST_MODIFIED
+    };
+    // 查询在 DocumentsProvider 的 binder 线程上执行，并发太高反而排队
+    public static final int DEFAULT_PARALLELISM = 3;
+    private static final long STOP_POLL_MILLIS = 200;
+
+    private final ContentResolver resolver;
+    private final int parallelism;
+
+    public DirectoryScanner(Context context) {
+        this(context, DEFAULT_PARALLELISM);
+    }
+
+    public DirectoryScanner(Context context, int parallelism) {
+        this.resolver = context.getApplicationContext().getContentResolver();
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * 已开始的查询在 stopped 返回 true 后读到下一行即停止。
+     */
+    @Override
+    public boolean walk(String treeUri, boolean recursive, BooleanSupplier stopped, Sink sink) throws InterruptedException {
+        return walk(Uri.parse(treeUri), recursive, stopped, sink);
+    }
+
+    private boolean walk(Uri treeUri, boolean recursive, BooleanSupplier stopped, Sink sink) throws InterruptedException {
+        Walk walk = new Walk(treeUri, recursive, stopped, sink);
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            submit(executor, walk, DocumentsContract.getTreeDocumentId(treeUri));
+            while (!walk.done.await(STOP_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stopped.getAsBoolean()) {
+                    // 排队中的目录不再查询，正在读的游标会自己退出
+                    walk.complete.set(false);
+                    executor.shutdownNow();
+                    break;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return false;
+        } finally {
+            executor.shutdownNow();
+        }
+        return walk.complete.get();
+    }
+
+    private void submit(ExecutorService executor, Walk walk, String documentId) {
+        walk.pending.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    if (walk.stopped.getAsBoolean()) {
+                        walk.complete.set(false);
+                        return;
+                    }
+                    List<String> directories = scanDirectory(walk, documentId);
+                    if (directories == null) {
+                        walk.complete.set(false);
+                        return;
+                    }
+                    // 先登记子目录再结束当前任务，计数不会提前归零
+                    for (String directory : directories) {
+                        submit(executor, walk, directory);
+                    }
+                } catch (RuntimeException e) {
+                    // 查询被取消或 sink 出错，这次遍历不完整
+                    walk.complete.set(false);
+                } finally {
+                    if (walk.pending.decrementAndGet() == 0) {
+                        walk.done.countDown();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已停止，线程池不再接收新目录
+            walk.complete.set(false);
+            if (walk.pending.decrementAndGet() == 0) {
+                walk.done.countDown();
+            }
+        }
+    }
+
+    /**
+     * 读取一个目录，文件交给 sink，返回需要继续遍历的子目录。目录不可读时返回 null。
+     */
+    private List<String> scanDirectory(Walk walk, String parentDocumentId) {
+        Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(walk.treeUri, parentDocumentId);
+        List<String> directories = new ArrayList<>();
+        try (Cursor cursor = resolver.query(childrenUri, PROJECTION, null, null, null)) {
+            if (cursor == null) {
+                return null;
+            }
+            List<SyncEntry> entries = new ArrayList<>(cursor.getCount());
+            long queriedAt = System.currentTimeMillis();
+            while (cursor.moveToNext()) {
+                if (walk.stopped.getAsBoolean()) {
+                    walk.complete.set(false);
+                    break;
+                }
+                String documentId = cursor.getString(0);
+                String mimeType = cursor.getString(2);
+                if (DocumentsContract.Document.MIME_TYPE_DIR.equals(mimeType)) {
+                    if (walk.recursive) {
+                        directories.add(documentId);
+                    }
+                    continue;
+                }
+                // 名称可能为空（部分 provider 的临时文件），交给调用方的筛选条件处理
+                entries.add(new SyncEntry(
+                        walk.treeUri.toString(),
+                        documentId,
+                        DocumentsContract.buildDocumentUriUsingTree(walk.treeUri, documentId).toString(),
+                        cursor.getString(1),
+                        mimeType,
+                        cursor.isNull(3) ? -1 : cursor.getLong(3),
+                        cursor.isNull(4) ? 0 : cursor.getLong(4),
+                        queriedAt));
+            }
+            if (!entries.isEmpty()) {
+                walk.sink.accept(entries);
+            }
+            return directories;
+        } catch (SecurityException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static class Walk {
+        final Uri treeUri;
+        final boolean recursive;
+        final BooleanSupplier stopped;
+        final Sink sink;
+        final AtomicInteger pending = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicBoolean complete = new AtomicBoolean(true);
+
+        Walk(Uri treeUri, boolean recursive, BooleanSupplier stopped, Sink sink) {
+            this.treeUri = treeUri;
+            this.recursive = recursive;
+            this.stopped = stopped;
+            this.sink = sink;
+        }
+    }
+}
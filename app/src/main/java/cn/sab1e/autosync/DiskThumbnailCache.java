@@ -0,0 +1,134 @@
+package cn.sab1e.autosync;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 缩略图的磁盘缓存，按总大小封顶，超出时淘汰最久没有读取的文件。
+ * 文件名是 URL 的 SHA-256，读取时更新修改时间，重启后按修改时间恢复访问顺序，淘汰顺序不会因为进程重启而丢失。
+ * 写入先落到临时文件再改名，写到一半被杀死也不会留下半张图片。
+ */
+public class DiskThumbnailCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+    // 文件名 -> 字节数，按访问顺序排列，最前面的最久没有读取
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private boolean loaded;
+
+    public DiskThumbnailCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 返回缓存的文件，没有时返回 null。
+     */
+    public synchronized File get(String url) {
+        ensureLoaded();
+        String key = keyOf(url);
+        if (entries.get(key) == null) {
+            return null;
+        }
+        File file = new File(directory, key);
+        if (!file.isFile()) {
+            totalBytes -= entries.remove(key);
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * 写入一条缓存并淘汰超出上限的旧文件，返回缓存的文件。最新写入的一条不会被淘汰。
+     */
+    public File put(String url, byte[] data) throws IOException {
+        String key = keyOf(url);
+        File temp = new File(directory, key + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+        synchronized (this) {
+            ensureLoaded();
+        }
+        try (OutputStream outputStream = new FileOutputStream(temp)) {
+            outputStream.write(data);
+        }
+        File file = new File(directory, key);
+        synchronized (this) {
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("无法写入缩略图缓存: " + file);
+            }
+            Long previous = entries.put(key, file.length());
+            if (previous != null) {
+                totalBytes -= previous;
+            }
+            totalBytes += file.length();
+            trim();
+        }
+        return file;
+    }
+
+    public synchronized void remove(String url) {
+        ensureLoaded();
+        String key = keyOf(url);
+        Long size = entries.remove(key);
+        if (size != null) {
+            totalBytes -= size;
+            new File(directory, key).delete();
+        }
+    }
+
+    public synchronized long size() {
+        ensureLoaded();
+        return totalBytes;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            new File(directory, eldest.getKey()).delete();
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * 第一次使用时扫描缓存目录，清理上次没有写完的临时文件。
+     */
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        directory.mkdirs();
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            } else if (file.isFile()) {
+                entries.put(file.getName(), file.length());
+                totalBytes += file.length();
+            }
+        }
+        trim();
+    }
+
+    static String keyOf(String url) {
+        return ContentHasher.toHex(ContentHasher.newDigest().digest(url.getBytes(StandardCharsets.UTF_8)));
+    }
+}
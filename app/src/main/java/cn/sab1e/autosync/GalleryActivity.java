@@ -0,0 +1,214 @@
+package cn.sab1e.autosync;
+
+import android.content.ActivityNotFoundException;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Bundle;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.EdgeToEdge;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.graphics.Insets;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.WindowInsetsCompat;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 已上传文件的相册，图片来自服务器返回的地址。上传记录按页从 SyncIndex 读取，滑到已加载部分的末尾前读下一页；
+ * 缩略图由 {@link ThumbnailLoader} 加载，滑动时提前加载滑动方向上的下几行。
+ */
+public class GalleryActivity extends AppCompatActivity {
+
+    private static final int PAGE_SIZE = 300;
+    // 提前加载的格子数，约五行
+    private static final int PREFETCH_ITEMS = 15;
+
+    private final List<SyncIndex.UploadRecord> records = new ArrayList<>();
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private ThumbnailLoader thumbnailLoader;
+    private GridLayoutManager layoutManager;
+    private ThumbnailAdapter adapter;
+    private TextView tvEmpty;
+    private boolean loadingPage;
+    private boolean hasMore = true;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        EdgeToEdge.enable(this);
+        setContentView(R.layout.activity_gallery);
+
+        ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.gallery), (v, insets) -> {
+            Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
+            v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
+            return insets;
+        });
+
+        thumbnailLoader = ThumbnailLoader.getInstance(this);
+        tvEmpty = findViewById(R.id.tv_galleryEmpty);
+        RecyclerView rvGallery = findViewById(R.id.rv_gallery);
+        int spanCount = Math.max(3, getResources().getDisplayMetrics().widthPixels / thumbnailLoader.getTargetSize());
+        layoutManager = new GridLayoutManager(this, spanCount);
+        adapter = new ThumbnailAdapter();
+        rvGallery.setLayoutManager(layoutManager);
+        rvGallery.setHasFixedSize(true);
+        rvGallery.setAdapter(adapter);
+        rvGallery.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                onGalleryScrolled(dy);
+            }
+        });
+
+        loadNextPage();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        backgroundExecutor.shutdown();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        thumbnailLoader.trimMemory(level);
+    }
+
+    private void onGalleryScrolled(int dy) {
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (last >= records.size() - PAGE_SIZE / 3) {
+            loadNextPage();
+        }
+        if (dy > 0) {
+            for (int i = last + 1; i <= last + PREFETCH_ITEMS && i < records.size(); i++) {
+                prefetch(records.get(i));
+            }
+        } else if (dy < 0) {
+            for (int i = first - 1; i >= first - PREFETCH_ITEMS && i >= 0; i--) {
+                prefetch(records.get(i));
+            }
+        }
+    }
+
+    private void prefetch(SyncIndex.UploadRecord record) {
+        String url = record.getPreviewUrl();
+        if (url != null) {
+            thumbnailLoader.prefetch(url);
+        }
+    }
+
+    /**
+     * 在后台读取下一页上传记录，已经在读或没有更多记录时忽略。
+     */
+    private void loadNextPage() {
+        if (loadingPage || !hasMore) {
+            return;
+        }
+        loadingPage = true;
+        long beforeId = records.isEmpty() ? Long.MAX_VALUE : records.get(records.size() - 1).getId();
+        SyncIndex syncIndex = SyncIndex.getInstance(this);
+        backgroundExecutor.execute(() -> {
+            List<SyncIndex.UploadRecord> page = syncIndex.loadUploads(beforeId, PAGE_SIZE);
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                int start = records.size();
+                records.addAll(page);
+                adapter.notifyItemRangeInserted(start, page.size());
+                hasMore = page.size() == PAGE_SIZE;
+                loadingPage = false;
+                tvEmpty.setVisibility(records.isEmpty() ? View.VISIBLE : View.GONE);
+            });
+        });
+    }
+
+    private void openRecord(SyncIndex.UploadRecord record) {
+        if (record.getUrl() == null) {
+            return;
+        }
+        try {
+            startActivity(new Intent(Intent.ACTION_VIEW, Uri.parse(record.getUrl())));
+        } catch (ActivityNotFoundException e) {
+            Toast.makeText(this, "没有可以打开链接的应用", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private class ThumbnailAdapter extends RecyclerView.Adapter<ThumbnailHolder> {
+
+        @NonNull
+        @Override
+        public ThumbnailHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_thumbnail, parent, false);
+            // 正方形格子，宽度由网格决定
+            view.getLayoutParams().height = parent.getWidth() / layoutManager.getSpanCount();
+            return new ThumbnailHolder((ImageView) view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ThumbnailHolder holder, int position) {
+            holder.bind(records.get(position));
+        }
+
+        @Override
+        public void onViewRecycled(@NonNull ThumbnailHolder holder) {
+            holder.unbind();
+        }
+
+        @Override
+        public int getItemCount() {
+            return records.size();
+        }
+    }
+
+    private class ThumbnailHolder extends RecyclerView.ViewHolder implements ThumbnailLoader.Callback {
+        private final ImageView ivThumbnail;
+        private String url;
+
+        ThumbnailHolder(ImageView itemView) {
+            super(itemView);
+            ivThumbnail = itemView;
+        }
+
+        void bind(SyncIndex.UploadRecord record) {
+            unbind();
+            ivThumbnail.setOnClickListener(v -> openRecord(record));
+            ivThumbnail.setContentDescription(record.getFileName());
+            url = record.getPreviewUrl();
+            if (url != null) {
+                thumbnailLoader.load(url, this);
+            }
+        }
+
+        void unbind() {
+            if (url != null) {
+                thumbnailLoader.cancel(url, this);
+                url = null;
+            }
+            ivThumbnail.setImageDrawable(null);
+        }
+
+        @Override
+        public void onThumbnail(String loadedUrl, Bitmap bitmap) {
+            // 格子可能已被复用显示别的记录
+            if (bitmap != null && loadedUrl.equals(url)) {
+                ivThumbnail.setImageBitmap(bitmap);
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package cn.sab1e.autosync;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 上传前的图片缩放/重新编码。
+ * 先只读尺寸，用 inSampleSize 解码出不小于目标尺寸的最小位图，再缩放到长边 maxEdge 并按指定格式和质量编码到缓存文件。
+ * 所有并发转换共享一个位图内存预算，预算不足时等待，避免多张大图同时解码导致 OOM。
+ */
+public class ImageTransformer implements UploadTransformer {
+
+    private static final int BYTES_PER_PIXEL = 4;
+    // 以 KB 为单位的位图内存预算，取可用堆的 1/4，最多 96MB
+    private static final int MEMORY_BUDGET_KB = (int) (Math.min(Runtime.getRuntime().maxMemory() / 4, 96L * 1024 * 1024) / 1024);
+    private static final Semaphore memoryBudget = new Semaphore(MEMORY_BUDGET_KB, true);
+
+    private static final String[] EXIF_TAGS = {
+            ExifInterface.TAG_DATETIME,
+            ExifInterface.TAG_DATETIME_ORIGINAL,
+            ExifInterface.TAG_DATETIME_DIGITIZED,
+            ExifInterface.TAG_OFFSET_TIME,
+            ExifInterface.TAG_OFFSET_TIME_ORIGINAL,
+            ExifInterface.TAG_MAKE,
+            ExifInterface.TAG_MODEL,
+            ExifInterface.TAG_F_NUMBER,
+            ExifInterface.TAG_EXPOSURE_TIME,
+            ExifInterface.TAG_PHOTOGRAPHIC_SENSITIVITY,
+            ExifInterface.TAG_FOCAL_LENGTH,
+            ExifInterface.TAG_FLASH,
+            ExifInterface.TAG_WHITE_BALANCE,
+            ExifInterface.TAG_GPS_LATITUDE,
+            ExifInterface.TAG_GPS_LATITUDE_REF,
+            ExifInterface.TAG_GPS_LONGITUDE,
+            ExifInterface.TAG_GPS_LONGITUDE_REF,
+            ExifInterface.TAG_GPS_ALTITUDE,
+            ExifInterface.TAG_GPS_ALTITUDE_REF,
+            ExifInterface.TAG_GPS_TIMESTAMP,
+            ExifInterface.TAG_GPS_DATESTAMP
+    };
+
+    private final ContentResolver resolver;
+    private final File cacheDir;
+    private final int maxEdge;
+    private final String format;
+    private final int quality;
+    private final boolean keepExif;
+
+    public ImageTransformer(ContentResolver resolver, File cacheDir, int maxEdge, String format, int quality, boolean keepExif) {
+        this.resolver = resolver;
+        this.cacheDir = new File(cacheDir, "transform");
+        this.maxEdge = maxEdge;
+        this.format = FORMAT_WEBP.equals(format) ? FORMAT_WEBP : FORMAT_JPEG;
+        this.quality = Math.max(1, Math.min(quality, 100));
+        this.keepExif = keepExif;
+    }
+
+    @Override
+    public Result transform(SyncEntry entry) throws IOException, InterruptedException {
+        return transform(Uri.parse(entry.getUri()), entry.getName(), entry.getSize());
+    }
+
+    private Result transform(Uri uri, String fileName, long originalSize) throws IOException, InterruptedException {
+        if (fileName.toLowerCase(Locale.ROOT).endsWith(".gif")) {
+            return null;
+        }
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            BitmapFactory.decodeStream(inputStream, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = calculateSampleSize(bounds.outWidth, bounds.outHeight, maxEdge);
+        float scale = Math.min(1f, (float) maxEdge / (Math.max(bounds.outWidth, bounds.outHeight) / sampleSize));
+        long decodedPixels = (long) (bounds.outWidth / sampleSize) * (bounds.outHeight / sampleSize);
+        long scaledPixels = (long) (decodedPixels * scale * scale);
+        int permits = (int) Math.min(MEMORY_BUDGET_KB, Math.max(1, (decodedPixels + scaledPixels) * BYTES_PER_PIXEL / 1024));
+
+        memoryBudget.acquire(permits);
+        try {
+            return decodeAndEncode(uri, fileName, originalSize, sampleSize, scale);
+        } finally {
+            memoryBudget.release(permits);
+        }
+    }
+
+    private Result decodeAndEncode(Uri uri, String fileName, long originalSize, int sampleSize, float scale) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+
+        Bitmap bitmap;
+        String sourceSha256;
+        try (DigestInputStream inputStream = ContentHasher.wrap(Objects.requireNonNull(resolver.openInputStream(uri)))) {
+            bitmap = BitmapFactory.decodeStream(inputStream, null, options);
+            // 解码器不一定读到文件末尾，读完剩余部分以得到完整摘要
+            byte[] buffer = new byte[64 * 1024];
+            while (inputStream.read(buffer) != -1) {
+                // 只为更新摘要
+            }
+            sourceSha256 = ContentHasher.toHex(inputStream.getMessageDigest().digest());
+        }
+        if (bitmap == null) {
+            return null;
+        }
+
+        ExifInterface sourceExif;
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            sourceExif = new ExifInterface(Objects.requireNonNull(inputStream));
+        } catch (IOException e) {
+            sourceExif = null;
+        }
+
+        Matrix matrix = new Matrix();
+        if (scale < 1f) {
+            matrix.postScale(scale, scale);
+        }
+        if (sourceExif != null) {
+            // 旋转直接写进像素，输出的 EXIF 方向统一为正常
+            int rotation = sourceExif.getRotationDegrees();
+            if (rotation != 0) {
+                matrix.postRotate(rotation);
+            }
+        }
+        if (!matrix.isIdentity()) {
+            Bitmap transformed = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            if (transformed != bitmap) {
+                bitmap.recycle();
+                bitmap = transformed;
+            }
+        }
+
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+            bitmap.recycle();
+            throw new IOException("无法创建缓存目录: " + cacheDir);
+        }
+        String extension = FORMAT_WEBP.equals(format) ? ".webp" : ".jpg";
+        File output = File.createTempFile("upload_", extension, cacheDir);
+        try (OutputStream outputStream = new FileOutputStream(output)) {
+            Bitmap.CompressFormat compressFormat = FORMAT_WEBP.equals(format)
+                    ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.JPEG;
+            if (!bitmap.compress(compressFormat, quality, outputStream)) {
+                throw new IOException("图片编码失败: " + fileName);
+            }
+        } catch (IOException e) {
+            output.delete();
+            throw e;
+        } finally {
+            bitmap.recycle();
+        }
+
+        if (keepExif && sourceExif != null) {
+            copyExif(sourceExif, output);
+        }
+
+        if (originalSize > 0 && output.length() >= originalSize) {
+            output.delete();
+            return null;
+        }
+        String mimeType = FORMAT_WEBP.equals(format) ? "image/webp" : "image/jpeg";
+        return new Result(output, replaceExtension(fileName, extension), mimeType, sourceSha256);
+    }
+
+    private static void copyExif(ExifInterface source, File output) {
+        try {
+            ExifInterface target = new ExifInterface(output.getAbsolutePath());
+            for (String tag : EXIF_TAGS) {
+                String value = source.getAttribute(tag);
+                if (value != null) {
+                    target.setAttribute(tag, value);
+                }
+            }
+            target.setAttribute(ExifInterface.TAG_ORIENTATION, String.valueOf(ExifInterface.ORIENTATION_NORMAL));
+            target.saveAttributes();
+        } catch (IOException e) {
+            // EXIF 只是附加信息，写入失败不影响上传
+        }
+    }
+
+    /**
+     * 取使解码后长边仍不小于 maxEdge 的最大 2 的幂采样率。
+     */
+    static int calculateSampleSize(int width, int height, int maxEdge) {
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        while (longEdge / (sampleSize * 2) >= maxEdge) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static String replaceExtension(String fileName, String extension) {
+        int dot = fileName.lastIndexOf('.');
+        return (dot > 0 ? fileName.substring(0, dot) : fileName) + extension;
+    }
+}
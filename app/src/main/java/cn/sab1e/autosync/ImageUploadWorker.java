@@ -1,37 +1,63 @@
 package cn.sab1e.autosync;
 
-import static android.content.Context.MODE_PRIVATE;
-import static cn.sab1e.autosync.MainActivity.PREFS_NAME;
-
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.net.Uri;
+import android.content.pm.ServiceInfo;
+import android.net.ConnectivityManager;
+import android.os.BatteryManager;
 import android.util.Log;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
-import androidx.documentfile.provider.DocumentFile;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.ForegroundInfo;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 
-import java.io.InputStream;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * 同步引擎在 Android 上的宿主：通过 SAF 访问同步目录，索引存放在 SQLite 中，
+ * 负责同步锁、电量和网络额度检查、进度通知和前台服务，以及把结果映射为 WorkManager 的 Result。
+ */
 public class ImageUploadWorker extends Worker {
 
+    public static final String KEY_FORCE_SCAN = "force_scan";
+    public static final String CHARGING_WORK_NAME = "ImageUploadCharging";
+    public static final String KEY_PROGRESS_COMPLETED = "completed";
+    public static final String KEY_PROGRESS_TOTAL = "total";
+
     private static final String CHANNEL_ID = "image_upload_channel";
     private static final int NOTIFICATION_ID = 1;
+    private static final String SYNC_LOCK_FILE = "sync.lock";
+    private static final int LOW_BATTERY_PERCENT = 15;
+    // 剩余文件超过这个数时转为前台服务，避免大批量同步被约 10 分钟的执行时限打断
+    private static final int FOREGROUND_THRESHOLD = 20;
+    private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+    private static final int DEFAULT_TRANSFORM_MAX_EDGE = 2048;
+    private static final int DEFAULT_TRANSFORM_QUALITY = 85;
     private final NotificationManager notificationManager;
-    private static boolean isUploading = false;
+    private final SyncIndex syncIndex;
+    private volatile SyncEngine engine;
+    private final ProgressThrottle progressThrottle = new ProgressThrottle(PROGRESS_INTERVAL_MILLIS);
+    // onProgress 由多个上传线程回调，只允许一个线程发起转前台
+    private final AtomicBoolean foreground = new AtomicBoolean();
 
     public ImageUploadWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
         super(context, workerParams);
         notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        syncIndex = SyncIndex.getInstance(context);
         createNotificationChannel();
         Log.d("ImageUploadWorker", "ImageUploadWorker初始化");
     }
@@ -39,103 +65,194 @@ public class ImageUploadWorker extends Worker {
     @NonNull
     @Override
     public Result doWork() {
-        if (isUploading) {
-            Log.d("ImageUploadWorker", "当前正在上传，任务被忽略。");
-            return Result.success();
+        // 文件锁在进程被杀死后自动释放，也能阻止其他进程同时同步
+        File lockFile = new File(getApplicationContext().getFilesDir(), SYNC_LOCK_FILE);
+        try (SyncLock lock = SyncLock.tryAcquire(lockFile)) {
+            if (lock == null) {
+                // 变化触发的同步不能丢：正在进行的同步可能在新文件出现之前就扫描完了，退避后重新扫描
+                if (getInputData().getBoolean(KEY_FORCE_SCAN, false)) {
+                    Log.d("ImageUploadWorker", "当前正在上传，稍后重新扫描。");
+                    return Result.retry();
+                }
+                Log.d("ImageUploadWorker", "当前正在上传，任务被忽略。");
+                return Result.success();
+            }
+            return sync();
+        } catch (IOException e) {
+            Log.e("ImageUploadWorker", "无法获取同步锁", e);
+            return Result.retry();
         }
+    }
 
-        isUploading = true;
+    private Result sync() {
+        Context context = getApplicationContext();
+        SyncSourceStore sourceStore = new SyncSourceStore(context);
+        SyncEngine engine = new SyncEngine.Builder(syncIndex, new SafDocumentStore(context), new DirectoryScanner(context))
+                .setStats(new SyncStats(new PreferencesStatsStore(context)))
+                .setStopped(this::isStopped)
+                .setListener(new SyncEngine.Listener() {
+                    @Override
+                    public void onSourceScanned(SyncSource source, long scannedAt) {
+                        sourceStore.setLastScan(source, scannedAt);
+                    }
 
-        try {
-            String uriString = getInputData().getString("directory_uri");
-            if (uriString == null) {
-                return Result.failure();
-            }
+                    @Override
+                    public void onProgress(int total, int completed) {
+                        ImageUploadWorker.this.onProgress(total, completed);
+                    }
+                })
+                .setTransformer(newTransformer(SettingsStore.getInstance(context).get()))
+                .build();
+        engine.recover();
 
-            Uri directoryUri = Uri.parse(uriString);
-            DocumentFile directory = DocumentFile.fromTreeUri(getApplicationContext(), directoryUri);
+        List<SyncSource> sources = sourceStore.load();
+        if (sources.isEmpty()) {
+            Log.e("ImageUploadWorker", "没有同步目录");
+            return Result.failure();
+        }
 
-            if (directory != null && directory.isDirectory()) {
-                List<Uri> imageUris = new ArrayList<>();
-                DocumentFile[] files = directory.listFiles();
+        // 变化触发的同步扫描全部目录，周期任务只扫描到期的目录
+        boolean force = getInputData().getBoolean(KEY_FORCE_SCAN, false);
+        long now = System.currentTimeMillis();
+        List<SyncSource> dueSources = new ArrayList<>();
+        for (SyncSource source : sources) {
+            if (force || source.isDue(sourceStore.getLastScan(source), now)) {
+                dueSources.add(source);
+            }
+        }
+        if (dueSources.isEmpty()) {
+            return Result.success();
+        }
 
-                for (DocumentFile file : files) {
-                    if (isImageFile(file)) {
-                        imageUris.add(file.getUri());
-                    }
-                }
+        SyncConfig config = SettingsStore.getInstance(context).get();
+        SyncPolicy policy = config.toPolicy();
+        BatteryManager batteryManager = context.getSystemService(BatteryManager.class);
+        boolean charging = batteryManager.isCharging();
+        // 加急任务不能带电量约束，这里补上检查
+        if (!charging && batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY) <= LOW_BATTERY_PERCENT) {
+            Log.d("ImageUploadWorker", "电量过低，暂不上传");
+            return Result.success();
+        }
+        ConnectivityManager connectivityManager = context.getSystemService(ConnectivityManager.class);
+        boolean metered = connectivityManager.isActiveNetworkMetered();
+        MeteredUsageStore meteredUsage = new MeteredUsageStore(context);
+        RunBudget budget = policy.budget(metered, charging, metered ? meteredUsage.getToday() : 0);
 
-                if (!imageUris.isEmpty()) {
-                    showNotificationProgress(imageUris.size(), 0);
-                    uploadImages(imageUris);
-                } else {
-                    Log.d("ImageUploadWorker", "没有可上传的图片");
-                }
-                return Result.success();
-            } else {
-                Log.e("ImageUploadWorker", "无效的文件夹");
-                return Result.failure();
-            }
-        } finally {
-            isUploading = false;
+        this.engine = engine;
+        if (isStopped()) {
+            // onStopped 在引擎创建之前就已调用
+            engine.cancel();
+        }
+        SyncEngine.Report report = engine.run(config, dueSources, budget, now);
+        if (metered) {
+            meteredUsage.add(report.getBytesSent());
         }
-    }
 
-    private boolean isImageFile(DocumentFile file) {
-        String[] imageExtensions = {".jpg", ".jpeg", ".png", ".gif", ".bmp"};
-        String name = Objects.requireNonNull(file.getName()).toLowerCase();
-        for (String ext : imageExtensions) {
-            if (name.endsWith(ext)) {
-                return true;
-            }
+        int left = report.getLeft();
+        if (left > 0 && !isStopped()) {
+            Log.d("ImageUploadWorker", "超出本次同步额度，" + left + " 个文件留待下次上传");
+            scheduleChargingSync(policy);
         }
-        return false;
+        saveMetrics(report.getMetrics());
+        return toResult(report);
     }
 
-    private void uploadImages(List<Uri> imageUris) {
-        boolean isSuccess = true;
-        for (int i = 0; i < imageUris.size(); i++) {
-            Uri imageUri = imageUris.get(i);
-            try {
-                InputStream inputStream = getApplicationContext().getContentResolver().openInputStream(imageUri);
-                String fileName = Objects.requireNonNull(Objects.requireNonNull(DocumentFile.fromSingleUri(getApplicationContext(), imageUri)).getName());
-                Context context = getApplicationContext();
-                SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-
-                String PREF_API_URL = prefs.getString(MainActivity.PREF_API_URL, "");
-                String PREF_TOKEN = prefs.getString(MainActivity.PREF_TOKEN, "");
-
-                ImageUploader uploader = new ImageUploader(getApplicationContext(), PREF_TOKEN, PREF_API_URL);
-                String result = uploader.uploadImage(Objects.requireNonNull(inputStream), fileName);
-
-                boolean isSuccessful = result.contains("\"code\":200");
-                if (isSuccessful) {
-                    Log.d("Upload", "上传成功: " + fileName);
-                    DocumentFile file = DocumentFile.fromSingleUri(getApplicationContext(), imageUri);
-                    if (file != null && file.delete()) {
-                        Log.d("Upload", "已删除: " + fileName);
-                    }
-                } else {
-                    Log.e("Upload", "上传失败: " + fileName);
-                    isSuccess = false;
-                }
-            } catch (Exception e) {
-                Log.e("Upload", "上传过程中出现异常", e);
-                isSuccess = false;
-            }
-            showNotificationProgress(imageUris.size(), i + 1);
-            //模拟上传延迟
-//            try {
-//                Thread.sleep(5000);
-//            }catch (Exception e){
-//                Log.e("Upload",e.toString());
-//            }
-        }
-        if (isSuccess) {
+    /**
+     * 单个文件的失败由同步索引按文件退避，不影响返回值；只有熔断时才让 WorkManager 重试或放弃整个任务。
+     */
+    private Result toResult(SyncEngine.Report report) {
+        if (report.isStopped()) {
+            // 被系统停止，未处理的文件保持待上传，下次继续
+            Log.d("Upload", "同步被停止");
+            return Result.retry();
+        }
+        if (report.getAttempted() == 0) {
+            Log.d("ImageUploadWorker", "没有可上传的图片");
+            return Result.success();
+        }
+        if (report.isAllSucceeded()) {
             showNotificationComplete();
         } else {
             showNotificationError();
         }
+
+        RetryPolicy.FailureKind trippedBy = report.getTrippedBy();
+        if (trippedBy == RetryPolicy.FailureKind.UNREACHABLE) {
+            Log.e("Upload", "服务器不可达，稍后重试");
+            return Result.retry();
+        } else if (trippedBy == RetryPolicy.FailureKind.AUTH) {
+            Log.e("Upload", "认证失败，请检查 Token 或密钥");
+            return Result.failure();
+        }
+        return Result.success();
+    }
+
+    private UploadTransformer newTransformer(SyncConfig config) {
+        if (!config.isTransformEnabled()) {
+            return null;
+        }
+        Context context = getApplicationContext();
+        return new ImageTransformer(context.getContentResolver(), context.getCacheDir(),
+                orDefault(config.getTransformMaxEdge(), DEFAULT_TRANSFORM_MAX_EDGE),
+                config.getTransformFormat(),
+                orDefault(config.getTransformQuality(), DEFAULT_TRANSFORM_QUALITY),
+                config.isTransformKeepExif());
+    }
+
+    private void saveMetrics(SyncMetrics metrics) {
+        if (metrics.isEmpty()) {
+            return;
+        }
+        Log.d("ImageUploadWorker", "同步指标: " + metrics);
+        try {
+            MetricsStore.getInstance(getApplicationContext()).save(metrics);
+        } catch (RuntimeException e) {
+            // 指标只用于诊断，保存失败不影响同步结果
+            Log.e("ImageUploadWorker", "保存同步指标失败", e);
+        }
+    }
+
+    /**
+     * 积压过多时剩下的文件等到充电时再上传。
+     */
+    private void scheduleChargingSync(SyncPolicy policy) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(ImageUploadWorker.class)
+                .setInputData(new Data.Builder().putBoolean(KEY_FORCE_SCAN, true).build())
+                .setConstraints(WorkConstraints.charging(policy))
+                .build();
+        WorkManager.getInstance(getApplicationContext())
+                .enqueueUniqueWork(CHARGING_WORK_NAME, ExistingWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * 加急任务在 Android 12 以下以前台服务运行，需要提供通知。
+     */
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        return createForegroundInfo(0, 0);
+    }
+
+    /**
+     * 任务被取消或系统要求停止时调用：不再开始新的上传，并中断正在进行的上传。
+     * 中断的文件回到待上传状态，分片上传的偏移量已保存，下次同步从断点继续。
+     */
+    @Override
+    public void onStopped() {
+        SyncEngine current = engine;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private ForegroundInfo createForegroundInfo(int total, int completed) {
+        // Android 14 起前台服务必须声明类型，与清单中 SystemForegroundService 的声明一致
+        return new ForegroundInfo(NOTIFICATION_ID, buildProgressNotification(total, completed).build(),
+                ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+    }
+
+    private static int orDefault(int value, int defaultValue) {
+        return value > 0 ? value : defaultValue;
     }
 
     private void createNotificationChannel() {
@@ -148,16 +265,58 @@ public class ImageUploadWorker extends Worker {
         notificationManager.createNotificationChannel(channel);
     }
 
-    private void showNotificationProgress(int totalImages, int currentImage) {
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(getApplicationContext(), CHANNEL_ID)
+    private void onProgress(int total, int completed) {
+        if (!progressThrottle.tryUpdate(System.currentTimeMillis(), completed >= total)) {
+            return;
+        }
+        setProgressAsync(new Data.Builder()
+                .putInt(KEY_PROGRESS_COMPLETED, completed)
+                .putInt(KEY_PROGRESS_TOTAL, total)
+                .build());
+        if (total - completed >= FOREGROUND_THRESHOLD && foreground.compareAndSet(false, true)) {
+            promoteToForeground(total, completed);
+        } else {
+            showNotificationProgress(total, completed);
+        }
+    }
+
+    /**
+     * 积压较多时转为前台服务运行。Android 12 起应用在后台时可能不允许启动前台服务，
+     * 此时继续以普通任务运行，被系统停止后由下次同步接着上传。
+     * 不等待结果，上传线程不会因为切换前台服务而停顿；结果只用于记录日志。
+     */
+    private void promoteToForeground(int total, int completed) {
+        ListenableFuture<Void> future;
+        try {
+            future = setForegroundAsync(createForegroundInfo(total, completed));
+        } catch (IllegalStateException e) {
+            Log.e("ImageUploadWorker", "无法转为前台服务", e);
+            return;
+        }
+        future.addListener(() -> {
+            try {
+                future.get();
+                Log.d("ImageUploadWorker", "转为前台服务运行，剩余 " + (total - completed) + " 个文件");
+            } catch (ExecutionException e) {
+                Log.e("ImageUploadWorker", "无法转为前台服务", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, Runnable::run);
+    }
+
+    private synchronized void showNotificationProgress(int totalImages, int currentImage) {
+        notificationManager.notify(NOTIFICATION_ID, buildProgressNotification(totalImages, currentImage).build());
+    }
+
+    private NotificationCompat.Builder buildProgressNotification(int totalImages, int currentImage) {
+        return new NotificationCompat.Builder(getApplicationContext(), CHANNEL_ID)
                 .setSmallIcon(R.drawable.ic_launcher_foreground)
                 .setContentTitle("正在上传图片")
                 .setContentText("正在上传第 " + currentImage + " 张，共 " + totalImages + " 张")
                 .setPriority(NotificationCompat.PRIORITY_LOW)
                 .setProgress(totalImages, currentImage, false)
                 .setOngoing(true);
-
-        notificationManager.notify(NOTIFICATION_ID, builder.build());
     }
 
     private void showNotificationComplete() {
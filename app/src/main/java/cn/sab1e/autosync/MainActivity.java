@@ -14,20 +14,18 @@ import android.os.Bundle;
 import android.util.Log;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.Switch;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
 import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
-import androidx.work.Constraints;
-import androidx.work.Data;
-import androidx.work.ExistingPeriodicWorkPolicy;
-import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkInfo;
 import androidx.work.WorkManager;
 
@@ -35,29 +33,57 @@ import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final int REQUEST_CODE_PICK_DIRECTORY = 1;
+    private static final int REQUEST_CODE_EXPORT_JSON = 2;
+    private static final int REQUEST_CODE_EXPORT_CSV = 3;
+    // 诊断界面显示的最近同步次数，导出时导出全部保留的记录
+    private static final int DIAGNOSTICS_RUNS = 10;
     public static final String PREFS_NAME = "ImageUploadPrefs";
     public static final String PREF_DIRECTORY_PATH = "directory_uri";
-    public static String PREF_API_URL = "api_url";
-    public static String PREF_TOKEN = "token";
-    public static final String PREF_INTERVAL = "interval";
+    public static final String PREF_SYNC_SOURCES = "sync_sources";
     public static final String PREF_LAST_SYNC_TIME = "last_sync_time";
     public static final String PREF_TOTAL_UPLOAD_NUMBER = "total_upload_number";
-
-    private Uri selectedDirectoryUri;
-    private EditText etApiUrl, etToken, etInterval;
-    private Switch swSync;
+    // 与 R.array.backend_names 的顺序一致
+    private static final String[] BACKEND_TYPES = {UploadBackend.TYPE_EASYIMAGE, UploadBackend.TYPE_LSKY,
+            UploadBackend.TYPE_S3, UploadBackend.TYPE_WEBDAV};
+    // 与 R.array.upload_order_names 的顺序一致
+    private static final String[] UPLOAD_ORDERS = {UploadOrder.DEADLINE, UploadOrder.NEWEST_FIRST,
+            UploadOrder.SMALLEST_FIRST, UploadOrder.FIFO};
+
+    private SyncSourceStore sourceStore;
+    // 读写指标数据库、导出文件都不放在主线程
+    private final ExecutorService backgroundExecutor = Executors.newSingleThreadExecutor();
+    private EditText etApiUrl, etToken, etInterval, etExtensions, etInclude, etExclude, etMinSizeKb, etMaxSizeMb, etMaxAgeDays, etConcurrency, etChunkedUploadUrl, etBatchUploadUrl, etTransformMaxEdge, etTransformQuality,
+            etMeteredCapMb, etRunBudgetMb, etChargingBacklog, etBandwidthKbps, etAccessKey, etSecretKey, etBucket, etRegion;
+    private Spinner spBackend, spUploadOrder;
+    private Switch swSync, swTransform, swTransformWebp, swKeepExif, swUnmeteredOnly, swRecursive;
     private TextView tvNowDirectory, tvLastSyncTime, tvTotalUploadNumber, tvVersion;
-    private String lastSyncTime;
-    private int totalUploadNumber;
+    private Button btnSaveParameter;
+    private SettingsStore settingsStore;
+    // 界面上显示的设置，保存时在此基础上修改，界面没有的字段（如 transport）原样保留
+    private SyncConfig config;
+    // 按任务状态更新开关时不触发开关的监听
+    private boolean updatingSwitch;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -71,9 +97,35 @@ public class MainActivity extends AppCompatActivity {
             return insets;
         });
 
+        spBackend = findViewById(R.id.sp_backend);
         etApiUrl = findViewById(R.id.et_apiUrl);
         etToken = findViewById(R.id.et_token);
+        etAccessKey = findViewById(R.id.et_accessKey);
+        etSecretKey = findViewById(R.id.et_secretKey);
+        etBucket = findViewById(R.id.et_bucket);
+        etRegion = findViewById(R.id.et_region);
         etInterval = findViewById(R.id.et_interval);
+        etExtensions = findViewById(R.id.et_extensions);
+        swRecursive = findViewById(R.id.sw_recursive);
+        etInclude = findViewById(R.id.et_include);
+        etExclude = findViewById(R.id.et_exclude);
+        etMinSizeKb = findViewById(R.id.et_minSizeKb);
+        etMaxSizeMb = findViewById(R.id.et_maxSizeMb);
+        etMaxAgeDays = findViewById(R.id.et_maxAgeDays);
+        etConcurrency = findViewById(R.id.et_concurrency);
+        spUploadOrder = findViewById(R.id.sp_uploadOrder);
+        etChunkedUploadUrl = findViewById(R.id.et_chunkedUploadUrl);
+        etBatchUploadUrl = findViewById(R.id.et_batchUploadUrl);
+        etTransformMaxEdge = findViewById(R.id.et_transformMaxEdge);
+        etTransformQuality = findViewById(R.id.et_transformQuality);
+        swTransform = findViewById(R.id.sw_transform);
+        swTransformWebp = findViewById(R.id.sw_transformWebp);
+        swKeepExif = findViewById(R.id.sw_keepExif);
+        swUnmeteredOnly = findViewById(R.id.sw_unmeteredOnly);
+        etMeteredCapMb = findViewById(R.id.et_meteredCapMb);
+        etRunBudgetMb = findViewById(R.id.et_runBudgetMb);
+        etChargingBacklog = findViewById(R.id.et_chargingBacklog);
+        etBandwidthKbps = findViewById(R.id.et_bandwidthKbps);
         swSync = findViewById(R.id.sw_sync);
         tvNowDirectory = findViewById(R.id.tv_nowDirectory);
         tvLastSyncTime = findViewById(R.id.tv_lastSyncTime);
@@ -81,105 +133,319 @@ public class MainActivity extends AppCompatActivity {
         tvTotalUploadNumber = findViewById(R.id.tv_totalUploadNumber);
 
         Button btnAddAlbum = findViewById(R.id.btn_addAlbum);
-        Button btnSaveParameter = findViewById(R.id.btn_saveParameter);
+        Button btnClearAlbums = findViewById(R.id.btn_clearAlbums);
+        btnSaveParameter = findViewById(R.id.btn_saveParameter);
+        Button btnDiagnostics = findViewById(R.id.btn_diagnostics);
+        Button btnGallery = findViewById(R.id.btn_gallery);
+        sourceStore = new SyncSourceStore(this);
 
         btnAddAlbum.setOnClickListener(v -> openDirectoryPicker());
+        btnClearAlbums.setOnClickListener(v -> clearSources());
         btnSaveParameter.setOnClickListener(v -> saveParameters());
+        btnDiagnostics.setOnClickListener(v -> showDiagnostics());
+        btnGallery.setOnClickListener(v -> startActivity(new Intent(this, GalleryActivity.class)));
 
         displayVersion();
 
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        loadParameters(prefs);
-        loadSwitchState();
+        // 设置和统计在后台读取，读完再填入界面，不阻塞首帧；读完之前不能保存
+        btnSaveParameter.setEnabled(false);
+        settingsStore = SettingsStore.getInstance(this);
+        settingsStore.load(this::bindConfig);
+        loadStatus();
 
         observeWorkerStatus();
 
         swSync.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (updatingSwitch) {
+                return;
+            }
             if (isChecked) {
-                schedulePeriodicWork();
+                scheduleSync();
             } else {
-                WorkManager.getInstance(this).cancelUniqueWork("ImageUploadWork");
+                SyncScheduler.cancel(this);
             }
         });
 
-        updateNowDirectoryDisplay();
-        lastSyncTime = prefs.getString(PREF_LAST_SYNC_TIME, "无");
-        totalUploadNumber = prefs.getInt(PREF_TOTAL_UPLOAD_NUMBER, 0);
-        tvLastSyncTime.setText("上次同步时间: " + lastSyncTime);
-        tvTotalUploadNumber.setText("上传总数量: " + totalUploadNumber);
-
         EventBus.getDefault().register(this); // 注册 EventBus
     }
 
-    private void loadParameters(SharedPreferences prefs) {
-        String apiUrl = prefs.getString(PREF_API_URL, "");
-        String token = prefs.getString(PREF_TOKEN, "");
-        String interval = prefs.getString(PREF_INTERVAL, "");
-        selectedDirectoryUri = Uri.parse(prefs.getString(PREF_DIRECTORY_PATH, null));
-
-        etApiUrl.setText(apiUrl);
-        etToken.setText(token);
-        etInterval.setText(interval);
-        updateNowDirectoryDisplay();
+    private void bindConfig(SyncConfig config) {
+        if (isDestroyed()) {
+            return;
+        }
+        this.config = config;
+        spBackend.setSelection(Math.max(0, Arrays.asList(BACKEND_TYPES).indexOf(config.getBackend())));
+        etApiUrl.setText(config.getApiUrl());
+        etToken.setText(config.getToken());
+        etAccessKey.setText(config.getAccessKey());
+        etSecretKey.setText(config.getSecretKey());
+        etBucket.setText(config.getS3Bucket());
+        etRegion.setText(config.getS3Region());
+        etInterval.setText(formatNumber(config.getIntervalMinutes()));
+        etConcurrency.setText(formatNumber(config.getUploadConcurrency()));
+        spUploadOrder.setSelection(Math.max(0, Arrays.asList(UPLOAD_ORDERS).indexOf(config.getUploadOrder())));
+        etChunkedUploadUrl.setText(config.getChunkedUploadUrl());
+        etBatchUploadUrl.setText(config.getBatchUploadUrl());
+        etTransformMaxEdge.setText(formatNumber(config.getTransformMaxEdge()));
+        etTransformQuality.setText(formatNumber(config.getTransformQuality()));
+        swTransform.setChecked(config.isTransformEnabled());
+        swTransformWebp.setChecked(ImageTransformer.FORMAT_WEBP.equals(config.getTransformFormat()));
+        swKeepExif.setChecked(config.isTransformKeepExif());
+        swUnmeteredOnly.setChecked(config.isUnmeteredOnly());
+        etMeteredCapMb.setText(formatNumber(config.getMeteredCapMb()));
+        etRunBudgetMb.setText(formatNumber(config.getRunBudgetMb()));
+        etChargingBacklog.setText(formatNumber(config.getChargingBacklog()));
+        etBandwidthKbps.setText(formatNumber(config.getBandwidthKbps()));
+        btnSaveParameter.setEnabled(true);
+        // 设置填入界面才算完全显示，StartupBenchmark 的 timeToFullDisplay 以此为准
+        reportFullyDrawn();
     }
 
-    private void loadSwitchState() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        boolean isSyncEnabled = prefs.getBoolean("is_sync_enabled", false);
-        swSync.setChecked(isSyncEnabled);
+    /**
+     * 上次同步时间、上传总数和同步目录都在后台读取。
+     */
+    private void loadStatus() {
+        backgroundExecutor.execute(() -> {
+            SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+            String lastSyncTime = prefs.getString(PREF_LAST_SYNC_TIME, "无");
+            int totalUploadNumber = prefs.getInt(PREF_TOTAL_UPLOAD_NUMBER, 0);
+            List<SyncSource> sources = sourceStore.load();
+            runOnUiThread(() -> {
+                if (isDestroyed()) {
+                    return;
+                }
+                tvLastSyncTime.setText("上次同步时间: " + lastSyncTime);
+                tvTotalUploadNumber.setText("上传总数量: " + totalUploadNumber);
+                showSources(sources);
+            });
+        });
     }
 
+    /**
+     * 开关只反映周期任务是否存在。在 onCreate 中注册一次，随 Activity 销毁自动移除；
+     * 这里只更新界面，不会因为状态变化重新入队。
+     */
     private void observeWorkerStatus() {
-        WorkManager.getInstance(this).getWorkInfosForUniqueWorkLiveData("ImageUploadWork")
+        WorkManager.getInstance(this).getWorkInfosForUniqueWorkLiveData(SyncScheduler.PERIODIC_WORK_NAME)
                 .observe(this, workInfos -> {
                     boolean isRunning = false;
                     if (workInfos != null && !workInfos.isEmpty()) {
                         WorkInfo workInfo = workInfos.get(0);
                         isRunning = workInfo.getState() == WorkInfo.State.ENQUEUED || workInfo.getState() == WorkInfo.State.RUNNING;
                     }
+                    updatingSwitch = true;
                     swSync.setChecked(isRunning);
+                    updatingSwitch = false;
                 });
     }
 
     private void updateNowDirectoryDisplay() {
-        if (selectedDirectoryUri != null) {
-            String formattedUri = "相册目录：" + formatUri(selectedDirectoryUri);
-            tvNowDirectory.setText(formattedUri);
+        backgroundExecutor.execute(() -> {
+            List<SyncSource> sources = sourceStore.load();
+            runOnUiThread(() -> {
+                if (!isDestroyed()) {
+                    showSources(sources);
+                }
+            });
+        });
+    }
+
+    private void showSources(List<SyncSource> sources) {
+        if (sources.isEmpty()) {
+            tvNowDirectory.setText("相册目录：无");
+            return;
         }
+        StringBuilder text = new StringBuilder("相册目录：");
+        for (SyncSource source : sources) {
+            text.append("\n").append(formatUri(Uri.parse(source.getTreeUri())))
+                    .append("（每 ").append(source.getIntervalMinutes()).append(" 分钟，")
+                    .append(String.join(",", source.getExtensions()))
+                    .append(source.isRecursive() ? "，含子目录" : "")
+                    .append(source.getFilter().isEmpty() ? "" : "，有筛选条件").append("）");
+        }
+        tvNowDirectory.setText(text);
     }
 
-    private void saveParameters() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
+    private SyncFilter buildFilter() {
+        return new SyncFilter(
+                SyncFilter.parsePatterns(etInclude.getText().toString()),
+                SyncFilter.parsePatterns(etExclude.getText().toString()),
+                SyncConfig.parseInt(etMinSizeKb.getText().toString(), 0) * 1024L,
+                SyncConfig.parseInt(etMaxSizeMb.getText().toString(), 0) * 1024L * 1024,
+                TimeUnit.DAYS.toMillis(SyncConfig.parseInt(etMaxAgeDays.getText().toString(), 0)));
+    }
 
-        editor.putString(PREF_API_URL, etApiUrl.getText().toString());
-        editor.putString(PREF_TOKEN, etToken.getText().toString());
-        editor.putString(PREF_INTERVAL, etInterval.getText().toString());
-        editor.apply();
+    /**
+     * 目录的读写都在 backgroundExecutor 上排队，随后的刷新和调度一定能读到这次修改。
+     */
+    private void clearSources() {
+        backgroundExecutor.execute(sourceStore::clear);
+        SyncScheduler.cancel(this);
+        updateNowDirectoryDisplay();
+        Toast.makeText(this, "已清空相册", Toast.LENGTH_SHORT).show();
+    }
+
+    private void saveParameters() {
+        if (config == null) {
+            return;
+        }
+        config = config.toBuilder()
+                .setBackend(BACKEND_TYPES[spBackend.getSelectedItemPosition()])
+                .setApiUrl(etApiUrl.getText().toString())
+                .setToken(etToken.getText().toString())
+                .setAccessKey(etAccessKey.getText().toString())
+                .setSecretKey(etSecretKey.getText().toString())
+                .setS3Bucket(etBucket.getText().toString())
+                .setS3Region(etRegion.getText().toString())
+                .setIntervalMinutes(parseNumber(etInterval))
+                .setUploadConcurrency(parseNumber(etConcurrency))
+                .setUploadOrder(UPLOAD_ORDERS[spUploadOrder.getSelectedItemPosition()])
+                .setChunkedUploadUrl(etChunkedUploadUrl.getText().toString())
+                .setBatchUploadUrl(etBatchUploadUrl.getText().toString())
+                .setTransformEnabled(swTransform.isChecked())
+                .setTransformMaxEdge(parseNumber(etTransformMaxEdge))
+                .setTransformQuality(parseNumber(etTransformQuality))
+                .setTransformFormat(swTransformWebp.isChecked() ? ImageTransformer.FORMAT_WEBP : ImageTransformer.FORMAT_JPEG)
+                .setTransformKeepExif(swKeepExif.isChecked())
+                .setUnmeteredOnly(swUnmeteredOnly.isChecked())
+                .setMeteredCapMb(parseNumber(etMeteredCapMb))
+                .setRunBudgetMb(parseNumber(etRunBudgetMb))
+                .setChargingBacklog(parseNumber(etChargingBacklog))
+                .setBandwidthKbps(parseNumber(etBandwidthKbps))
+                .build();
+        settingsStore.save(config);
+        if (swSync.isChecked()) {
+            // 网络和计费约束可能变了；UPDATE 策略不会重置下次运行的时间
+            scheduleSync();
+        }
 
         Toast.makeText(this, "参数已保存", Toast.LENGTH_SHORT).show();
     }
 
+    private static int parseNumber(EditText editText) {
+        return Math.max(0, SyncConfig.parseInt(editText.getText().toString(), 0));
+    }
+
+    private static String formatNumber(int value) {
+        return value > 0 ? String.valueOf(value) : "";
+    }
+
     private void openDirectoryPicker() {
         Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE);
         startActivityForResult(intent, REQUEST_CODE_PICK_DIRECTORY);
     }
 
+    /**
+     * 诊断界面：最近几次同步的扫描耗时、吞吐量、请求各阶段耗时分位数和重试次数，可导出为 JSON 或 CSV。
+     */
+    private void showDiagnostics() {
+        backgroundExecutor.execute(() -> {
+            List<SyncMetrics> runs = MetricsStore.getInstance(this).load(DIAGNOSTICS_RUNS, false);
+            runOnUiThread(() -> {
+                if (isFinishing()) {
+                    return;
+                }
+                new AlertDialog.Builder(this)
+                        .setTitle("同步诊断")
+                        .setMessage(formatDiagnostics(runs))
+                        .setPositiveButton("导出 JSON", (dialog, which) ->
+                                openExportPicker(REQUEST_CODE_EXPORT_JSON, "application/json", "autosync-metrics.json"))
+                        .setNeutralButton("导出 CSV", (dialog, which) ->
+                                openExportPicker(REQUEST_CODE_EXPORT_CSV, "text/csv", "autosync-metrics.csv"))
+                        .setNegativeButton("关闭", null)
+                        .show();
+            });
+        });
+    }
+
+    private static String formatDiagnostics(List<SyncMetrics> runs) {
+        if (runs.isEmpty()) {
+            return "还没有同步记录";
+        }
+        SimpleDateFormat format = new SimpleDateFormat("MM-dd HH:mm:ss", Locale.getDefault());
+        StringBuilder builder = new StringBuilder();
+        // 同一出队顺序的各次同步合并后比较，看哪种顺序下新文件更快到达服务器
+        Map<String, LatencyHistogram[]> byOrder = new LinkedHashMap<>();
+        for (SyncMetrics run : runs) {
+            LatencyHistogram[] merged = byOrder.get(run.getOrder());
+            if (merged == null) {
+                merged = new LatencyHistogram[]{new LatencyHistogram(), new LatencyHistogram()};
+                byOrder.put(run.getOrder(), merged);
+            }
+            merged[0].merge(run.getFreshTimeToUpload());
+            merged[1].merge(run.getTimeToUpload());
+        }
+        for (Map.Entry<String, LatencyHistogram[]> entry : byOrder.entrySet()) {
+            builder.append("顺序 ").append(entry.getKey()).append('\n')
+                    .append("新文件到达服务器 ").append(entry.getValue()[0]).append('\n')
+                    .append("发现到上传 ").append(entry.getValue()[1]).append("\n\n");
+        }
+        for (SyncMetrics run : runs) {
+            builder.append(format.format(run.getStartedAt()))
+                    .append("  用时 ").append(run.getDurationMillis() / 1000).append(" 秒\n")
+                    .append("扫描 ").append(run.getScanned()).append(" 个文件，").append(run.getScanMillis()).append(" ms\n")
+                    .append("上传 ").append(run.getUploaded()).append("，跳过 ").append(run.getSkipped())
+                    .append("，失败 ").append(run.getFailed()).append("，重试 ").append(run.getRetries()).append('\n')
+                    .append(run.getBytes() / 1024).append(" KB，").append(run.getThroughput() / 1024).append(" KB/s\n")
+                    .append("总耗时 ").append(run.getTotal()).append('\n')
+                    .append("首字节 ").append(run.getTtfb()).append('\n')
+                    .append("连接 ").append(run.getConnect()).append('\n')
+                    .append("顺序 ").append(run.getOrder()).append("，发现到上传 ").append(run.getTimeToUpload()).append("\n\n");
+        }
+        return builder.toString().trim();
+    }
+
+    private void openExportPicker(int requestCode, String mimeType, String fileName) {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType(mimeType);
+        intent.putExtra(Intent.EXTRA_TITLE, fileName);
+        startActivityForResult(intent, requestCode);
+    }
+
+    private void exportMetrics(Uri uri, boolean json) {
+        backgroundExecutor.execute(() -> {
+            List<SyncMetrics> runs = MetricsStore.getInstance(this).load(MetricsStore.MAX_RUNS, true);
+            boolean exported;
+            try (OutputStream outputStream = Objects.requireNonNull(getContentResolver().openOutputStream(uri));
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+                if (json) {
+                    MetricsExporter.writeJson(runs, writer);
+                } else {
+                    MetricsExporter.writeCsv(runs, writer);
+                }
+                exported = true;
+            } catch (IOException | RuntimeException e) {
+                Log.e("MainActivity", "导出同步指标失败", e);
+                exported = false;
+            }
+            boolean success = exported;
+            runOnUiThread(() -> Toast.makeText(this, success ? "已导出" : "导出失败", Toast.LENGTH_SHORT).show());
+        });
+    }
+
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
+        if ((requestCode == REQUEST_CODE_EXPORT_JSON || requestCode == REQUEST_CODE_EXPORT_CSV)
+                && resultCode == RESULT_OK && data != null && data.getData() != null) {
+            exportMetrics(data.getData(), requestCode == REQUEST_CODE_EXPORT_JSON);
+            return;
+        }
         if (requestCode == REQUEST_CODE_PICK_DIRECTORY && resultCode == RESULT_OK) {
             if (data != null) {
                 Uri uri = data.getData();
                 if (uri != null) {
                     getContentResolver().takePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
-                    selectedDirectoryUri = uri;
-
-                    SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-                    prefs.edit().putString(PREF_DIRECTORY_PATH, selectedDirectoryUri.toString()).apply();
+                    String intervalString = etInterval.getText().toString();
+                    long interval = SyncConfig.parseInt(intervalString, 30);
+                    Set<String> extensions = SyncSource.parseExtensions(etExtensions.getText().toString());
+                    boolean recursive = swRecursive.isChecked();
+                    SyncFilter filter = buildFilter();
+                    backgroundExecutor.execute(() -> sourceStore.add(uri.toString(), interval, extensions, recursive, filter));
                     updateNowDirectoryDisplay();
                     Toast.makeText(this, "相册添加成功", Toast.LENGTH_SHORT).show();
-                    schedulePeriodicWork();
+                    scheduleSync();
                 } else {
                     Log.e("MainActivity", "Uri is null");
                     Toast.makeText(this, "文件夹路径无效", Toast.LENGTH_SHORT).show();
@@ -191,45 +457,19 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void schedulePeriodicWork() {
-        if (selectedDirectoryUri == null) {
-            Log.d("MainActivity", "未选择文件夹，无法调度上传任务");
-            return;
-        }
-
-        WorkManager.getInstance(this).getWorkInfosForUniqueWorkLiveData("ImageUploadWork")
-                .observe(this, workInfos -> {
-                    if (workInfos == null || workInfos.isEmpty() ||
-                            (workInfos.get(0).getState() != WorkInfo.State.RUNNING && workInfos.get(0).getState() != WorkInfo.State.ENQUEUED)) {
-
-                        String intervalString = etInterval.getText().toString();
-                        long interval = intervalString.isEmpty() ? 30 : Long.parseLong(intervalString);
-
-                        Constraints constraints = new Constraints.Builder().build();
-                        Data inputData = new Data.Builder()
-                                .putString("directory_uri", selectedDirectoryUri.toString())
-                                .putString(PREF_API_URL, etApiUrl.getText().toString())
-                                .putString(PREF_TOKEN, etToken.getText().toString())
-                                .build();
-
-                        PeriodicWorkRequest uploadWorkRequest = new PeriodicWorkRequest.Builder(
-                                ImageUploadWorker.class, interval, TimeUnit.MINUTES)
-                                .setInputData(inputData)
-                                .setConstraints(constraints)
-                                .build();
-
-                        WorkManager.getInstance(this).enqueueUniquePeriodicWork(
-                                "ImageUploadWork", ExistingPeriodicWorkPolicy.REPLACE, uploadWorkRequest);
-                    } else {
-                        Log.d("MainActivity", "已有 Worker 在运行中，不创建新的 Worker");
-                    }
-                });
+    /**
+     * 目录和设置都在后台读取后交给 SyncScheduler，重复调用不会重置周期任务。
+     */
+    private void scheduleSync() {
+        Context context = getApplicationContext();
+        backgroundExecutor.execute(() -> SyncScheduler.schedule(context, settingsStore.get(), sourceStore.load()));
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
         EventBus.getDefault().unregister(this); // 注销 EventBus
+        backgroundExecutor.shutdown();
     }
 
     @Subscribe(threadMode = ThreadMode.MAIN)
@@ -0,0 +1,93 @@
+package cn.sab1e.autosync;
+
+import android.content.Context;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监听相册内容变化的触发任务。
+ * 通过 WorkManager 的 content URI 触发器监听 MediaStore 图片表、视频表和各同步目录，变化停止若干秒后（去抖）
+ * 立即安排一次加急的一次性同步，然后重新注册自己（content URI 触发器只生效一次）。
+ * 同步本身依靠同步索引只处理新增文件，周期任务保留为兜底。
+ */
+public class MediaChangeWorker extends Worker {
+
+    public static final String UNIQUE_WORK_NAME = "MediaChangeTrigger";
+    public static final String UPLOAD_NOW_WORK_NAME = "ImageUploadNow";
+    // 连拍时等待变化停止再同步，但最迟不超过 MAX_DELAY
+    private static final long UPDATE_DELAY_SECONDS = 10;
+    private static final long MAX_DELAY_SECONDS = 60;
+
+    public MediaChangeWorker(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        List<SyncSource> sources = new SyncSourceStore(getApplicationContext()).load();
+        if (sources.isEmpty()) {
+            return Result.failure();
+        }
+        Log.d("MediaChangeWorker", "检测到相册变化: " + getTriggeredContentUris());
+
+        OneTimeWorkRequest uploadNow = new OneTimeWorkRequest.Builder(ImageUploadWorker.class)
+                .setInputData(new Data.Builder().putBoolean(ImageUploadWorker.KEY_FORCE_SCAN, true).build())
+                .setConstraints(WorkConstraints.expedited(SettingsStore.getInstance(getApplicationContext()).get().toPolicy()))
+                .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+                .build();
+        // 上一个变化触发的同步还在运行时排在其后；撞上周期任务持有同步锁时由 ImageUploadWorker 返回 retry，
+        // 退避后重新扫描，本次变化不会被丢掉
+        WorkManager.getInstance(getApplicationContext())
+                .enqueueUniqueWork(UPLOAD_NOW_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, uploadNow);
+
+        schedule(getApplicationContext(), sources);
+        return Result.success();
+    }
+
+    /**
+     * 注册（或重新注册）变化监听。
+     */
+    public static void schedule(Context context, List<SyncSource> sources) {
+        Constraints.Builder constraints = new Constraints.Builder()
+                .addContentUriTrigger(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, true)
+                .addContentUriTrigger(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, true)
+                .setTriggerContentUpdateDelay(UPDATE_DELAY_SECONDS, TimeUnit.SECONDS)
+                .setTriggerContentMaxDelay(MAX_DELAY_SECONDS, TimeUnit.SECONDS);
+        for (SyncSource source : sources) {
+            try {
+                Uri treeUri = Uri.parse(source.getTreeUri());
+                constraints.addContentUriTrigger(DocumentsContract.buildChildDocumentsUriUsingTree(
+                        treeUri, DocumentsContract.getTreeDocumentId(treeUri)), true);
+            } catch (IllegalArgumentException e) {
+                Log.e("MediaChangeWorker", "无法监听目录: " + source.getTreeUri(), e);
+            }
+        }
+
+        OneTimeWorkRequest trigger = new OneTimeWorkRequest.Builder(MediaChangeWorker.class)
+                .setConstraints(constraints.build())
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.REPLACE, trigger);
+    }
+
+    public static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(UNIQUE_WORK_NAME);
+        WorkManager.getInstance(context).cancelUniqueWork(UPLOAD_NOW_WORK_NAME);
+    }
+}
@@ -0,0 +1,48 @@
+package cn.sab1e.autosync;
+
+import static android.content.Context.MODE_PRIVATE;
+import static cn.sab1e.autosync.MainActivity.PREFS_NAME;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.time.LocalDate;
+
+/**
+ * 今天在计费网络上已发送的字节数，保存在 SharedPreferences 中，按本地日期在零点清零。
+ * 计费网络额度按天计算，多次同步共用同一份额度。只在 Worker 线程调用。
+ */
+public class MeteredUsageStore {
+
+    private static final String PREF_DAY = "metered_usage_day";
+    private static final String PREF_BYTES = "metered_usage_bytes";
+
+    private final Context context;
+
+    public MeteredUsageStore(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public synchronized long getToday() {
+        SharedPreferences prefs = prefs();
+        return prefs.getLong(PREF_DAY, -1) == today() ? prefs.getLong(PREF_BYTES, 0) : 0;
+    }
+
+    public synchronized void add(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        prefs().edit()
+                .putLong(PREF_DAY, today())
+                .putLong(PREF_BYTES, getToday() + bytes)
+                .apply();
+    }
+
+    private static long today() {
+        return LocalDate.now().toEpochDay();
+    }
+
+    private SharedPreferences prefs() {
+        return context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+    }
+}
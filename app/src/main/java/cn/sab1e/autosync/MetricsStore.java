@@ -0,0 +1,208 @@
+package cn.sab1e.autosync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 同步指标的滚动存储。只保留最近 MAX_RUNS 次同步及其文件明细，写入新记录时删除更早的。
+ * 与同步索引分开存放，清除指标不会影响上传状态。
+ */
+public class MetricsStore extends SQLiteOpenHelper {
+
+    static final int MAX_RUNS = 50;
+
+    private static final String DATABASE_NAME = "sync_metrics.db";
+    private static final int DATABASE_VERSION = 2;
+
+    private static final String TABLE_RUNS = "runs";
+    private static final String COLUMN_ID = "_id";
+    private static final String COLUMN_STARTED_AT = "started_at";
+    private static final String COLUMN_FINISHED_AT = "finished_at";
+    private static final String COLUMN_SCAN_MS = "scan_ms";
+    private static final String COLUMN_SCANNED = "scanned";
+    private static final String COLUMN_UPLOADED = "uploaded";
+    private static final String COLUMN_SKIPPED = "skipped";
+    private static final String COLUMN_FAILED = "failed";
+    private static final String COLUMN_RETRIES = "retries";
+    private static final String COLUMN_BYTES = "bytes";
+    private static final String COLUMN_CONNECT_HISTOGRAM = "connect_histogram";
+    private static final String COLUMN_TTFB_HISTOGRAM = "ttfb_histogram";
+    private static final String COLUMN_TOTAL_HISTOGRAM = "total_histogram";
+    private static final String COLUMN_UPLOAD_ORDER = "upload_order";
+    private static final String COLUMN_TIME_TO_UPLOAD_HISTOGRAM = "time_to_upload_histogram";
+    private static final String COLUMN_FRESH_HISTOGRAM = "fresh_time_to_upload_histogram";
+
+    private static final String TABLE_FILES = "files";
+    private static final String COLUMN_RUN_ID = "run_id";
+    private static final String COLUMN_TIMESTAMP = "timestamp";
+    private static final String COLUMN_FILE_NAME = "file_name";
+    private static final String COLUMN_SIZE = "size";
+    private static final String COLUMN_OUTCOME = "outcome";
+    private static final String COLUMN_CONNECT_MS = "connect_ms";
+    private static final String COLUMN_TTFB_MS = "ttfb_ms";
+    private static final String COLUMN_TOTAL_MS = "total_ms";
+    private static final String COLUMN_ERROR = "error";
+
+    private static MetricsStore instance;
+
+    public static synchronized MetricsStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new MetricsStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MetricsStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_RUNS + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_STARTED_AT + " INTEGER NOT NULL, "
+                + COLUMN_FINISHED_AT + " INTEGER NOT NULL, "
+                + COLUMN_SCAN_MS + " INTEGER NOT NULL, "
+                + COLUMN_SCANNED + " INTEGER NOT NULL, "
+                + COLUMN_UPLOADED + " INTEGER NOT NULL, "
+                + COLUMN_SKIPPED + " INTEGER NOT NULL, "
+                + COLUMN_FAILED + " INTEGER NOT NULL, "
+                + COLUMN_RETRIES + " INTEGER NOT NULL, "
+                + COLUMN_BYTES + " INTEGER NOT NULL, "
+                + COLUMN_CONNECT_HISTOGRAM + " TEXT, "
+                + COLUMN_TTFB_HISTOGRAM + " TEXT, "
+                + COLUMN_TOTAL_HISTOGRAM + " TEXT, "
+                + COLUMN_UPLOAD_ORDER + " TEXT, "
+                + COLUMN_TIME_TO_UPLOAD_HISTOGRAM + " TEXT, "
+                + COLUMN_FRESH_HISTOGRAM + " TEXT)");
+        db.execSQL("CREATE TABLE " + TABLE_FILES + " ("
+                + COLUMN_RUN_ID + " INTEGER NOT NULL, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL, "
+                + COLUMN_FILE_NAME + " TEXT, "
+                + COLUMN_SIZE + " INTEGER NOT NULL, "
+                + COLUMN_OUTCOME + " TEXT NOT NULL, "
+                + COLUMN_CONNECT_MS + " INTEGER NOT NULL, "
+                + COLUMN_TTFB_MS + " INTEGER NOT NULL, "
+                + COLUMN_TOTAL_MS + " INTEGER NOT NULL, "
+                + COLUMN_ERROR + " TEXT)");
+        db.execSQL("CREATE INDEX idx_files_run ON " + TABLE_FILES + " (" + COLUMN_RUN_ID + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            db.execSQL("ALTER TABLE " + TABLE_RUNS + " ADD COLUMN " + COLUMN_UPLOAD_ORDER + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_RUNS + " ADD COLUMN " + COLUMN_TIME_TO_UPLOAD_HISTOGRAM + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_RUNS + " ADD COLUMN " + COLUMN_FRESH_HISTOGRAM + " TEXT");
+        }
+    }
+
+    /**
+     * 保存一次同步的指标和文件明细，并删除超出保留数量的旧记录。
+     */
+    public void save(SyncMetrics metrics) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_STARTED_AT, metrics.getStartedAt());
+            values.put(COLUMN_FINISHED_AT, metrics.getFinishedAt());
+            values.put(COLUMN_SCAN_MS, metrics.getScanMillis());
+            values.put(COLUMN_SCANNED, metrics.getScanned());
+            values.put(COLUMN_UPLOADED, metrics.getUploaded());
+            values.put(COLUMN_SKIPPED, metrics.getSkipped());
+            values.put(COLUMN_FAILED, metrics.getFailed());
+            values.put(COLUMN_RETRIES, metrics.getRetries());
+            values.put(COLUMN_BYTES, metrics.getBytes());
+            values.put(COLUMN_CONNECT_HISTOGRAM, metrics.getConnect().encode());
+            values.put(COLUMN_TTFB_HISTOGRAM, metrics.getTtfb().encode());
+            values.put(COLUMN_TOTAL_HISTOGRAM, metrics.getTotal().encode());
+            values.put(COLUMN_UPLOAD_ORDER, metrics.getOrder());
+            values.put(COLUMN_TIME_TO_UPLOAD_HISTOGRAM, metrics.getTimeToUpload().encode());
+            values.put(COLUMN_FRESH_HISTOGRAM, metrics.getFreshTimeToUpload().encode());
+            long runId = db.insert(TABLE_RUNS, null, values);
+            metrics.setId(runId);
+
+            for (SyncMetrics.FileSample sample : metrics.getSamples()) {
+                values.clear();
+                values.put(COLUMN_RUN_ID, runId);
+                values.put(COLUMN_TIMESTAMP, sample.getTimestamp());
+                values.put(COLUMN_FILE_NAME, sample.getFileName());
+                values.put(COLUMN_SIZE, sample.getSize());
+                values.put(COLUMN_OUTCOME, sample.getOutcome());
+                values.put(COLUMN_CONNECT_MS, sample.getConnectMs());
+                values.put(COLUMN_TTFB_MS, sample.getTtfbMs());
+                values.put(COLUMN_TOTAL_MS, sample.getTotalMs());
+                values.put(COLUMN_ERROR, sample.getError());
+                db.insert(TABLE_FILES, null, values);
+            }
+
+            String oldRuns = "SELECT " + COLUMN_ID + " FROM " + TABLE_RUNS + " ORDER BY " + COLUMN_ID
+                    + " DESC LIMIT -1 OFFSET " + MAX_RUNS;
+            db.execSQL("DELETE FROM " + TABLE_FILES + " WHERE " + COLUMN_RUN_ID + " IN (" + oldRuns + ")");
+            db.execSQL("DELETE FROM " + TABLE_RUNS + " WHERE " + COLUMN_ID + " IN (" + oldRuns + ")");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 读取最近的同步记录，新的在前。
+     *
+     * @param withSamples 是否同时读取文件明细（导出时需要，诊断界面只看汇总）
+     */
+    public List<SyncMetrics> load(int limit, boolean withSamples) {
+        SQLiteDatabase db = getReadableDatabase();
+        List<SyncMetrics> runs = new ArrayList<>();
+        Map<Long, SyncMetrics> byId = new HashMap<>();
+        try (Cursor cursor = db.query(TABLE_RUNS, new String[]{COLUMN_ID, COLUMN_STARTED_AT, COLUMN_FINISHED_AT,
+                        COLUMN_SCAN_MS, COLUMN_SCANNED, COLUMN_UPLOADED, COLUMN_SKIPPED, COLUMN_FAILED, COLUMN_RETRIES,
+                        COLUMN_BYTES, COLUMN_CONNECT_HISTOGRAM, COLUMN_TTFB_HISTOGRAM, COLUMN_TOTAL_HISTOGRAM,
+                        COLUMN_UPLOAD_ORDER, COLUMN_TIME_TO_UPLOAD_HISTOGRAM, COLUMN_FRESH_HISTOGRAM},
+                null, null, null, null, COLUMN_ID + " DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                SyncMetrics run = SyncMetrics.restore(cursor.getLong(0), cursor.getLong(1), cursor.getLong(2),
+                        cursor.getLong(3), cursor.getInt(4), cursor.getInt(5), cursor.getInt(6), cursor.getInt(7),
+                        cursor.getInt(8), cursor.getLong(9), cursor.getString(13),
+                        LatencyHistogram.decode(cursor.getString(10)), LatencyHistogram.decode(cursor.getString(11)),
+                        LatencyHistogram.decode(cursor.getString(12)), LatencyHistogram.decode(cursor.getString(14)),
+                        LatencyHistogram.decode(cursor.getString(15)));
+                runs.add(run);
+                byId.put(run.getId(), run);
+            }
+        }
+        if (!withSamples || runs.isEmpty()) {
+            return runs;
+        }
+        try (Cursor cursor = db.query(TABLE_FILES, new String[]{COLUMN_RUN_ID, COLUMN_TIMESTAMP, COLUMN_FILE_NAME,
+                        COLUMN_SIZE, COLUMN_OUTCOME, COLUMN_CONNECT_MS, COLUMN_TTFB_MS, COLUMN_TOTAL_MS, COLUMN_ERROR},
+                COLUMN_RUN_ID + " >= ?", new String[]{String.valueOf(runs.get(runs.size() - 1).getId())},
+                null, null, COLUMN_TIMESTAMP)) {
+            while (cursor.moveToNext()) {
+                SyncMetrics run = byId.get(cursor.getLong(0));
+                if (run != null) {
+                    run.addSample(new SyncMetrics.FileSample(cursor.getLong(1), cursor.getString(2), cursor.getLong(3),
+                            cursor.getString(4), cursor.getLong(5), cursor.getLong(6), cursor.getLong(7),
+                            cursor.getString(8)));
+                }
+            }
+        }
+        return runs;
+    }
+
+    public void clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete(TABLE_FILES, null, null);
+        db.delete(TABLE_RUNS, null, null);
+    }
+}
@@ -0,0 +1,58 @@
+package cn.sab1e.autosync;
+
+import static android.content.Context.MODE_PRIVATE;
+import static cn.sab1e.autosync.MainActivity.PREFS_NAME;
+import static cn.sab1e.autosync.MainActivity.PREF_LAST_SYNC_TIME;
+import static cn.sab1e.autosync.MainActivity.PREF_TOTAL_UPLOAD_NUMBER;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.greenrobot.eventbus.EventBus;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 累计上传数和上次同步时间保存在 SharedPreferences 中，变化时通过 EventBus 通知界面。
+ */
+public class PreferencesStatsStore implements SyncStats.Store {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final Context context;
+
+    public PreferencesStatsStore(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public int loadTotal() {
+        return prefs().getInt(PREF_TOTAL_UPLOAD_NUMBER, 0);
+    }
+
+    @Override
+    public void save(int total, long lastSuccessMillis) {
+        prefs().edit()
+                .putString(PREF_LAST_SYNC_TIME, format(lastSuccessMillis))
+                .putInt(PREF_TOTAL_UPLOAD_NUMBER, total)
+                .apply();
+    }
+
+    @Override
+    public void publish(int total, long lastSuccessMillis) {
+        // 使用 EventBus 发送更新事件
+        EventBus.getDefault().post(new UpdateSyncTimeEvent("上次同步时间: " + format(lastSuccessMillis)));
+        EventBus.getDefault().post(new UpdateUploadNumberEvent("上传总数量: " + total));
+    }
+
+    private SharedPreferences prefs() {
+        return context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+    }
+
+    private static String format(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault()).format(FORMATTER);
+    }
+}
@@ -0,0 +1,56 @@
+package cn.sab1e.autosync;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+
+import androidx.documentfile.provider.DocumentFile;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * 通过 SAF 读取和删除同步目录中的文档。
+ */
+public class SafDocumentStore implements DocumentStore {
+
+    private final Context context;
+    private final ContentResolver resolver;
+
+    public SafDocumentStore(Context context) {
+        this.context = context.getApplicationContext();
+        this.resolver = this.context.getContentResolver();
+    }
+
+    /**
+     * 通过文件描述符直接读取文件通道，关闭通道时一并关闭描述符。
+     */
+    @Override
+    public FileChannel openChannel(SyncEntry entry) throws IOException {
+        ParcelFileDescriptor descriptor = resolver.openFileDescriptor(Uri.parse(entry.getUri()), "r");
+        if (descriptor == null) {
+            throw new FileNotFoundException(entry.getUri());
+        }
+        return new ParcelFileDescriptor.AutoCloseInputStream(descriptor).getChannel();
+    }
+
+    @Override
+    public InputStream openStream(SyncEntry entry) throws IOException {
+        InputStream inputStream = resolver.openInputStream(Uri.parse(entry.getUri()));
+        if (inputStream == null) {
+            throw new FileNotFoundException(entry.getUri());
+        }
+        return inputStream;
+    }
+
+    @Override
+    public boolean delete(String treeUri, String documentId) {
+        Uri documentUri = DocumentsContract.buildDocumentUriUsingTree(Uri.parse(treeUri), documentId);
+        DocumentFile file = DocumentFile.fromSingleUri(context, documentUri);
+        return file == null || !file.exists() || file.delete();
+    }
+}
@@ -0,0 +1,85 @@
+package cn.sab1e.autosync;
+
+import static android.content.Context.MODE_PRIVATE;
+import static cn.sab1e.autosync.MainActivity.PREFS_NAME;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * 设置的异步存储。SharedPreferences 第一次读取时要等整个 XML 文件解析完，放在主线程会拖慢冷启动，
+ * 这里把读取和写入都放到单独的线程，界面通过回调拿到 SyncConfig；Worker 本来就在后台线程，直接调用 {@link #get()}。
+ * 读到的配置缓存在内存中，保存时先更新缓存，界面和同一进程内的 Worker 立即看到新值。
+ */
+public class SettingsStore {
+
+    private static SettingsStore instance;
+
+    private final Context context;
+    // 单线程保证写入按保存的顺序落盘
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile SyncConfig config;
+
+    public static synchronized SettingsStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new SettingsStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SettingsStore(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * 读取当前设置，第一次调用时从磁盘加载，会阻塞，不要在主线程调用。
+     */
+    public SyncConfig get() {
+        SyncConfig current = config;
+        if (current == null) {
+            synchronized (this) {
+                current = config;
+                if (current == null) {
+                    current = SyncConfig.from(new SharedPreferencesSettings(prefs()));
+                    config = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在后台加载设置，callback 在主线程调用。
+     */
+    public void load(Consumer<SyncConfig> callback) {
+        executor.execute(() -> {
+            SyncConfig loaded = get();
+            mainHandler.post(() -> callback.accept(loaded));
+        });
+    }
+
+    /**
+     * 保存设置，立即生效，写入磁盘在后台完成。
+     */
+    public void save(SyncConfig newConfig) {
+        synchronized (this) {
+            config = newConfig;
+        }
+        executor.execute(() -> {
+            SharedPreferences.Editor editor = prefs().edit();
+            newConfig.writeTo(SharedPreferencesSettings.wrap(editor));
+            editor.apply();
+        });
+    }
+
+    private SharedPreferences prefs() {
+        return context.getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+    }
+}
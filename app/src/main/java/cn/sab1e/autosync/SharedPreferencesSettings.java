@@ -0,0 +1,44 @@
+package cn.sab1e.autosync;
+
+import android.content.SharedPreferences;
+
+/**
+ * 以 SharedPreferences 作为 {@link SyncSettings}。
+ */
+public class SharedPreferencesSettings implements SyncSettings {
+
+    private final SharedPreferences prefs;
+
+    public SharedPreferencesSettings(SharedPreferences prefs) {
+        this.prefs = prefs;
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        return prefs.getString(key, defaultValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return prefs.getBoolean(key, defaultValue);
+    }
+
+    /**
+     * 写入在 {@link SharedPreferences.Editor#apply()} 之后才落盘。
+     */
+    public static SyncSettings.Editor wrap(SharedPreferences.Editor editor) {
+        return new SyncSettings.Editor() {
+            @Override
+            public SyncSettings.Editor putString(String key, String value) {
+                editor.putString(key, value);
+                return this;
+            }
+
+            @Override
+            public SyncSettings.Editor putBoolean(String key, boolean value) {
+                editor.putBoolean(key, value);
+                return this;
+            }
+        };
+    }
+}
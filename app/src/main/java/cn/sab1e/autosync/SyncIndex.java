@@ -0,0 +1,471 @@
+package cn.sab1e.autosync;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 本地同步索引：记录每个目录中已见过的文档（documentId、大小、修改时间、上传状态）。
+ * 扫描结果与索引比对后，只有新增、变化或尚未上传成功的文件才会进入上传流程。
+ * 状态表同时作为上传日志：上传前记为 UPLOADING，服务器确认后先记为 UPLOADED（含服务器返回的标识）再删除本地文件，
+ * 删除后记为 DELETED。进程在任一步骤被杀死，下次启动时都能从日志接着完成，不会重复上传已确认的文件。
+ * 上传失败的文件记录失败次数和下次允许重试的时间，到时间前不会再进入上传流程；反复失败的文件被隔离（QUARANTINED），
+ * 只有文件内容变化后才会重新上传。
+ */
+public class SyncIndex extends SQLiteOpenHelper implements UploadJournal {
+
+    private static final String DATABASE_NAME = "sync_index.db";
+    private static final int DATABASE_VERSION = 7;
+    private static final int MAX_QUERY_ARGS = 500;
+
+    private static final String TABLE_FILES = "files";
+    private static final String COLUMN_TREE_URI = "tree_uri";
+    private static final String COLUMN_DOCUMENT_ID = "document_id";
+    private static final String COLUMN_SIZE = "size";
+    private static final String COLUMN_LAST_MODIFIED = "last_modified";
+    private static final String COLUMN_STATE = "state";
+    private static final String COLUMN_UPDATED_AT = "updated_at";
+    private static final String COLUMN_UPLOAD_SESSION = "upload_session";
+    private static final String COLUMN_UPLOAD_OFFSET = "upload_offset";
+    private static final String COLUMN_REMOTE_ID = "remote_id";
+    private static final String COLUMN_ATTEMPTS = "attempts";
+    private static final String COLUMN_NEXT_ATTEMPT_AT = "next_attempt_at";
+    private static final String COLUMN_LAST_ERROR = "last_error";
+
+    private static final String TABLE_CONTENT = "content_hashes";
+    private static final String COLUMN_SHA256 = "sha256";
+    private static final String COLUMN_UPLOADED_AT = "uploaded_at";
+
+    private static final String TABLE_UPLOADS = "uploads";
+    private static final String COLUMN_FILE_NAME = "file_name";
+    private static final String COLUMN_REMOTE_URL = "remote_url";
+    private static final String COLUMN_THUMB_URL = "thumb_url";
+    private static final String COLUMN_DELETE_URL = "delete_url";
+    private static final String COLUMN_MESSAGE = "message";
+    private static final String COLUMN_MIME_TYPE = "mime_type";
+
+    private static SyncIndex instance;
+
+    public static synchronized SyncIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new SyncIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SyncIndex(Context context) {
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * @param name 数据库文件名，测试使用单独的文件
+     */
+    SyncIndex(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_FILES + " ("
+                + COLUMN_TREE_URI + " TEXT NOT NULL, "
+                + COLUMN_DOCUMENT_ID + " TEXT NOT NULL, "
+                + COLUMN_SIZE + " INTEGER NOT NULL, "
+                + COLUMN_LAST_MODIFIED + " INTEGER NOT NULL, "
+                + COLUMN_STATE + " INTEGER NOT NULL, "
+                + COLUMN_UPDATED_AT + " INTEGER NOT NULL, "
+                + COLUMN_UPLOAD_SESSION + " TEXT, "
+                + COLUMN_UPLOAD_OFFSET + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_REMOTE_ID + " TEXT, "
+                + COLUMN_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_NEXT_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0, "
+                + COLUMN_LAST_ERROR + " TEXT, "
+                + "PRIMARY KEY (" + COLUMN_TREE_URI + ", " + COLUMN_DOCUMENT_ID + "))");
+        createContentTable(db);
+        createUploadsTable(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createContentTable(db);
+        }
+        if (oldVersion < 3) {
+            db.execSQL("ALTER TABLE " + TABLE_FILES + " ADD COLUMN " + COLUMN_UPLOAD_SESSION + " TEXT");
+            db.execSQL("ALTER TABLE " + TABLE_FILES + " ADD COLUMN " + COLUMN_UPLOAD_OFFSET + " INTEGER NOT NULL DEFAULT 0");
+        }
+        if (oldVersion < 4) {
+            db.execSQL("ALTER TABLE " + TABLE_FILES + " ADD COLUMN " + COLUMN_REMOTE_ID + " TEXT");
+        }
+        if (oldVersion < 5) {
+            db.execSQL("ALTER TABLE " + TABLE_FILES + " ADD COLUMN " + COLUMN_ATTEMPTS + " INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_FILES + " ADD COLUMN " + COLUMN_NEXT_ATTEMPT_AT + " INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_FILES + " ADD COLUMN " + COLUMN_LAST_ERROR + " TEXT");
+        }
+        if (oldVersion < 6) {
+            createUploadsTable(db);
+        } else if (oldVersion < 7) {
+            db.execSQL("ALTER TABLE " + TABLE_UPLOADS + " ADD COLUMN " + COLUMN_MIME_TYPE + " TEXT");
+        }
+    }
+
+    private void createContentTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_CONTENT + " ("
+                + COLUMN_SHA256 + " TEXT PRIMARY KEY, "
+                + COLUMN_SIZE + " INTEGER NOT NULL, "
+                + COLUMN_UPLOADED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX idx_content_size ON " + TABLE_CONTENT + " (" + COLUMN_SIZE + ")");
+    }
+
+    /**
+     * 上传记录：服务器返回的解析结果，本地文件删除、索引行清理后仍然保留。
+     */
+    private void createUploadsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_UPLOADS + " ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_TREE_URI + " TEXT NOT NULL, "
+                + COLUMN_DOCUMENT_ID + " TEXT NOT NULL, "
+                + COLUMN_FILE_NAME + " TEXT, "
+                + COLUMN_SIZE + " INTEGER NOT NULL, "
+                + COLUMN_MIME_TYPE + " TEXT, "
+                + COLUMN_REMOTE_ID + " TEXT, "
+                + COLUMN_REMOTE_URL + " TEXT, "
+                + COLUMN_THUMB_URL + " TEXT, "
+                + COLUMN_DELETE_URL + " TEXT, "
+                + COLUMN_MESSAGE + " TEXT, "
+                + COLUMN_UPLOADED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX idx_uploads_time ON " + TABLE_UPLOADS + " (" + COLUMN_UPLOADED_AT + ")");
+    }
+
+    /**
+     * 将扫描到的一批文件与索引合并，返回需要处理的条目。边扫描边上传时每读完一个目录调用一次，可以在多个线程上同时调用。
+     * 新文件和大小/修改时间变化的文件会被（重新）记为待上传；未变化的文件如果还在退避等待中或已被隔离，则不返回。
+     * 已不在目录中的记录由完整遍历后的 {@link #prune} 清理。
+     */
+    @Override
+    public List<SyncEntry> merge(String treeUri, List<SyncEntry> batch) {
+        SQLiteDatabase db = getWritableDatabase();
+        Map<String, long[]> known = new HashMap<>();
+        // SQLite 默认最多 999 个绑定参数
+        for (int from = 0; from < batch.size(); from += MAX_QUERY_ARGS) {
+            List<SyncEntry> slice = batch.subList(from, Math.min(batch.size(), from + MAX_QUERY_ARGS));
+            String[] args = new String[slice.size() + 1];
+            StringBuilder placeholders = new StringBuilder();
+            args[0] = treeUri;
+            for (int i = 0; i < slice.size(); i++) {
+                args[i + 1] = slice.get(i).getDocumentId();
+                placeholders.append(i == 0 ? "?" : ",?");
+            }
+            try (Cursor cursor = db.query(TABLE_FILES,
+                    new String[]{COLUMN_DOCUMENT_ID, COLUMN_SIZE, COLUMN_LAST_MODIFIED, COLUMN_STATE, COLUMN_NEXT_ATTEMPT_AT},
+                    COLUMN_TREE_URI + " = ? AND " + COLUMN_DOCUMENT_ID + " IN (" + placeholders + ")",
+                    args, null, null, null)) {
+                while (cursor.moveToNext()) {
+                    known.put(cursor.getString(0), new long[]{cursor.getLong(1), cursor.getLong(2), cursor.getInt(3), cursor.getLong(4)});
+                }
+            }
+        }
+
+        List<SyncEntry> changed = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (SyncEntry entry : batch) {
+                long[] row = known.get(entry.getDocumentId());
+                boolean unchanged = row != null && row[0] == entry.getSize() && row[1] == entry.getLastModified();
+                // 已确认上传但还没删除的文件由 recover 处理，不再上传
+                if (unchanged && (row[2] == STATE_UPLOADED || row[2] == STATE_DELETED || row[2] == STATE_QUARANTINED)) {
+                    continue;
+                }
+                if (unchanged && row[2] == STATE_FAILED && row[3] > now) {
+                    continue;
+                }
+                if (!unchanged) {
+                    ContentValues values = new ContentValues();
+                    values.put(COLUMN_TREE_URI, treeUri);
+                    values.put(COLUMN_DOCUMENT_ID, entry.getDocumentId());
+                    values.put(COLUMN_SIZE, entry.getSize());
+                    values.put(COLUMN_LAST_MODIFIED, entry.getLastModified());
+                    values.put(COLUMN_STATE, STATE_PENDING);
+                    values.put(COLUMN_UPDATED_AT, now);
+                    db.insertWithOnConflict(TABLE_FILES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                changed.add(entry);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return changed;
+    }
+
+    /**
+     * 删除目录下不在 present 中的记录。只能在完整遍历之后调用，否则会丢掉没扫到的文件的状态。
+     */
+    @Override
+    public void prune(String treeUri, Set<String> present) {
+        SQLiteDatabase db = getWritableDatabase();
+        List<String> removed = new ArrayList<>();
+        try (Cursor cursor = db.query(TABLE_FILES, new String[]{COLUMN_DOCUMENT_ID},
+                COLUMN_TREE_URI + " = ?", new String[]{treeUri}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                if (!present.contains(cursor.getString(0))) {
+                    removed.add(cursor.getString(0));
+                }
+            }
+        }
+        db.beginTransaction();
+        try {
+            for (String removedId : removed) {
+                db.delete(TABLE_FILES, COLUMN_TREE_URI + " = ? AND " + COLUMN_DOCUMENT_ID + " = ?",
+                        new String[]{treeUri, removedId});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void setState(String treeUri, String documentId, int state) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATE, state);
+        updateFile(treeUri, documentId, values);
+    }
+
+    @Override
+    public int getAttempts(String treeUri, String documentId) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_FILES, new String[]{COLUMN_ATTEMPTS},
+                COLUMN_TREE_URI + " = ? AND " + COLUMN_DOCUMENT_ID + " = ?",
+                new String[]{treeUri, documentId}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    /**
+     * 记录一次失败。state 为 STATE_FAILED 时 nextAttemptAt 之前不会再上传，为 STATE_QUARANTINED 时直到文件变化。
+     */
+    @Override
+    public void markFailed(String treeUri, String documentId, int state, int attempts, long nextAttemptAt, String error) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATE, state);
+        values.put(COLUMN_ATTEMPTS, attempts);
+        values.put(COLUMN_NEXT_ATTEMPT_AT, nextAttemptAt);
+        values.put(COLUMN_LAST_ERROR, error);
+        updateFile(treeUri, documentId, values);
+    }
+
+    /**
+     * 服务器已确认收到文件。必须在删除本地文件之前提交，崩溃后 recover 会据此补做删除而不是重新上传。
+     * response 为 null 表示内容之前已上传过、本次没有请求服务器，此时不写上传记录。
+     */
+    @Override
+    public void markUploaded(SyncEntry entry, UploadResponse response) {
+        SQLiteDatabase db = getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_STATE, STATE_UPLOADED);
+            values.put(COLUMN_REMOTE_ID, response != null ? response.getRemoteId() : null);
+            updateFile(entry.getTreeUri(), entry.getDocumentId(), values);
+            if (response != null) {
+                ContentValues upload = new ContentValues();
+                upload.put(COLUMN_TREE_URI, entry.getTreeUri());
+                upload.put(COLUMN_DOCUMENT_ID, entry.getDocumentId());
+                upload.put(COLUMN_FILE_NAME, entry.getName());
+                upload.put(COLUMN_SIZE, entry.getSize());
+                upload.put(COLUMN_MIME_TYPE, MimeSniffer.resolve(null, entry.getMimeType(), entry.getName()));
+                upload.put(COLUMN_REMOTE_ID, response.getRemoteId());
+                upload.put(COLUMN_REMOTE_URL, response.getUrl());
+                upload.put(COLUMN_THUMB_URL, response.getThumbUrl());
+                upload.put(COLUMN_DELETE_URL, response.getDeleteUrl());
+                upload.put(COLUMN_MESSAGE, response.getMessage());
+                upload.put(COLUMN_UPLOADED_AT, now);
+                db.insert(TABLE_UPLOADS, null, upload);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 按上传时间倒序分页读取上传记录，从 _id 小于 beforeId 的记录开始，第一页传 Long.MAX_VALUE。
+     * 用 _id 作游标而不是 OFFSET，翻到几万条之后每页的查询代价不变，翻页期间新增的记录也不会让后面的页错位。
+     */
+    public List<UploadRecord> loadUploads(long beforeId, int limit) {
+        List<UploadRecord> records = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_UPLOADS,
+                new String[]{"_id", COLUMN_FILE_NAME, COLUMN_SIZE, COLUMN_REMOTE_URL, COLUMN_THUMB_URL, COLUMN_UPLOADED_AT,
+                        COLUMN_MIME_TYPE},
+                "_id < ?", new String[]{String.valueOf(beforeId)}, null, null, "_id DESC", String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                // 版本 7 之前的记录没有类型，按文件名推断
+                String mimeType = MimeSniffer.resolve(null, cursor.getString(6), cursor.getString(1));
+                records.add(new UploadRecord(cursor.getLong(0), cursor.getString(1), cursor.getLong(2), mimeType,
+                        cursor.getString(3), cursor.getString(4), cursor.getLong(5)));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 一条上传记录，供相册界面展示。
+     */
+    public static class UploadRecord {
+        private final long id;
+        private final String fileName;
+        private final long size;
+        private final String mimeType;
+        private final String url;
+        private final String thumbUrl;
+        private final long uploadedAt;
+
+        UploadRecord(long id, String fileName, long size, String mimeType, String url, String thumbUrl, long uploadedAt) {
+            this.id = id;
+            this.fileName = fileName;
+            this.size = size;
+            this.mimeType = mimeType;
+            this.url = url;
+            this.thumbUrl = thumbUrl;
+            this.uploadedAt = uploadedAt;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getThumbUrl() {
+            return thumbUrl;
+        }
+
+        /**
+         * 缩略图地址，服务器没有返回缩略图时用原图；视频等不是图片的原图解码不了，返回 null。
+         */
+        public String getPreviewUrl() {
+            if (thumbUrl != null && !thumbUrl.isEmpty()) {
+                return thumbUrl;
+            }
+            return mimeType.startsWith("image/") ? url : null;
+        }
+
+        public long getUploadedAt() {
+            return uploadedAt;
+        }
+    }
+
+    /**
+     * 启动时整理上次中断的工作：UPLOADING 的文件不知道服务器是否收到，退回 PENDING 重新上传
+     * （分片上传会从保存的会话续传）；返回已确认上传但本地文件还没删除的记录。
+     */
+    @Override
+    public List<JournalEntry> recover() {
+        SQLiteDatabase db = getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_STATE, STATE_PENDING);
+        values.put(COLUMN_UPDATED_AT, System.currentTimeMillis());
+        db.update(TABLE_FILES, values, COLUMN_STATE + " = ?", new String[]{String.valueOf(STATE_UPLOADING)});
+
+        List<JournalEntry> undeleted = new ArrayList<>();
+        try (Cursor cursor = db.query(TABLE_FILES, new String[]{COLUMN_TREE_URI, COLUMN_DOCUMENT_ID, COLUMN_REMOTE_ID},
+                COLUMN_STATE + " = ?", new String[]{String.valueOf(STATE_UPLOADED)}, null, null, null)) {
+            while (cursor.moveToNext()) {
+                undeleted.add(new JournalEntry(cursor.getString(0), cursor.getString(1), cursor.getString(2)));
+            }
+        }
+        return undeleted;
+    }
+
+    /**
+     * 分片上传的会话记录，键为 documentId。文件内容变化时 merge 会重建该行，旧会话随之作废。
+     */
+    @Override
+    public ChunkedUploader.SessionStore sessionStore(String treeUri) {
+        return new ChunkedUploader.SessionStore() {
+            @Override
+            public String loadSession(String documentId) {
+                try (Cursor cursor = getReadableDatabase().query(TABLE_FILES, new String[]{COLUMN_UPLOAD_SESSION},
+                        COLUMN_TREE_URI + " = ? AND " + COLUMN_DOCUMENT_ID + " = ?",
+                        new String[]{treeUri, documentId}, null, null, null)) {
+                    return cursor.moveToFirst() ? cursor.getString(0) : null;
+                }
+            }
+
+            @Override
+            public void saveSession(String documentId, String sessionUrl, long offset) {
+                ContentValues values = new ContentValues();
+                values.put(COLUMN_UPLOAD_SESSION, sessionUrl);
+                values.put(COLUMN_UPLOAD_OFFSET, offset);
+                updateFile(treeUri, documentId, values);
+            }
+
+            @Override
+            public void clearSession(String documentId) {
+                ContentValues values = new ContentValues();
+                values.putNull(COLUMN_UPLOAD_SESSION);
+                values.put(COLUMN_UPLOAD_OFFSET, 0);
+                updateFile(treeUri, documentId, values);
+            }
+        };
+    }
+
+    private void updateFile(String treeUri, String documentId, ContentValues values) {
+        values.put(COLUMN_UPDATED_AT, System.currentTimeMillis());
+        getWritableDatabase().update(TABLE_FILES, values,
+                COLUMN_TREE_URI + " = ? AND " + COLUMN_DOCUMENT_ID + " = ?",
+                new String[]{treeUri, documentId});
+    }
+
+    /**
+     * 是否上传过同样大小的内容。大小不同的文件不可能重复，这时不需要在上传前额外读一遍文件算摘要。
+     */
+    @Override
+    public boolean hasContentOfSize(long size) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_CONTENT, new String[]{COLUMN_SHA256},
+                COLUMN_SIZE + " = ?", new String[]{String.valueOf(size)}, null, null, null, "1")) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    @Override
+    public boolean hasContent(String sha256) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_CONTENT, new String[]{COLUMN_SHA256},
+                COLUMN_SHA256 + " = ?", new String[]{sha256}, null, null, null, "1")) {
+            return cursor.moveToFirst();
+        }
+    }
+
+    @Override
+    public void recordContent(String sha256, long size) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_SHA256, sha256);
+        values.put(COLUMN_SIZE, size);
+        values.put(COLUMN_UPLOADED_AT, System.currentTimeMillis());
+        getWritableDatabase().insertWithOnConflict(TABLE_CONTENT, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+}
@@ -0,0 +1,56 @@
+package cn.sab1e.autosync;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 安排同步任务的唯一入口。可以重复调用：周期任务用 UPDATE 策略入队，已有任务只更新周期和约束，
+ * 不会重置下次运行的时间，也不会打断正在进行的同步。
+ */
+public final class SyncScheduler {
+
+    public static final String PERIODIC_WORK_NAME = "ImageUploadWork";
+
+    private SyncScheduler() {
+    }
+
+    /**
+     * 按当前目录和设置安排同步：相册变化时立即同步，周期任务作为兜底。没有同步目录时不安排。
+     */
+    public static void schedule(Context context, SyncConfig config, List<SyncSource> sources) {
+        if (sources.isEmpty()) {
+            Log.d("SyncScheduler", "未选择文件夹，无法调度上传任务");
+            return;
+        }
+        MediaChangeWorker.schedule(context, sources);
+
+        // 所有目录共用一个周期任务，按最短的间隔运行，每次只扫描到期的目录
+        long periodMinutes = Long.MAX_VALUE;
+        for (SyncSource source : sources) {
+            periodMinutes = Math.min(periodMinutes, source.getIntervalMinutes());
+        }
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                ImageUploadWorker.class, periodMinutes, TimeUnit.MINUTES)
+                .setConstraints(WorkConstraints.periodic(config.toPolicy()))
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                PERIODIC_WORK_NAME, ExistingPeriodicWorkPolicy.UPDATE, request);
+    }
+
+    /**
+     * 取消周期任务、变化监听和等待充电的补传任务。
+     */
+    public static void cancel(Context context) {
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.cancelUniqueWork(PERIODIC_WORK_NAME);
+        MediaChangeWorker.cancel(context);
+        workManager.cancelUniqueWork(ImageUploadWorker.CHARGING_WORK_NAME);
+    }
+}
@@ -0,0 +1,146 @@
+package cn.sab1e.autosync;
+
+import static android.content.Context.MODE_PRIVATE;
+import static cn.sab1e.autosync.MainActivity.PREFS_NAME;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 同步目录列表，以 JSON 保存在 SharedPreferences 中。
+ * 旧版本只保存了一个 PREF_DIRECTORY_PATH，第一次读取时自动迁移为一个同步目录。
+ */
+public class SyncSourceStore {
+
+    private static final String PREF_LAST_SCAN_PREFIX = "source_last_scan_";
+    private static final long DEFAULT_INTERVAL_MINUTES = 30;
+
+    private final SharedPreferences prefs;
+
+    public SyncSourceStore(Context context) {
+        this.prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+    }
+
+    public synchronized List<SyncSource> load() {
+        String json = prefs.getString(MainActivity.PREF_SYNC_SOURCES, null);
+        if (json == null) {
+            return migrate();
+        }
+        List<SyncSource> sources = new ArrayList<>();
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject object = array.getJSONObject(i);
+                Set<String> extensions = new LinkedHashSet<>();
+                JSONArray extensionArray = object.optJSONArray("extensions");
+                if (extensionArray != null) {
+                    for (int j = 0; j < extensionArray.length(); j++) {
+                        extensions.add(extensionArray.getString(j));
+                    }
+                }
+                SyncFilter filter = new SyncFilter(toList(object.optJSONArray("include")), toList(object.optJSONArray("exclude")),
+                        object.optLong("min_size", 0), object.optLong("max_size", 0), object.optLong("max_age_millis", 0));
+                sources.add(new SyncSource(object.getString("id"), object.getString("tree_uri"),
+                        object.optLong("interval_minutes", DEFAULT_INTERVAL_MINUTES), extensions,
+                        object.optBoolean("recursive", false), filter));
+            }
+        } catch (JSONException e) {
+            Log.e("SyncSourceStore", "同步目录配置已损坏", e);
+        }
+        return sources;
+    }
+
+    public synchronized void save(List<SyncSource> sources) {
+        JSONArray array = new JSONArray();
+        try {
+            for (SyncSource source : sources) {
+                JSONArray extensions = new JSONArray();
+                for (String extension : source.getExtensions()) {
+                    extensions.put(extension);
+                }
+                SyncFilter filter = source.getFilter();
+                array.put(new JSONObject()
+                        .put("id", source.getId())
+                        .put("tree_uri", source.getTreeUri())
+                        .put("interval_minutes", source.getIntervalMinutes())
+                        .put("extensions", extensions)
+                        .put("recursive", source.isRecursive())
+                        .put("include", new JSONArray(filter.getIncludes()))
+                        .put("exclude", new JSONArray(filter.getExcludes()))
+                        .put("min_size", filter.getMinSize())
+                        .put("max_size", filter.getMaxSize() == SyncFilter.UNLIMITED_SIZE ? 0 : filter.getMaxSize())
+                        .put("max_age_millis", filter.getMaxAgeMillis()));
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        prefs.edit().putString(MainActivity.PREF_SYNC_SOURCES, array.toString()).apply();
+    }
+
+    /**
+     * 添加同步目录，同一目录已存在时更新其设置。
+     */
+    public synchronized SyncSource add(String treeUri, long intervalMinutes, Set<String> extensions, boolean recursive,
+                                       SyncFilter filter) {
+        List<SyncSource> sources = load();
+        String id = UUID.randomUUID().toString();
+        for (int i = 0; i < sources.size(); i++) {
+            if (sources.get(i).getTreeUri().equals(treeUri)) {
+                id = sources.remove(i).getId();
+                break;
+            }
+        }
+        SyncSource source = new SyncSource(id, treeUri, intervalMinutes, extensions, recursive, filter);
+        sources.add(source);
+        save(sources);
+        return source;
+    }
+
+    public synchronized void clear() {
+        SharedPreferences.Editor editor = prefs.edit();
+        for (SyncSource source : load()) {
+            editor.remove(PREF_LAST_SCAN_PREFIX + source.getId());
+        }
+        editor.putString(MainActivity.PREF_SYNC_SOURCES, new JSONArray().toString()).apply();
+    }
+
+    public long getLastScan(SyncSource source) {
+        return prefs.getLong(PREF_LAST_SCAN_PREFIX + source.getId(), 0);
+    }
+
+    public void setLastScan(SyncSource source, long millis) {
+        prefs.edit().putLong(PREF_LAST_SCAN_PREFIX + source.getId(), millis).apply();
+    }
+
+    private static List<String> toList(JSONArray array) throws JSONException {
+        List<String> values = new ArrayList<>();
+        if (array != null) {
+            for (int i = 0; i < array.length(); i++) {
+                values.add(array.getString(i));
+            }
+        }
+        return values;
+    }
+
+    private List<SyncSource> migrate() {
+        List<SyncSource> sources = new ArrayList<>();
+        String directoryUri = prefs.getString(MainActivity.PREF_DIRECTORY_PATH, null);
+        if (directoryUri != null) {
+            long interval = SyncConfig.parseInt(prefs.getString(SyncConfig.KEY_INTERVAL, ""), (int) DEFAULT_INTERVAL_MINUTES);
+            sources.add(new SyncSource(UUID.randomUUID().toString(), directoryUri, interval, null, false, null));
+        }
+        save(sources);
+        return sources;
+    }
+}
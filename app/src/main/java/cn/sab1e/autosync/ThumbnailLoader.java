@@ -0,0 +1,315 @@
+package cn.sab1e.autosync;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+
+/**
+ * 相册缩略图的两级缓存：内存中按字节数封顶的 LRU 位图缓存，磁盘上按总大小封顶的 {@link DiskThumbnailCache}。
+ * 两级都没有时才下载，下载后缩放到格子大小、重新压缩成 JPEG 存盘，服务器没有缩略图、只能下载原图时磁盘上也只占几十 KB。
+ * 同一个 URL 同时只有一个请求，后来的调用者挂到已有请求上等结果。
+ * 下载超过 {@link #MAX_DOWNLOAD_BYTES} 就放弃；放弃的和解码不了的 URL 记在一个小的 LRU 里，
+ * 来回滑动时不会一遍遍重新下载同一个大文件。
+ * 任务从队头取：正在显示的格子最后请求、最先加载；预取的任务放在队尾，空闲时才执行。
+ * 快速滑动时排队的任务超过上限，丢弃最早排队的，那些格子早已滑出屏幕。
+ */
+public class ThumbnailLoader {
+
+    public interface Callback {
+        /**
+         * 在主线程调用，加载失败时 bitmap 为 null。
+         */
+        void onThumbnail(String url, Bitmap bitmap);
+    }
+
+    private static final String TAG = "ThumbnailLoader";
+    private static final int THREADS = 3;
+    private static final int MAX_QUEUED = 120;
+    private static final long DISK_CACHE_BYTES = 128L * 1024 * 1024;
+    private static final int JPEG_QUALITY = 80;
+    // 没有缩略图时下载原图，手机照片一般在这以内
+    private static final long MAX_DOWNLOAD_BYTES = 16L * 1024 * 1024;
+    private static final int MAX_UNDECODABLE = 256;
+
+    private static ThumbnailLoader instance;
+
+    private final int targetSize;
+    private final File tempDirectory;
+    private final DiskThumbnailCache diskCache;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final LruCache<String, Boolean> undecodable = new LruCache<>(MAX_UNDECODABLE);
+    private final UploadTransport transport = UploadTransport.create(UploadTransport.TYPE_OKHTTP);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LinkedBlockingDeque<Task> queue = new LinkedBlockingDeque<>();
+    // 进行中和排队中的请求，键为 URL；同步块以它为锁，queue 的增删也在锁内完成
+    private final Map<String, Task> pending = new HashMap<>();
+
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            int targetSize = appContext.getResources().getDisplayMetrics().widthPixels / 3;
+            instance = new ThumbnailLoader(appContext.getCacheDir(), targetSize);
+        }
+        return instance;
+    }
+
+    private ThumbnailLoader(File cacheDir, int targetSize) {
+        this.targetSize = targetSize;
+        this.tempDirectory = cacheDir;
+        this.diskCache = new DiskThumbnailCache(new File(cacheDir, "thumbnails"), DISK_CACHE_BYTES);
+        // 内存缓存占可用堆的 1/8，单位 KB
+        int maxKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 8);
+        this.memoryCache = new LruCache<String, Bitmap>(maxKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount() / 1024;
+            }
+        };
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(this::runTasks, TAG + "-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * 缩略图的边长（像素），相册按它排列格子。
+     */
+    public int getTargetSize() {
+        return targetSize;
+    }
+
+    /**
+     * 加载缩略图显示在屏幕上，内存中有时直接回调，不经过主线程消息队列，绑定格子时不会先闪一下空白。
+     */
+    public void load(String url, Callback callback) {
+        Bitmap cached = memoryCache.get(url);
+        if (cached != null) {
+            callback.onThumbnail(url, cached);
+            return;
+        }
+        if (undecodable.get(url) != null) {
+            callback.onThumbnail(url, null);
+            return;
+        }
+        enqueue(url, callback, true);
+    }
+
+    /**
+     * 提前加载即将滑入屏幕的缩略图，只放进缓存。
+     */
+    public void prefetch(String url) {
+        if (memoryCache.get(url) == null && undecodable.get(url) == null) {
+            enqueue(url, null, false);
+        }
+    }
+
+    /**
+     * 格子被复用时取消它的回调。请求本身不取消，结果仍会进入缓存。
+     */
+    public void cancel(String url, Callback callback) {
+        synchronized (pending) {
+            Task task = pending.get(url);
+            if (task != null) {
+                task.callbacks.remove(callback);
+            }
+        }
+    }
+
+    /**
+     * 系统内存紧张时释放内存缓存，磁盘缓存不受影响。
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            memoryCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+        }
+    }
+
+    private void enqueue(String url, Callback callback, boolean urgent) {
+        synchronized (pending) {
+            Task task = pending.get(url);
+            if (task != null) {
+                if (callback != null) {
+                    task.callbacks.add(callback);
+                }
+                // 排队中的预取任务滑到了屏幕上，移到队头
+                if (urgent && !task.started && queue.remove(task)) {
+                    queue.addFirst(task);
+                }
+                return;
+            }
+            task = new Task(url);
+            pending.put(url, task);
+            if (callback != null) {
+                task.callbacks.add(callback);
+            }
+            if (urgent) {
+                queue.addFirst(task);
+            } else {
+                queue.addLast(task);
+            }
+            while (queue.size() > MAX_QUEUED) {
+                Task dropped = queue.pollLast();
+                pending.remove(dropped.url);
+            }
+        }
+    }
+
+    private void runTasks() {
+        while (true) {
+            Task task;
+            try {
+                task = queue.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (pending) {
+                // 排队时被丢弃的任务
+                if (pending.get(task.url) != task) {
+                    continue;
+                }
+                task.started = true;
+            }
+            Bitmap bitmap = fetch(task.url);
+            if (bitmap != null) {
+                memoryCache.put(task.url, bitmap);
+            }
+            List<Callback> callbacks;
+            synchronized (pending) {
+                pending.remove(task.url);
+                callbacks = new ArrayList<>(task.callbacks);
+            }
+            if (!callbacks.isEmpty()) {
+                mainHandler.post(() -> {
+                    for (Callback callback : callbacks) {
+                        callback.onThumbnail(task.url, bitmap);
+                    }
+                });
+            }
+        }
+    }
+
+    private Bitmap fetch(String url) {
+        File cached = diskCache.get(url);
+        if (cached != null) {
+            Bitmap bitmap = BitmapFactory.decodeFile(cached.getPath());
+            if (bitmap != null) {
+                return bitmap;
+            }
+            // 文件损坏或在解码时被淘汰，重新下载
+            diskCache.remove(url);
+        }
+        File download = null;
+        try {
+            download = File.createTempFile("thumb", ".download", tempDirectory);
+            try (UploadTransport.Response response = transport.execute(new UploadTransport.Request("GET", url))) {
+                if (response.code() / 100 != 2) {
+                    Log.w(TAG, "下载缩略图失败: HTTP " + response.code() + " " + url);
+                    return null;
+                }
+                if (contentLength(response) > MAX_DOWNLOAD_BYTES) {
+                    Log.w(TAG, "文件太大，不下载缩略图: " + url);
+                    undecodable.put(url, Boolean.TRUE);
+                    return null;
+                }
+                try (InputStream inputStream = response.body();
+                     OutputStream outputStream = new FileOutputStream(download)) {
+                    byte[] buffer = new byte[16 * 1024];
+                    long total = 0;
+                    int bytesRead;
+                    while ((bytesRead = inputStream.read(buffer)) != -1) {
+                        total += bytesRead;
+                        // 服务器没有给出长度时边下边数，超过上限就断开，不把整个文件下载完
+                        if (total > MAX_DOWNLOAD_BYTES) {
+                            Log.w(TAG, "文件太大，不下载缩略图: " + url);
+                            undecodable.put(url, Boolean.TRUE);
+                            return null;
+                        }
+                        outputStream.write(buffer, 0, bytesRead);
+                    }
+                }
+            }
+            Bitmap bitmap = decodeScaled(download);
+            if (bitmap == null) {
+                Log.w(TAG, "无法解码缩略图: " + url);
+                undecodable.put(url, Boolean.TRUE);
+                return null;
+            }
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, encoded);
+            diskCache.put(url, encoded.toByteArray());
+            return bitmap;
+        } catch (IOException e) {
+            Log.w(TAG, "下载缩略图失败: " + url, e);
+            return null;
+        } finally {
+            if (download != null) {
+                download.delete();
+            }
+        }
+    }
+
+    /**
+     * @return 响应头中的 Content-Length，没有或无法解析时返回 -1
+     */
+    private static long contentLength(UploadTransport.Response response) {
+        String value = response.header("Content-Length");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 按 2 的幂缩小解码，短边不小于格子边长。
+     */
+    private Bitmap decodeScaled(File file) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int shortEdge = Math.min(options.outWidth, options.outHeight);
+        int sampleSize = 1;
+        while (shortEdge / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeFile(file.getPath(), options);
+    }
+
+    private static class Task {
+        final String url;
+        final List<Callback> callbacks = new ArrayList<>();
+        boolean started;
+
+        Task(String url) {
+            this.url = url;
+        }
+    }
+}
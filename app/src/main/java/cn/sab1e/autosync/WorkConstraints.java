@@ -0,0 +1,46 @@
+package cn.sab1e.autosync;
+
+import androidx.work.Constraints;
+import androidx.work.NetworkType;
+
+/**
+ * 按同步策略生成 WorkManager 的任务约束。
+ */
+public final class WorkConstraints {
+
+    private WorkConstraints() {
+    }
+
+    /**
+     * 周期任务的约束：网络类型和电量不低。
+     */
+    public static Constraints periodic(SyncPolicy policy) {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(networkType(policy))
+                .setRequiresBatteryNotLow(true)
+                .build();
+    }
+
+    /**
+     * 加急任务只支持网络和存储约束，电量在任务开始时再检查。
+     */
+    public static Constraints expedited(SyncPolicy policy) {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(networkType(policy))
+                .build();
+    }
+
+    /**
+     * 积压的文件等到充电时再上传所用的约束。
+     */
+    public static Constraints charging(SyncPolicy policy) {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(networkType(policy))
+                .setRequiresCharging(true)
+                .build();
+    }
+
+    private static NetworkType networkType(SyncPolicy policy) {
+        return policy.isUnmeteredOnly() ? NetworkType.UNMETERED : NetworkType.CONNECTED;
+    }
+}
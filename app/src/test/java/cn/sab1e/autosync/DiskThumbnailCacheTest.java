@@ -0,0 +1,68 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class DiskThumbnailCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void evictsLeastRecentlyReadWhenOverCap() throws Exception {
+        DiskThumbnailCache cache = new DiskThumbnailCache(temporaryFolder.getRoot(), 250);
+        cache.put("https://example.com/a", new byte[100]);
+        cache.put("https://example.com/b", new byte[100]);
+        // 读取 a 之后 b 成为最久没有读取的
+        assertNotNull(cache.get("https://example.com/a"));
+        cache.put("https://example.com/c", new byte[100]);
+
+        assertNotNull(cache.get("https://example.com/a"));
+        assertNull(cache.get("https://example.com/b"));
+        assertNotNull(cache.get("https://example.com/c"));
+        assertEquals(200, cache.size());
+    }
+
+    @Test
+    public void restoresAccessOrderAfterRestart() throws Exception {
+        File directory = temporaryFolder.getRoot();
+        DiskThumbnailCache cache = new DiskThumbnailCache(directory, 1000);
+        File a = cache.put("https://example.com/a", new byte[100]);
+        File b = cache.put("https://example.com/b", new byte[100]);
+        a.setLastModified(2_000_000_000_000L);
+        b.setLastModified(1_000_000_000_000L);
+        // 上次没有写完的临时文件
+        File partial = new File(directory, "partial.1.tmp");
+        assertTrue(partial.createNewFile());
+
+        DiskThumbnailCache reopened = new DiskThumbnailCache(directory, 1000);
+        assertEquals(200, reopened.size());
+        assertFalse(partial.exists());
+
+        // 超出 50 字节，只需淘汰修改时间更早的 b
+        reopened.put("https://example.com/c", new byte[850]);
+        assertNull(reopened.get("https://example.com/b"));
+        assertNotNull(reopened.get("https://example.com/a"));
+        assertNotNull(reopened.get("https://example.com/c"));
+    }
+
+    @Test
+    public void keepsNewestEntryLargerThanCap() throws Exception {
+        DiskThumbnailCache cache = new DiskThumbnailCache(temporaryFolder.getRoot(), 50);
+        cache.put("https://example.com/a", new byte[10]);
+        File big = cache.put("https://example.com/big", new byte[100]);
+
+        assertTrue(big.isFile());
+        assertNull(cache.get("https://example.com/a"));
+        assertEquals(100, cache.size());
+    }
+}
@@ -0,0 +1,51 @@
+package cn.sab1e.autosync;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传响应的流式解析：EasyImage 的扁平格式、Lsky Pro 的嵌套格式，以及带大量无关字段的响应。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ResponseParsingBenchmark {
+
+    private static final String FLAT = "{\"result\":\"success\",\"code\":200,\"url\":\"https:\\/\\/img.example.com\\/i\\/a.jpg\","
+            + "\"srcName\":\"a\",\"thumb\":\"https://img.example.com/t/a.jpg\",\"del\":\"https://img.example.com/del?k=1\"}";
+    private static final String NESTED = "{\"status\":true,\"message\":\"ok\",\"data\":{\"key\":\"abc\",\"name\":\"a.jpg\","
+            + "\"size\":1024,\"mimetype\":\"image/jpeg\",\"links\":{\"url\":\"https://x/abc.png\",\"html\":\"<a>\","
+            + "\"thumbnail_url\":\"https://x/t/abc.png\",\"delete_url\":\"https://x/d/abc\"}}}";
+    private static final String PADDED;
+
+    static {
+        StringBuilder builder = new StringBuilder("{\"code\":200,");
+        for (int i = 0; i < 200; i++) {
+            builder.append("\"extra").append(i).append("\":[1,2,{\"nested\":\"value\"}],");
+        }
+        PADDED = builder.append("\"url\":\"https://x/a.jpg\"}").toString();
+    }
+
+    @Benchmark
+    public UploadResponse flat() throws IOException {
+        return UploadResponse.parse(new StringReader(FLAT));
+    }
+
+    @Benchmark
+    public UploadResponse nested() throws IOException {
+        return UploadResponse.parse(new StringReader(NESTED));
+    }
+
+    @Benchmark
+    public UploadResponse paddedWithUnknownFields() throws IOException {
+        return UploadResponse.parse(new StringReader(PADDED));
+    }
+}
@@ -0,0 +1,106 @@
+package cn.sab1e.autosync;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上传路径上与网络无关的部分：从文件通道读出内容、加 multipart 包装并同时计算 SHA-256。
+ * 输出写到丢弃数据的流，测得的是编码本身的开销，与 ContentHasher 单独读一遍文件的开销对照。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UploadEncodingBenchmark {
+
+    @Param({"65536", "4194304"})
+    public int size;
+
+    private File file;
+    private byte[] data;
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        data = new byte[size];
+        new Random(1).nextBytes(data);
+        file = File.createTempFile("upload", ".jpg");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        randomAccessFile = new RandomAccessFile(file, "r");
+        channel = randomAccessFile.getChannel();
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() throws IOException {
+        randomAccessFile.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public long multipartFromFileChannel() throws IOException {
+        channel.position(0);
+        MultipartBody body = new MultipartBody("boundary")
+                .addFile("image", "a.jpg", "image/jpeg", MultipartBody.Content.of(channel))
+                .addFormField("token", "token");
+        CountingOutputStream out = new CountingOutputStream();
+        body.writeTo(out);
+        return out.count;
+    }
+
+    @Benchmark
+    public void multipartWithDigest(Blackhole blackhole) throws IOException {
+        channel.position(0);
+        MessageDigest digest = ContentHasher.newDigest();
+        MultipartBody body = new MultipartBody("boundary")
+                .addFile("image", "a.jpg", "image/jpeg", MultipartBody.Content.of(channel).digestWith(digest))
+                .addFormField("token", "token");
+        body.writeTo(new CountingOutputStream());
+        blackhole.consume(digest.digest());
+    }
+
+    @Benchmark
+    public String sha256Stream() throws IOException {
+        return ContentHasher.sha256(new ByteArrayInputStream(data));
+    }
+
+    @Benchmark
+    public String sniffHeader() {
+        return MimeSniffer.sniff(data, Math.min(data.length, MimeSniffer.HEADER_SIZE));
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+plugins {
+    `java-library`
+}
+
+// 不依赖 Android 的同步引擎：扫描、筛选、排队、上传和上传日志，app 和 desktop 各自提供存储、设置和日志的实现
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+tasks.test {
+    // 负载测试默认跳过：./gradlew :core:test -PloadTest --tests '*UploadLoadTest'
+    systemProperty("autosync.loadTest", project.hasProperty("loadTest"))
+    (project.findProperty("loadTestFiles") as String?)?.let { files ->
+        systemProperty("autosync.loadTest.files", files)
+    }
+    maxHeapSize = "1g"
+}
+
+dependencies {
+    api(libs.okhttp)
+    implementation(libs.gson)
+    testImplementation(libs.junit)
+    testImplementation(libs.mockwebserver)
+}
@@ -0,0 +1,27 @@
+package cn.sab1e.autosync;
+
+/**
+ * 后端能力声明，上传流程据此选择最快的路径。
+ */
+public class BackendCapabilities {
+
+    private final boolean dedupeLookup;
+    private final boolean batchUpload;
+
+    /**
+     * @param dedupeLookup 是否支持按内容摘要查询服务器上是否已有该文件，为 true 时上传前先计算摘要
+     * @param batchUpload  是否支持一个请求上传多个文件
+     */
+    public BackendCapabilities(boolean dedupeLookup, boolean batchUpload) {
+        this.dedupeLookup = dedupeLookup;
+        this.batchUpload = batchUpload;
+    }
+
+    public boolean isDedupeLookup() {
+        return dedupeLookup;
+    }
+
+    public boolean isBatchUpload() {
+        return batchUpload;
+    }
+}
@@ -0,0 +1,65 @@
+package cn.sab1e.autosync;
+
+/**
+ * 创建上传后端所需的设置。各后端只使用其中与自己相关的字段：
+ * EasyImage、Lsky Pro 使用 url + token，EasyImage 配置了 batchUrl 时小文件合并成批量请求；S3 使用 url（endpoint）+ bucket + region + accessKey/secretKey；
+ * WebDAV 使用 url（目录地址）+ accessKey/secretKey（用户名/密码）。
+ */
+public class BackendConfig {
+
+    private final String type;
+    private final String url;
+    private final String token;
+    private final String accessKey;
+    private final String secretKey;
+    private final String bucket;
+    private final String region;
+    private final String batchUrl;
+
+    /**
+     * @param batchUrl 批量上传地址，不支持或未配置时为 null
+     */
+    public BackendConfig(String type, String url, String token, String accessKey, String secretKey, String bucket,
+                         String region, String batchUrl) {
+        this.type = type;
+        this.url = url;
+        this.token = token;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.bucket = bucket;
+        this.region = region;
+        this.batchUrl = batchUrl;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getAccessKey() {
+        return accessKey;
+    }
+
+    public String getSecretKey() {
+        return secretKey;
+    }
+
+    public String getBucket() {
+        return bucket;
+    }
+
+    public String getRegion() {
+        return region;
+    }
+
+    public String getBatchUrl() {
+        return batchUrl;
+    }
+}
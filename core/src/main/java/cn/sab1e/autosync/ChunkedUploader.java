@@ -0,0 +1,224 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 分片断点续传上传。
+ * <p>
+ * 协议（参考 tus，服务端实现很简单）：
+ * <ol>
+ *     <li>创建会话：{@code POST <endpoint>}，请求头 {@code Upload-Length}、{@code Upload-Name}，
+ *     返回 201 和会话地址 {@code Location}。</li>
+ *     <li>查询进度：{@code HEAD <session>}，返回 200 和已接收字节数 {@code Upload-Offset}；会话不存在返回 404。</li>
+ *     <li>上传分片：{@code PUT <session>}，请求头 {@code Upload-Offset} 为本分片起始位置，
+ *     中间分片返回 204 和新的 {@code Upload-Offset}，最后一个分片返回 200 和与普通上传相同的 JSON；
+ *     起始位置与服务端不一致时返回 409。</li>
+ * </ol>
+ * 会话地址和偏移量通过 {@link SessionStore} 持久化，失败后重试只会发送服务端缺少的分片。
+ */
+public class ChunkedUploader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    public interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    public interface SessionStore {
+        /**
+         * @return 之前保存的会话地址，没有则返回 null
+         */
+        String loadSession(String key);
+
+        void saveSession(String key, String sessionUrl, long offset);
+
+        void clearSession(String key);
+    }
+
+    private final UploadTransport transport;
+    private final String endpoint;
+    private final String token;
+    private final int chunkSize;
+    private final SessionStore sessionStore;
+
+    public ChunkedUploader(UploadTransport transport, String endpoint, String token, int chunkSize, SessionStore sessionStore) {
+        this.transport = transport;
+        this.endpoint = endpoint;
+        this.token = token;
+        this.chunkSize = chunkSize;
+        this.sessionStore = sessionStore;
+    }
+
+    /**
+     * 上传整个文件，返回最后一个分片的响应。
+     *
+     * @param length 文件总长度，必须已知；会话创建时要声明
+     * @param key 标识该文件的会话键，重试时使用同一个键即可续传
+     */
+    public UploadResult upload(StreamOpener opener, long length, String fileName, String key) throws IOException {
+        if (length < 0) {
+            throw new IOException("Chunked upload requires a known length: " + fileName);
+        }
+        String sessionUrl = sessionStore.loadSession(key);
+        long offset = sessionUrl == null ? -1 : queryOffset(sessionUrl);
+        if (offset < 0) {
+            sessionUrl = createSession(length, fileName);
+            offset = 0;
+        }
+        sessionStore.saveSession(key, sessionUrl, offset);
+
+        byte[] chunk = new byte[(int) Math.min(chunkSize, Math.max(length, 1))];
+        try (InputStream inputStream = opener.open()) {
+            skipFully(inputStream, offset);
+            while (true) {
+                // 分片之间响应取消，已确认的偏移量保存在会话里，下次从这里续传
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("上传被取消");
+                }
+                int chunkLength = (int) Math.min(chunk.length, length - offset);
+                readFully(inputStream, chunk, chunkLength);
+
+                UploadTransport.Request request = newRequest("PUT", sessionUrl)
+                        .header("Upload-Offset", String.valueOf(offset))
+                        .body(new ChunkBody(chunk, chunkLength));
+                try (UploadTransport.Response response = transport.execute(request)) {
+                    int responseCode = response.code();
+                    if (responseCode == HttpURLConnection.HTTP_OK) {
+                        // 最后一个分片已被接收，先清掉会话再解析响应
+                        sessionStore.clearSession(key);
+                        UploadResponse uploadResponse = UploadResponse.parse(
+                                new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+                        return new UploadResult(responseCode, uploadResponse, response.timing());
+                    } else if (responseCode == HttpURLConnection.HTTP_NO_CONTENT) {
+                        long confirmed = parseOffset(response);
+                        if (confirmed != offset + chunkLength) {
+                            // 输入流已经读过整个分片，偏移量对不上就无法接着读；停滞或回退的偏移量还会让循环永不结束。
+                            // 丢掉会话，下次重试从头上传
+                            sessionStore.clearSession(key);
+                            throw new IOException("Unexpected Upload-Offset " + confirmed + ", expected " + (offset + chunkLength));
+                        }
+                        offset = confirmed;
+                        sessionStore.saveSession(key, sessionUrl, offset);
+                    } else {
+                        // 409 等情况交给下一次重试，届时通过 HEAD 重新对齐偏移量
+                        throw statusException("Chunk upload failed", response);
+                    }
+                }
+            }
+        }
+    }
+
+    private String createSession(long length, String fileName) throws IOException {
+        UploadTransport.Request request = newRequest("POST", endpoint)
+                .header("Upload-Length", String.valueOf(length))
+                .header("Upload-Name", URLEncoder.encode(fileName, "UTF-8"))
+                .body(new ChunkBody(new byte[0], 0));
+        try (UploadTransport.Response response = transport.execute(request)) {
+            String location = response.header("Location");
+            if (response.code() != HttpURLConnection.HTTP_CREATED || location == null) {
+                throw statusException("Create upload session failed", response);
+            }
+            return new URL(new URL(endpoint), location).toString();
+        }
+    }
+
+    /**
+     * @return 服务端已接收的字节数，会话已失效时返回 -1
+     */
+    private long queryOffset(String sessionUrl) throws IOException {
+        try (UploadTransport.Response response = transport.execute(newRequest("HEAD", sessionUrl))) {
+            int responseCode = response.code();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                return parseOffset(response);
+            } else if (responseCode == HttpURLConnection.HTTP_NOT_FOUND || responseCode == HttpURLConnection.HTTP_GONE) {
+                return -1;
+            }
+            throw statusException("Query upload offset failed", response);
+        }
+    }
+
+    private UploadTransport.Request newRequest(String method, String url) {
+        return new UploadTransport.Request(method, url)
+                .header("Authorization", "Bearer " + token);
+    }
+
+    private static HttpStatusException statusException(String message, UploadTransport.Response response) {
+        return new HttpStatusException(message, response.code(),
+                RetryPolicy.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis()));
+    }
+
+    private static long parseOffset(UploadTransport.Response response) throws IOException {
+        String value = response.header("Upload-Offset");
+        if (value == null) {
+            throw new IOException("Missing Upload-Offset header");
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid Upload-Offset header: " + value);
+        }
+    }
+
+    private static class ChunkBody implements UploadTransport.Body {
+        private final byte[] data;
+        private final int length;
+
+        ChunkBody(byte[] data, int length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        @Override
+        public String contentType() {
+            return "application/offset+octet-stream";
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(data, 0, length);
+        }
+    }
+
+    private static void skipFully(InputStream inputStream, long count) throws IOException {
+        byte[] scratch = null;
+        while (count > 0) {
+            long skipped = inputStream.skip(count);
+            if (skipped <= 0) {
+                // 部分 ContentProvider 的流不支持 skip，退回到读取丢弃
+                if (scratch == null) {
+                    scratch = new byte[8192];
+                }
+                int read = inputStream.read(scratch, 0, (int) Math.min(scratch.length, count));
+                if (read == -1) {
+                    throw new IOException("Unexpected end of stream while skipping");
+                }
+                skipped = read;
+            }
+            count -= skipped;
+        }
+    }
+
+    private static void readFully(InputStream inputStream, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = inputStream.read(buffer, offset, length - offset);
+            if (read == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            offset += read;
+        }
+    }
+}
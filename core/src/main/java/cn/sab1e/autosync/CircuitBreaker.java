@@ -0,0 +1,50 @@
+package cn.sab1e.autosync;
+
+/**
+ * 同步级别的熔断器。服务器连续不可达或认证失败时打开，之后的文件直接跳过，
+ * 不会每个文件都等一次连接超时。任何一次成功都会清零计数。
+ */
+public class CircuitBreaker {
+
+    private final int threshold;
+    private int consecutiveFailures;
+    private RetryPolicy.FailureKind trippedBy;
+
+    /**
+     * @param threshold 连续多少次服务器不可达后打开，认证失败总是立即打开
+     */
+    public CircuitBreaker(int threshold) {
+        this.threshold = threshold;
+    }
+
+    public synchronized void recordSuccess() {
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure(RetryPolicy.FailureKind kind) {
+        if (trippedBy != null) {
+            return;
+        }
+        if (kind == RetryPolicy.FailureKind.AUTH) {
+            trippedBy = kind;
+        } else if (kind == RetryPolicy.FailureKind.UNREACHABLE) {
+            if (++consecutiveFailures >= threshold) {
+                trippedBy = kind;
+            }
+        } else {
+            // 服务器有响应，说明网络是通的
+            consecutiveFailures = 0;
+        }
+    }
+
+    public synchronized boolean isOpen() {
+        return trippedBy != null;
+    }
+
+    /**
+     * 导致熔断的失败类型，未熔断时为 null。
+     */
+    public synchronized RetryPolicy.FailureKind getTrippedBy() {
+        return trippedBy;
+    }
+}
@@ -0,0 +1,17 @@
+package cn.sab1e.autosync;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * 建立连接（TCP/TLS）时超时，一个字节都还没有发出。服务器被防火墙丢包或地址不可达时出现，
+ * 与发送、等待响应时的超时不同，换一个文件重试也不会成功。
+ */
+public class ConnectTimeoutException extends SocketTimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    public ConnectTimeoutException(String message, Throwable cause) {
+        super(message);
+        initCause(cause);
+    }
+}
@@ -0,0 +1,23 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * 同步目录中文件的读取和删除。app 中通过 SAF 访问，desktop 中直接访问本地文件系统。
+ */
+public interface DocumentStore {
+
+    /**
+     * 以文件通道打开，上传时按位置读取文件头并直接从通道发送。
+     */
+    FileChannel openChannel(SyncEntry entry) throws IOException;
+
+    InputStream openStream(SyncEntry entry) throws IOException;
+
+    /**
+     * 删除已上传的文件，文件已不存在时也返回 true。只知道日志记录时（补做删除）也能调用，所以按目录和 documentId 定位。
+     */
+    boolean delete(String treeUri, String documentId);
+}
@@ -0,0 +1,147 @@
+package cn.sab1e.autosync;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Queue;
+
+/**
+ * 按来源轮转出队的上传队列。
+ * 每个来源有自己的子队列，出队时依次从各来源取一个，
+ * 某个目录积压大量文件时其他目录的新文件也能及时上传。
+ * 子队列默认先进先出，指定比较器后按比较器的顺序出队（见 {@link UploadOrder}）。
+ */
+public class FairUploadQueue<T> implements Iterable<T> {
+
+    private final Map<String, Queue<T>> queues = new LinkedHashMap<>();
+    private final Comparator<? super T> order;
+    private Iterator<String> cursor;
+    private int size;
+    private boolean finished;
+
+    public FairUploadQueue() {
+        this(null);
+    }
+
+    /**
+     * @param order 来源内部的出队顺序，为 null 时先进先出
+     */
+    public FairUploadQueue(Comparator<? super T> order) {
+        this.order = order;
+    }
+
+    public synchronized void add(String source, T item) {
+        Queue<T> queue = queues.get(source);
+        if (queue == null) {
+            queue = order != null ? new PriorityQueue<>(order) : new ArrayDeque<>();
+            queues.put(source, queue);
+            // 结构变化后重新从头轮转
+            cursor = null;
+        }
+        queue.add(item);
+        size++;
+        notifyAll();
+    }
+
+    /**
+     * 生产方不再添加文件时调用，之后 {@link #take} 在队列取空时返回 null。
+     */
+    public synchronized void finish() {
+        finished = true;
+        notifyAll();
+    }
+
+    /**
+     * 取出下一个文件，队列暂时为空时等待生产方添加；{@link #finish} 之后取空时返回 null。
+     */
+    public synchronized T take() throws InterruptedException {
+        while (size == 0 && !finished) {
+            wait();
+        }
+        return poll();
+    }
+
+    /**
+     * 用 {@link #take} 逐个出队的遍历，用于边扫描边上传。等待时被中断则结束遍历并保留中断标记。
+     */
+    public Iterable<T> takeAll() {
+        return () -> new Iterator<T>() {
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T item = next;
+                next = null;
+                return item;
+            }
+        };
+    }
+
+    /**
+     * 取出下一个文件，队列为空时返回 null。
+     */
+    public synchronized T poll() {
+        if (size == 0) {
+            return null;
+        }
+        while (true) {
+            if (cursor == null || !cursor.hasNext()) {
+                cursor = queues.keySet().iterator();
+            }
+            Queue<T> queue = queues.get(cursor.next());
+            T item = queue.poll();
+            if (item != null) {
+                size--;
+                return item;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 逐个出队的迭代器，遍历会清空队列。
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private T next = poll();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                T item = next;
+                next = poll();
+                return item;
+            }
+        };
+    }
+}
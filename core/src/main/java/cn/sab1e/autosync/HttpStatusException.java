@@ -0,0 +1,31 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+
+/**
+ * 服务器返回了非预期的状态码。
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int responseCode;
+    private final long retryAfterMillis;
+
+    public HttpStatusException(String message, int responseCode, long retryAfterMillis) {
+        super(message + ": " + responseCode);
+        this.responseCode = responseCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * 服务器要求的最短等待时间，没有时为 -1。
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,122 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * EasyImage 后端：multipart 的 image 字段上传，token 同时放在表单和 Bearer 头里。
+ * <p>
+ * 配置了批量上传地址时支持一个请求上传多个文件（服务端扩展，与分片续传一样需要自行部署）：
+ * {@code POST <batchUrl>}，每个文件一个 {@code image[]} 字段，返回 200 和 JSON 数组（或 {"data":[...]}），
+ * 数组元素与单文件上传的响应格式相同，顺序与请求中的文件一致。
+ */
+public class ImageUploader implements UploadBackend {
+
+    // EasyImage 不提供查询接口，单文件大小限制由服务端配置决定
+    private static final BackendCapabilities CAPABILITIES =
+            new BackendCapabilities(false, false);
+    private static final BackendCapabilities BATCH_CAPABILITIES =
+            new BackendCapabilities(false, true);
+
+    private String token;
+    private String uploadUrl;
+    private final String batchUploadUrl;
+    private final UploadTransport transport; // 同一次同步中共享，复用连接
+
+    // 构造函数，传入传输层、token 和上传 URL
+    public ImageUploader(UploadTransport transport, String token, String uploadUrl) {
+        this(transport, token, uploadUrl, null);
+    }
+
+    /**
+     * @param batchUploadUrl 批量上传地址，为 null 或空时不支持批量上传
+     */
+    public ImageUploader(UploadTransport transport, String token, String uploadUrl, String batchUploadUrl) {
+        this.transport = transport;
+        this.token = token;
+        this.uploadUrl = uploadUrl;
+        this.batchUploadUrl = batchUploadUrl == null || batchUploadUrl.isEmpty() ? null : batchUploadUrl;
+    }
+
+    @Override
+    public BackendCapabilities capabilities() {
+        return batchUploadUrl != null ? BATCH_CAPABILITIES : CAPABILITIES;
+    }
+
+    @Override
+    public UploadResult upload(MultipartBody.Content content, String fileName, String contentType) {
+        SyncLog.i("ImageUploader", "uploadImage Start!");
+        String boundary = UUID.randomUUID().toString();
+        String charset = "UTF-8";
+
+        // 上传文件部分和其他表单字段，例如 token
+        MultipartBody body = new MultipartBody(boundary)
+                .addFile("image", fileName, contentType, content)
+                .addFormField("token", token);
+
+        UploadTransport.Request request = new UploadTransport.Request("POST", uploadUrl)
+                .header("Authorization", "Bearer " + token)
+                .body(body);
+
+        try (UploadTransport.Response response = transport.execute(request)) {
+            int responseCode = response.code();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                // 边读边解析，不把整个响应拼成字符串
+                UploadResponse uploadResponse = UploadResponse.parse(new InputStreamReader(response.body(), charset));
+                SyncLog.i("ImageUploader", "Upload successful: " + uploadResponse + " (" + response.timing() + ")");
+
+                return new UploadResult(responseCode, uploadResponse, response.timing());
+            } else {
+                SyncLog.e("ImageUploader", "Upload failed with response code: " + responseCode + " (" + response.timing() + ")");
+                return new UploadResult(responseCode, null, response.timing(),
+                        RetryPolicy.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis()));
+            }
+        } catch (IOException e) {
+            SyncLog.e("ImageUploader", "Upload failed", e);
+            return UploadResult.error(e);
+        }
+    }
+
+    @Override
+    public List<UploadResult> uploadBatch(List<BatchItem> items) {
+        if (batchUploadUrl == null || items.size() == 1) {
+            return UploadBackend.super.uploadBatch(items);
+        }
+        MultipartBody body = new MultipartBody(UUID.randomUUID().toString());
+        for (BatchItem item : items) {
+            body.addFile("image[]", item.getFileName(), item.getContentType(), item.getContent());
+        }
+        body.addFormField("token", token);
+        UploadTransport.Request request = new UploadTransport.Request("POST", batchUploadUrl)
+                .header("Authorization", "Bearer " + token)
+                .body(body);
+
+        try (UploadTransport.Response response = transport.execute(request)) {
+            int responseCode = response.code();
+            if (responseCode != HttpURLConnection.HTTP_OK) {
+                SyncLog.e("ImageUploader", "Batch upload failed with response code: " + responseCode + " (" + response.timing() + ")");
+                UploadResult failed = new UploadResult(responseCode, null, response.timing(),
+                        RetryPolicy.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis()));
+                return Collections.nCopies(items.size(), failed);
+            }
+            List<UploadResponse> responses = UploadResponse.parseList(new InputStreamReader(response.body(), "UTF-8"));
+            SyncLog.i("ImageUploader", "Batch upload of " + items.size() + " files returned " + responses.size()
+                    + " results (" + response.timing() + ")");
+            List<UploadResult> results = new ArrayList<>(items.size());
+            for (int i = 0; i < items.size(); i++) {
+                // 服务端返回的结果比文件少时，缺少结果的文件按临时错误处理，稍后重传
+                results.add(i < responses.size() ? new UploadResult(responseCode, responses.get(i), response.timing())
+                        : UploadResult.error(new IOException("Batch response has no result for " + items.get(i).getFileName())));
+            }
+            return results;
+        } catch (IOException e) {
+            SyncLog.e("ImageUploader", "Batch upload failed: " + e.getMessage());
+            return Collections.nCopies(items.size(), UploadResult.error(e));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package cn.sab1e.autosync;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时直方图（毫秒）。桶的上界按 2 的幂增长：第 0 桶为 [0, 1]，第 i 桶为 (2^(i-1), 2^i]，最后一桶收纳更长的耗时。
+ * 记录只是一次原子自增，多个上传线程可以同时写入；分位数按桶上界估算，误差不超过一倍，足够判断瓶颈在哪一段。
+ * 最大的有界桶约 12 天，也能容纳积压文件从发现到上传完成的耗时。
+ */
+public class LatencyHistogram {
+
+    public static final int BUCKETS = 32;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sumMillis = new AtomicLong();
+
+    /**
+     * 记录一次耗时，负数表示该阶段不存在（例如复用连接时的 connect），忽略。
+     */
+    public void record(long millis) {
+        if (millis < 0) {
+            return;
+        }
+        counts.incrementAndGet(bucketOf(millis));
+        sumMillis.addAndGet(millis);
+    }
+
+    static int bucketOf(long millis) {
+        if (millis <= 1) {
+            return 0;
+        }
+        int bucket = 64 - Long.numberOfLeadingZeros(millis - 1);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /**
+     * 第 bucket 桶的上界（毫秒），最后一桶没有上界，返回 Long.MAX_VALUE。
+     */
+    static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    public long mean() {
+        long count = count();
+        return count == 0 ? -1 : sumMillis.get() / count;
+    }
+
+    /**
+     * 估算分位数，quantile 取 0~1，例如 0.95。没有数据时返回 -1；落在最后一桶时返回倒数第二桶的上界。
+     */
+    public long percentile(double quantile) {
+        long count = count();
+        if (count == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return upperBound(Math.min(i, BUCKETS - 2));
+            }
+        }
+        return upperBound(BUCKETS - 2);
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.addAndGet(i, other.counts.get(i));
+        }
+        sumMillis.addAndGet(other.sumMillis.get());
+    }
+
+    /**
+     * 编码为 "sum;c0,c1,..."，用于保存到数据库。
+     */
+    public String encode() {
+        StringBuilder builder = new StringBuilder().append(sumMillis.get()).append(';');
+        for (int i = 0; i < BUCKETS; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(counts.get(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 解析 encode() 的结果，格式不对时返回空直方图。桶数较少的旧记录按前面的桶读入。
+     */
+    public static LatencyHistogram decode(String value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (value == null) {
+            return histogram;
+        }
+        int separator = value.indexOf(';');
+        if (separator < 0) {
+            return histogram;
+        }
+        try {
+            histogram.sumMillis.set(Long.parseLong(value.substring(0, separator)));
+            String[] parts = value.substring(separator + 1).split(",");
+            for (int i = 0; i < Math.min(parts.length, BUCKETS); i++) {
+                histogram.counts.set(i, Long.parseLong(parts[i]));
+            }
+        } catch (NumberFormatException e) {
+            return new LatencyHistogram();
+        }
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        if (count() == 0) {
+            return "-";
+        }
+        return "p50=" + percentile(0.5) + "ms p95=" + percentile(0.95) + "ms p99=" + percentile(0.99) + "ms";
+    }
+}
@@ -0,0 +1,57 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Lsky Pro 后端：{@code POST <url>/api/v1/upload}，multipart 的 file 字段，Bearer token 认证。
+ * 响应中的 data.key 作为远程标识，data.links.url 为图片地址。
+ */
+public class LskyBackend implements UploadBackend {
+
+    private static final BackendCapabilities CAPABILITIES =
+            new BackendCapabilities(false, false);
+
+    private final UploadTransport transport;
+    private final String uploadUrl;
+    private final String token;
+
+    /**
+     * @param baseUrl 站点地址，例如 https://lsky.example.com
+     */
+    public LskyBackend(UploadTransport transport, String baseUrl, String token) {
+        this.transport = transport;
+        this.uploadUrl = baseUrl.replaceAll("/+$", "") + "/api/v1/upload";
+        this.token = token;
+    }
+
+    @Override
+    public BackendCapabilities capabilities() {
+        return CAPABILITIES;
+    }
+
+    @Override
+    public UploadResult upload(MultipartBody.Content content, String fileName, String contentType) {
+        MultipartBody body = new MultipartBody(UUID.randomUUID().toString())
+                .addFile("file", fileName, contentType, content);
+        UploadTransport.Request request = new UploadTransport.Request("POST", uploadUrl)
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "application/json")
+                .body(body);
+
+        try (UploadTransport.Response response = transport.execute(request)) {
+            int responseCode = response.code();
+            if (responseCode == HttpURLConnection.HTTP_OK) {
+                UploadResponse uploadResponse = UploadResponse.parse(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+                return new UploadResult(responseCode, uploadResponse, response.timing());
+            }
+            return new UploadResult(responseCode, null, response.timing(),
+                    RetryPolicy.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis()));
+        } catch (IOException e) {
+            return UploadResult.error(e);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package cn.sab1e.autosync;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 保存在内存中的 {@link UploadJournal}，合并规则与 SyncIndex 相同，测试直接使用。
+ * 子类通过 on* 回调把变化持久化（desktop 的 FileUploadJournal），回调在持有锁时调用，顺序与变化顺序一致。
+ * 不保存服务器返回的上传记录，需要时看日志。
+ */
+public class MemoryUploadJournal implements UploadJournal {
+
+    private final Map<String, Row> rows = new HashMap<>();
+    // 内容摘要 -> 大小
+    private final Map<String, Long> contents = new HashMap<>();
+    // 已上传内容的大小，内容记录不会删除，不需要计数
+    private final Set<Long> contentSizes = new HashSet<>();
+
+    @Override
+    public synchronized List<SyncEntry> merge(String treeUri, List<SyncEntry> batch) {
+        List<SyncEntry> changed = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (SyncEntry entry : batch) {
+            String key = key(treeUri, entry.getDocumentId());
+            Row row = rows.get(key);
+            boolean unchanged = row != null && row.size == entry.getSize() && row.lastModified == entry.getLastModified();
+            if (unchanged && (row.state == STATE_UPLOADED || row.state == STATE_DELETED || row.state == STATE_QUARANTINED)) {
+                continue;
+            }
+            if (unchanged && row.state == STATE_FAILED && row.nextAttemptAt > now) {
+                continue;
+            }
+            if (!unchanged) {
+                Row added = new Row(treeUri, entry.getDocumentId(), entry.getSize(), entry.getLastModified());
+                rows.put(key, added);
+                onRowChanged(added);
+            }
+            changed.add(entry);
+        }
+        return changed;
+    }
+
+    @Override
+    public synchronized void prune(String treeUri, Set<String> present) {
+        Iterator<Row> iterator = rows.values().iterator();
+        while (iterator.hasNext()) {
+            Row row = iterator.next();
+            if (row.treeUri.equals(treeUri) && !present.contains(row.documentId)) {
+                iterator.remove();
+                onRowRemoved(row);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void setState(String treeUri, String documentId, int state) {
+        Row row = rows.get(key(treeUri, documentId));
+        if (row != null) {
+            row.state = state;
+            onRowChanged(row);
+        }
+    }
+
+    public synchronized int getState(String treeUri, String documentId) {
+        Row row = rows.get(key(treeUri, documentId));
+        return row != null ? row.state : -1;
+    }
+
+    @Override
+    public synchronized int getAttempts(String treeUri, String documentId) {
+        Row row = rows.get(key(treeUri, documentId));
+        return row != null ? row.attempts : 0;
+    }
+
+    @Override
+    public synchronized void markFailed(String treeUri, String documentId, int state, int attempts, long nextAttemptAt, String error) {
+        Row row = rows.get(key(treeUri, documentId));
+        if (row != null) {
+            row.state = state;
+            row.attempts = attempts;
+            row.nextAttemptAt = nextAttemptAt;
+            onRowChanged(row);
+        }
+    }
+
+    @Override
+    public synchronized void markUploaded(SyncEntry entry, UploadResponse response) {
+        Row row = rows.get(key(entry.getTreeUri(), entry.getDocumentId()));
+        if (row != null) {
+            row.state = STATE_UPLOADED;
+            row.remoteId = response != null ? response.getRemoteId() : null;
+            onRowChanged(row);
+        }
+    }
+
+    @Override
+    public synchronized List<JournalEntry> recover() {
+        List<JournalEntry> undeleted = new ArrayList<>();
+        for (Row row : rows.values()) {
+            if (row.state == STATE_UPLOADING) {
+                row.state = STATE_PENDING;
+                onRowChanged(row);
+            } else if (row.state == STATE_UPLOADED) {
+                undeleted.add(new JournalEntry(row.treeUri, row.documentId, row.remoteId));
+            }
+        }
+        return undeleted;
+    }
+
+    @Override
+    public ChunkedUploader.SessionStore sessionStore(String treeUri) {
+        return new ChunkedUploader.SessionStore() {
+            @Override
+            public String loadSession(String documentId) {
+                synchronized (MemoryUploadJournal.this) {
+                    Row row = rows.get(key(treeUri, documentId));
+                    return row != null ? row.uploadSession : null;
+                }
+            }
+
+            @Override
+            public void saveSession(String documentId, String sessionUrl, long offset) {
+                synchronized (MemoryUploadJournal.this) {
+                    Row row = rows.get(key(treeUri, documentId));
+                    if (row != null) {
+                        row.uploadSession = sessionUrl;
+                        onRowChanged(row);
+                    }
+                }
+            }
+
+            @Override
+            public void clearSession(String documentId) {
+                saveSession(documentId, null, 0);
+            }
+        };
+    }
+
+    @Override
+    public synchronized boolean hasContentOfSize(long size) {
+        return contentSizes.contains(size);
+    }
+
+    @Override
+    public synchronized boolean hasContent(String sha256) {
+        return contents.containsKey(sha256);
+    }
+
+    @Override
+    public synchronized void recordContent(String sha256, long size) {
+        if (contents.put(sha256, size) == null) {
+            contentSizes.add(size);
+            onContentRecorded(sha256, size);
+        }
+    }
+
+    /**
+     * 记录新增或变化后调用。
+     */
+    protected void onRowChanged(Row row) {
+    }
+
+    protected void onRowRemoved(Row row) {
+    }
+
+    protected void onContentRecorded(String sha256, long size) {
+    }
+
+    /**
+     * 载入持久化的记录，不触发回调。同一文件的记录后载入的覆盖先载入的。
+     */
+    protected synchronized void restoreRow(Row row) {
+        rows.put(key(row.treeUri, row.documentId), row);
+    }
+
+    protected synchronized void restoreRemoved(String treeUri, String documentId) {
+        rows.remove(key(treeUri, documentId));
+    }
+
+    protected synchronized void restoreContent(String sha256, long size) {
+        contents.put(sha256, size);
+        contentSizes.add(size);
+    }
+
+    /**
+     * 当前所有记录的副本，用于写快照。
+     */
+    protected synchronized List<Row> snapshotRows() {
+        List<Row> copy = new ArrayList<>();
+        for (Row row : rows.values()) {
+            copy.add(row.copy());
+        }
+        return copy;
+    }
+
+    protected synchronized Map<String, Long> snapshotContents() {
+        return new HashMap<>(contents);
+    }
+
+    private static String key(String treeUri, String documentId) {
+        return treeUri + '\n' + documentId;
+    }
+
+    /**
+     * 一个文件的索引记录。
+     */
+    protected static class Row {
+        public final String treeUri;
+        public final String documentId;
+        public final long size;
+        public final long lastModified;
+        public int state = STATE_PENDING;
+        public int attempts;
+        public long nextAttemptAt;
+        public String remoteId;
+        public String uploadSession;
+
+        public Row(String treeUri, String documentId, long size, long lastModified) {
+            this.treeUri = treeUri;
+            this.documentId = documentId;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        Row copy() {
+            Row copy = new Row(treeUri, documentId, size, lastModified);
+            copy.state = state;
+            copy.attempts = attempts;
+            copy.nextAttemptAt = nextAttemptAt;
+            copy.remoteId = remoteId;
+            copy.uploadSession = uploadSession;
+            return copy;
+        }
+    }
+}
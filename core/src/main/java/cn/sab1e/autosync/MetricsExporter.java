@@ -0,0 +1,101 @@
+package cn.sab1e.autosync;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * 把同步指标导出为 JSON 或 CSV，便于在电脑上分析。
+ * JSON 包含每次同步的汇总、出队顺序、直方图原始计数和文件明细；CSV 每行一个文件，附带所属同步的开始时间，可直接导入表格。
+ */
+public final class MetricsExporter {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.95, 0.99};
+
+    private MetricsExporter() {
+    }
+
+    public static void writeJson(List<SyncMetrics> runs, Writer writer) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("runs").beginArray();
+        for (SyncMetrics run : runs) {
+            json.beginObject();
+            json.name("startedAt").value(run.getStartedAt());
+            json.name("durationMs").value(run.getDurationMillis());
+            json.name("scanMs").value(run.getScanMillis());
+            json.name("scanned").value(run.getScanned());
+            json.name("uploaded").value(run.getUploaded());
+            json.name("skipped").value(run.getSkipped());
+            json.name("failed").value(run.getFailed());
+            json.name("retries").value(run.getRetries());
+            json.name("bytes").value(run.getBytes());
+            json.name("throughputBytesPerSecond").value(run.getThroughput());
+            json.name("order").value(run.getOrder());
+            writeHistogram(json, "connectMs", run.getConnect());
+            writeHistogram(json, "ttfbMs", run.getTtfb());
+            writeHistogram(json, "totalMs", run.getTotal());
+            writeHistogram(json, "timeToUploadMs", run.getTimeToUpload());
+            writeHistogram(json, "freshTimeToUploadMs", run.getFreshTimeToUpload());
+            json.name("files").beginArray();
+            for (SyncMetrics.FileSample sample : run.getSamples()) {
+                json.beginObject();
+                json.name("timestamp").value(sample.getTimestamp());
+                json.name("name").value(sample.getFileName());
+                json.name("size").value(sample.getSize());
+                json.name("outcome").value(sample.getOutcome());
+                json.name("connectMs").value(sample.getConnectMs());
+                json.name("ttfbMs").value(sample.getTtfbMs());
+                json.name("totalMs").value(sample.getTotalMs());
+                if (sample.getError() != null) {
+                    json.name("error").value(sample.getError());
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeHistogram(JsonWriter json, String name, LatencyHistogram histogram) throws IOException {
+        json.name(name).beginObject();
+        json.name("count").value(histogram.count());
+        json.name("mean").value(histogram.mean());
+        for (double quantile : QUANTILES) {
+            json.name("p" + Math.round(quantile * 100)).value(histogram.percentile(quantile));
+        }
+        json.name("histogram").value(histogram.encode());
+        json.endObject();
+    }
+
+    public static void writeCsv(List<SyncMetrics> runs, Writer writer) throws IOException {
+        writer.write("run_started_at,timestamp,name,size,outcome,connect_ms,ttfb_ms,total_ms,error\n");
+        for (SyncMetrics run : runs) {
+            for (SyncMetrics.FileSample sample : run.getSamples()) {
+                writer.write(run.getStartedAt() + "," + sample.getTimestamp() + "," + csv(sample.getFileName()) + ","
+                        + sample.getSize() + "," + sample.getOutcome() + "," + sample.getConnectMs() + ","
+                        + sample.getTtfbMs() + "," + sample.getTotalMs() + "," + csv(sample.getError()) + "\n");
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * 按 RFC 4180 转义：含逗号、引号或换行的字段加引号，引号写两遍。
+     */
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
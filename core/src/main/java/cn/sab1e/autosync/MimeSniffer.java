@@ -0,0 +1,148 @@
+package cn.sab1e.autosync;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 根据文件头的魔数判断文件类型。
+ * DocumentsProvider 报告的 MIME 类型来自扩展名或媒体库，改过扩展名或没有扩展名的文件经常是错的，
+ * 上传时优先使用文件头判断出的类型。
+ */
+public final class MimeSniffer {
+
+    /**
+     * 判断所需的文件头字节数。
+     */
+    public static final int HEADER_SIZE = 32;
+    public static final String OCTET_STREAM = "application/octet-stream";
+
+    private static final Map<String, String> EXTENSION_TYPES = new HashMap<>();
+
+    static {
+        EXTENSION_TYPES.put("jpg", "image/jpeg");
+        EXTENSION_TYPES.put("jpeg", "image/jpeg");
+        EXTENSION_TYPES.put("png", "image/png");
+        EXTENSION_TYPES.put("gif", "image/gif");
+        EXTENSION_TYPES.put("bmp", "image/bmp");
+        EXTENSION_TYPES.put("webp", "image/webp");
+        EXTENSION_TYPES.put("heic", "image/heic");
+        EXTENSION_TYPES.put("heif", "image/heif");
+        EXTENSION_TYPES.put("avif", "image/avif");
+        EXTENSION_TYPES.put("dng", "image/x-adobe-dng");
+        EXTENSION_TYPES.put("mp4", "video/mp4");
+        EXTENSION_TYPES.put("m4v", "video/mp4");
+        EXTENSION_TYPES.put("mov", "video/quicktime");
+        EXTENSION_TYPES.put("3gp", "video/3gpp");
+        EXTENSION_TYPES.put("webm", "video/webm");
+        EXTENSION_TYPES.put("mkv", "video/x-matroska");
+    }
+
+    private MimeSniffer() {
+    }
+
+    /**
+     * @return 识别出的 MIME 类型，不认识时返回 null
+     */
+    public static String sniff(byte[] header, int length) {
+        if (startsWith(header, length, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 0, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (startsWith(header, length, 0, 'B', 'M') && length >= 14) {
+            return "image/bmp";
+        }
+        if (startsWith(header, length, 0, 'R', 'I', 'F', 'F')) {
+            if (startsWith(header, length, 8, 'W', 'E', 'B', 'P')) {
+                return "image/webp";
+            }
+            if (startsWith(header, length, 8, 'A', 'V', 'I', ' ')) {
+                return "video/x-msvideo";
+            }
+            return null;
+        }
+        if (startsWith(header, length, 0, 0x1A, 0x45, 0xDF, 0xA3)) {
+            // EBML：WebM 的 DocType 在更后面，这里不区分
+            return "video/webm";
+        }
+        if (startsWith(header, length, 4, 'f', 't', 'y', 'p') && length >= 12) {
+            return fromBrand(new String(header, 8, 4, StandardCharsets.US_ASCII));
+        }
+        return null;
+    }
+
+    /**
+     * ISO BMFF（HEIF/AVIF/MP4/MOV）由 ftyp 盒子的主品牌区分。
+     */
+    private static String fromBrand(String brand) {
+        switch (brand) {
+            case "heic":
+            case "heix":
+            case "heim":
+            case "heis":
+                return "image/heic";
+            case "mif1":
+            case "msf1":
+            case "hevc":
+            case "hevx":
+                return "image/heif";
+            case "avif":
+            case "avis":
+                return "image/avif";
+            case "qt  ":
+                return "video/quicktime";
+            case "3gp4":
+            case "3gp5":
+            case "3gp6":
+            case "3g2a":
+                return "video/3gpp";
+            default:
+                // isom、mp41、mp42、M4V 等
+                return "video/mp4";
+        }
+    }
+
+    public static String fromExtension(String fileName) {
+        if (fileName == null) {
+            return null;
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? null : EXTENSION_TYPES.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * 依次使用文件头判断的类型、provider 报告的类型、扩展名对应的类型，都没有时返回 application/octet-stream。
+     */
+    public static String resolve(String sniffed, String reported, String fileName) {
+        if (sniffed != null) {
+            return sniffed;
+        }
+        if (reported != null && !reported.isEmpty() && !OCTET_STREAM.equals(reported)) {
+            return reported;
+        }
+        String byExtension = fromExtension(fileName);
+        return byExtension != null ? byExtension : OCTET_STREAM;
+    }
+
+    public static boolean isVideo(String mimeType) {
+        return mimeType != null && mimeType.startsWith("video/");
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, int... expected) {
+        if (length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((header[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
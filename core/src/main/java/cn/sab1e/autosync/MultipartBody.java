@@ -0,0 +1,203 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式 multipart/form-data 请求体。
+ * 各部分的头部在构造时编码好，文件内容长度已知时可以预先算出整个请求体的长度，
+ * 传输层据此使用固定长度流式发送，不会把请求体缓存在内存里。
+ * 文件内容通过每个上传线程复用的缓冲区从通道直接写到输出流。
+ */
+public class MultipartBody implements UploadTransport.Body {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] DASHES = {'-', '-'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * 文件内容来源。通道由创建方负责关闭。
+     */
+    public static final class Content {
+        private final ReadableByteChannel channel;
+        private final long length;
+        private MessageDigest digest;
+
+        private Content(ReadableByteChannel channel, long length) {
+            this.channel = channel;
+            this.length = length;
+        }
+
+        /**
+         * 从文件通道的当前位置读到末尾，长度由通道大小得出。
+         */
+        public static Content of(FileChannel channel) throws IOException {
+            return new Content(channel, channel.size() - channel.position());
+        }
+
+        /**
+         * @param length 已知的字节数，未知时传 -1（请求体将以 chunked 方式发送）
+         */
+        public static Content of(InputStream inputStream, long length) {
+            return new Content(Channels.newChannel(inputStream), length);
+        }
+
+        /**
+         * 发送的同时更新摘要，不需要再单独读一遍文件。
+         */
+        public Content digestWith(MessageDigest digest) {
+            this.digest = digest;
+            return this;
+        }
+
+        public long length() {
+            return length;
+        }
+
+        /**
+         * 顺序读取内容并更新摘要，读完返回 -1。
+         */
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = channel.read(ByteBuffer.wrap(buffer, offset, count));
+            if (read > 0 && digest != null) {
+                digest.update(buffer, offset, read);
+            }
+            return read;
+        }
+
+        /**
+         * 把内容本身（不加 multipart 包装）作为请求体，用于 PUT 上传。
+         */
+        public UploadTransport.Body asBody(String contentType) {
+            Content content = this;
+            return new UploadTransport.Body() {
+                @Override
+                public String contentType() {
+                    return contentType;
+                }
+
+                @Override
+                public long contentLength() {
+                    return length;
+                }
+
+                @Override
+                public void writeTo(OutputStream outputStream) throws IOException {
+                    copy(content, outputStream);
+                    outputStream.flush();
+                }
+            };
+        }
+    }
+
+    private final String boundary;
+    private final List<byte[]> headers = new ArrayList<>();
+    private final List<Object> bodies = new ArrayList<>();
+
+    public MultipartBody(String boundary) {
+        this.boundary = boundary;
+    }
+
+    public MultipartBody addFormField(String name, String value) {
+        headers.add(partHeader("Content-Disposition: form-data; name=\"" + name + "\""));
+        bodies.add(value.getBytes(StandardCharsets.UTF_8));
+        return this;
+    }
+
+    public MultipartBody addFile(String name, String fileName, String contentType, Content content) {
+        headers.add(partHeader("Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: " + contentType));
+        bodies.add(content);
+        return this;
+    }
+
+    private byte[] partHeader(String lines) {
+        return ("--" + boundary + "\r\n" + lines + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String contentType() {
+        return "multipart/form-data; boundary=" + boundary;
+    }
+
+    @Override
+    public long contentLength() {
+        long length = 0;
+        for (int i = 0; i < headers.size(); i++) {
+            Object body = bodies.get(i);
+            long bodyLength = body instanceof Content ? ((Content) body).length : ((byte[]) body).length;
+            if (bodyLength < 0) {
+                return -1;
+            }
+            length += headers.get(i).length + bodyLength + CRLF.length;
+        }
+        return length + DASHES.length + boundary.length() + DASHES.length + CRLF.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        for (int i = 0; i < headers.size(); i++) {
+            outputStream.write(headers.get(i));
+            Object body = bodies.get(i);
+            if (body instanceof Content) {
+                copy((Content) body, outputStream);
+            } else {
+                outputStream.write((byte[]) body);
+            }
+            outputStream.write(CRLF);
+        }
+        outputStream.write(DASHES);
+        outputStream.write(boundary.getBytes(StandardCharsets.UTF_8));
+        outputStream.write(DASHES);
+        outputStream.write(CRLF);
+        outputStream.flush();
+    }
+
+    private static void copy(Content content, OutputStream outputStream) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        long remaining = content.length;
+        while (true) {
+            buffer.clear();
+            if (remaining >= 0 && remaining < buffer.capacity()) {
+                buffer.limit((int) remaining);
+            }
+            // 每个缓冲区检查一次中断，取消同步时不必等整个文件发完（HttpURLConnection 的写入不响应中断）
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("上传被取消");
+            }
+            int read = content.channel.read(buffer);
+            if (read <= 0) {
+                break;
+            }
+            outputStream.write(buffer.array(), 0, read);
+            if (content.digest != null) {
+                content.digest.update(buffer.array(), 0, read);
+            }
+            if (remaining >= 0) {
+                remaining -= read;
+                if (remaining == 0) {
+                    break;
+                }
+            }
+        }
+        if (remaining > 0) {
+            throw new IOException("文件在上传过程中变短了，还差 " + remaining + " 字节");
+        }
+    }
+}
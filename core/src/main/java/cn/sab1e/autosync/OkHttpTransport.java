@@ -0,0 +1,224 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+/**
+ * 基于 OkHttp 的传输层：共享连接池、keep-alive，服务端支持时通过 ALPN 使用 HTTP/2 多路复用，
+ * 并记录每个请求的 connect/TLS/发送/等待耗时。
+ */
+public class OkHttpTransport implements UploadTransport {
+
+    private final OkHttpClient client;
+
+    public OkHttpTransport() {
+        client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(8, 5, TimeUnit.MINUTES))
+                .connectTimeout(15, TimeUnit.SECONDS)
+                .writeTimeout(60, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .eventListener(new TimingListener())
+                .build();
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        RequestTiming timing = new RequestTiming();
+        okhttp3.Request.Builder builder = new okhttp3.Request.Builder()
+                .url(request.url)
+                .tag(RequestTiming.class, timing);
+        for (Map.Entry<String, String> header : request.headers.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        builder.method(request.method, request.body == null ? null : new StreamingBody(request.body));
+
+        okhttp3.Response response;
+        try {
+            response = client.newCall(builder.build()).execute();
+        } catch (SocketTimeoutException e) {
+            throw timing.connected ? e : new ConnectTimeoutException("Connect timed out: " + request.url, e);
+        }
+        timing.protocol = response.protocol().toString();
+
+        Map<String, String> headers = new HashMap<>();
+        for (String name : response.headers().names()) {
+            headers.put(name, response.header(name));
+        }
+        return new OkHttpResponse(response, headers, timing);
+    }
+
+    @Override
+    public void close() {
+        client.connectionPool().evictAll();
+        client.dispatcher().executorService().shutdown();
+    }
+
+    private static class StreamingBody extends RequestBody {
+        private final Body body;
+
+        StreamingBody(Body body) {
+            this.body = body;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return MediaType.parse(body.contentType());
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            body.writeTo(sink.outputStream());
+        }
+
+        /**
+         * 请求体从文件通道读取并同时计算摘要，只能写一次。OkHttp 遇到连接失效或重定向时不再重放请求体，
+         * 直接抛出异常，由 RetryPolicy 决定何时重新上传。
+         */
+        @Override
+        public boolean isOneShot() {
+            return true;
+        }
+    }
+
+    private static class OkHttpResponse extends Response {
+        private final okhttp3.Response response;
+
+        OkHttpResponse(okhttp3.Response response, Map<String, String> headers, RequestTiming timing) {
+            super(response.code(), headers, timing);
+            this.response = response;
+        }
+
+        @Override
+        public InputStream body() {
+            return response.body().byteStream();
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+
+    /**
+     * 把 OkHttp 的事件时间点换算成各阶段耗时，写入请求上的 RequestTiming。
+     * OkHttp 对同一个 Call 的事件是串行回调的。
+     */
+    private static class TimingListener extends EventListener {
+        private final Map<Call, long[]> starts = new ConcurrentHashMap<>();
+
+        private static final int CONNECT = 0;
+        private static final int TLS = 1;
+        private static final int SEND = 2;
+        private static final int WAIT = 3;
+
+        private long[] starts(Call call) {
+            return starts.computeIfAbsent(call, c -> new long[4]);
+        }
+
+        private static RequestTiming timing(Call call) {
+            return call.request().tag(RequestTiming.class);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            starts(call)[CONNECT] = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            starts(call)[TLS] = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            RequestTiming timing = timing(call);
+            if (timing != null) {
+                timing.tlsMs = RequestTiming.elapsedMs(starts(call)[TLS]);
+            }
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            RequestTiming timing = timing(call);
+            if (timing != null) {
+                timing.connectMs = RequestTiming.elapsedMs(starts(call)[CONNECT]);
+            }
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            RequestTiming timing = timing(call);
+            if (timing != null) {
+                timing.connected = true;
+            }
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            starts(call)[SEND] = System.nanoTime();
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, okhttp3.Request request) {
+            if (request.body() == null) {
+                markSent(call);
+            }
+        }
+
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            markSent(call);
+        }
+
+        private void markSent(Call call) {
+            long[] times = starts(call);
+            RequestTiming timing = timing(call);
+            if (timing != null) {
+                timing.sendMs = RequestTiming.elapsedMs(times[SEND]);
+            }
+            times[WAIT] = System.nanoTime();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            RequestTiming timing = timing(call);
+            long waitStart = starts(call)[WAIT];
+            if (timing != null && waitStart != 0) {
+                timing.waitMs = RequestTiming.elapsedMs(waitStart);
+            }
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            starts.remove(call);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            starts.remove(call);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package cn.sab1e.autosync;
+
+/**
+ * 限制进度刷新的频率。系统会丢弃同一应用过于频繁的通知更新，每次更新也是一次跨进程调用，
+ * 几百个小文件逐个刷新通知没有意义。
+ */
+public class ProgressThrottle {
+
+    private final long intervalMillis;
+    private long lastUpdateMillis;
+    private boolean updated;
+
+    public ProgressThrottle(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @param last 是否是最后一次更新，最后一次总是放行
+     * @return 本次是否应当刷新
+     */
+    public synchronized boolean tryUpdate(long nowMillis, boolean last) {
+        if (!last && updated && nowMillis - lastUpdateMillis < intervalMillis) {
+            return false;
+        }
+        updated = true;
+        lastUpdateMillis = nowMillis;
+        return true;
+    }
+}
@@ -0,0 +1,57 @@
+package cn.sab1e.autosync;
+
+/**
+ * 单个请求各阶段耗时（毫秒），-1 表示该阶段不存在或无法测量，例如复用连接时没有 connect/TLS。
+ * total 是从发起请求到收到响应头的耗时，不含读取响应体。
+ */
+public class RequestTiming {
+    private final long startNanos = System.nanoTime();
+    volatile long connectMs = -1;
+    volatile long tlsMs = -1;
+    volatile long sendMs = -1;
+    volatile long waitMs = -1;
+    volatile long totalMs = -1;
+    volatile String protocol;
+    // 是否已拿到可用的连接，用来区分建立连接时的超时和之后的超时
+    volatile boolean connected;
+
+    void finish() {
+        if (totalMs < 0) {
+            totalMs = elapsedMs(startNanos);
+        }
+    }
+
+    static long elapsedMs(long sinceNanos) {
+        return (System.nanoTime() - sinceNanos) / 1_000_000;
+    }
+
+    public long getConnectMs() {
+        return connectMs;
+    }
+
+    public long getTlsMs() {
+        return tlsMs;
+    }
+
+    public long getSendMs() {
+        return sendMs;
+    }
+
+    public long getWaitMs() {
+        return waitMs;
+    }
+
+    public long getTotalMs() {
+        return totalMs;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public String toString() {
+        return "protocol=" + protocol + " connect=" + connectMs + "ms tls=" + tlsMs + "ms send=" + sendMs
+                + "ms wait=" + waitMs + "ms total=" + totalMs + "ms";
+    }
+}
@@ -0,0 +1,106 @@
+package cn.sab1e.autosync;
+
+import java.io.FileNotFoundException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+
+/**
+ * 上传失败的分类和逐文件退避策略。
+ * <ul>
+ *     <li>TRANSIENT：超时、5xx、408、409（分片偏移不一致，重试时会重新对齐）、429 等，按指数退避加随机抖动重试，连续失败 MAX_ATTEMPTS 次后隔离。</li>
+ *     <li>PERMANENT：其他 4xx、服务器拒绝（如不支持的类型）、本地文件不存在或无权读取，立即隔离，文件变化后才会重试。</li>
+ *     <li>AUTH：401/403，所有文件都会失败，不计入文件的失败次数，直接结束本次同步。</li>
+ *     <li>UNREACHABLE：DNS 解析失败、连接被拒绝、建立连接超时（服务器被防火墙丢包）等，同样不计入文件的失败次数，由 {@link CircuitBreaker} 尽快结束本次同步。</li>
+ * </ul>
+ */
+public final class RetryPolicy {
+
+    public enum FailureKind {
+        TRANSIENT, PERMANENT, AUTH, UNREACHABLE
+    }
+
+    public static final int MAX_ATTEMPTS = 8;
+    private static final long BASE_DELAY_MILLIS = 30 * 1000L;
+    private static final long MAX_DELAY_MILLIS = 6 * 60 * 60 * 1000L;
+
+    private RetryPolicy() {
+    }
+
+    public static FailureKind classify(UploadResult result) {
+        if (result.getException() != null) {
+            return classify(result.getException());
+        }
+        int code = result.getResponseCode();
+        if (code == HttpURLConnection.HTTP_OK) {
+            // 请求成功但服务器在响应里拒绝了这个文件
+            return FailureKind.PERMANENT;
+        }
+        return classify(code);
+    }
+
+    public static FailureKind classify(Exception exception) {
+        if (exception instanceof HttpStatusException) {
+            return classify(((HttpStatusException) exception).getResponseCode());
+        }
+        if (exception instanceof UnknownHostException || exception instanceof ConnectException
+                || exception instanceof NoRouteToHostException || exception instanceof ConnectTimeoutException) {
+            return FailureKind.UNREACHABLE;
+        }
+        if (exception instanceof FileNotFoundException || exception instanceof SecurityException) {
+            return FailureKind.PERMANENT;
+        }
+        return FailureKind.TRANSIENT;
+    }
+
+    public static FailureKind classify(int responseCode) {
+        if (responseCode == HttpURLConnection.HTTP_UNAUTHORIZED || responseCode == HttpURLConnection.HTTP_FORBIDDEN) {
+            return FailureKind.AUTH;
+        }
+        if (responseCode == HttpURLConnection.HTTP_CLIENT_TIMEOUT || responseCode == HttpURLConnection.HTTP_CONFLICT
+                || responseCode == 429 || responseCode >= 500 || responseCode < 0) {
+            return FailureKind.TRANSIENT;
+        }
+        return FailureKind.PERMANENT;
+    }
+
+    public static boolean shouldQuarantine(FailureKind kind, int attempts) {
+        return kind == FailureKind.PERMANENT || attempts >= MAX_ATTEMPTS;
+    }
+
+    /**
+     * 第 attempts 次失败后到下一次重试的等待时间：BASE * 2^(attempts-1)，取其一半到全部之间的随机值，
+     * 避免大量文件在同一时刻一起重试；服务器给出的 Retry-After 更长时以它为准。
+     */
+    public static long nextDelayMillis(int attempts, long retryAfterMillis, Random random) {
+        int exponent = Math.max(0, Math.min(attempts - 1, 20));
+        long delay = Math.min(BASE_DELAY_MILLIS << exponent, MAX_DELAY_MILLIS);
+        long jittered = delay / 2 + (long) (random.nextDouble() * (delay / 2));
+        return Math.max(jittered, retryAfterMillis);
+    }
+
+    /**
+     * 解析 Retry-After 响应头（秒数或 HTTP 日期），无法解析时返回 -1。
+     */
+    public static long parseRetryAfter(String value, long nowMillis) {
+        if (value == null) {
+            return -1;
+        }
+        String trimmed = value.trim();
+        try {
+            return Math.max(0, Long.parseLong(trimmed) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                long at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                return Math.max(0, at - nowMillis);
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package cn.sab1e.autosync;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.ToLongFunction;
+
+/**
+ * 单次同步的上传额度（字节数和文件数）。放不下的文件留在索引中等待下次同步。
+ */
+public class RunBudget {
+
+    public static final long UNLIMITED_BYTES = Long.MAX_VALUE;
+    public static final int UNLIMITED_FILES = Integer.MAX_VALUE;
+
+    private final long maxBytes;
+    private final int maxFiles;
+    private final boolean deferUnknownSize;
+
+    public RunBudget(long maxBytes, int maxFiles) {
+        this(maxBytes, maxFiles, false);
+    }
+
+    /**
+     * @param deferUnknownSize 跳过大小未知的文件，用于不能超出的额度（计费网络），这些文件留到不受该额度限制时上传
+     */
+    public RunBudget(long maxBytes, int maxFiles, boolean deferUnknownSize) {
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.deferUnknownSize = deferUnknownSize;
+    }
+
+    /**
+     * 按 items 的顺序挑出额度内的文件。某个文件超出剩余字节额度时跳过它继续看后面更小的文件，
+     * 大小未知（小于 0）的文件按 0 计，deferUnknownSize 时跳过。
+     */
+    public <T> List<T> select(Iterable<T> items, ToLongFunction<T> sizeOf) {
+        List<T> selected = new ArrayList<>();
+        for (T item : limit(items, sizeOf)) {
+            selected.add(item);
+        }
+        return selected;
+    }
+
+    /**
+     * 与 {@link #select} 规则相同，但边迭代边挑选，不会先把 items 读完，适合仍在增长的队列。
+     * 文件数达到上限后不再从 items 取文件，剩下的留在原处。
+     */
+    public <T> Iterable<T> limit(Iterable<T> items, ToLongFunction<T> sizeOf) {
+        return () -> new Iterator<T>() {
+            private final Iterator<T> source = items.iterator();
+            private long remaining = maxBytes;
+            private int count;
+            private T next;
+
+            @Override
+            public boolean hasNext() {
+                if (next != null) {
+                    return true;
+                }
+                while (count < maxFiles && source.hasNext()) {
+                    T item = source.next();
+                    long size = sizeOf.applyAsLong(item);
+                    if (size < 0 && deferUnknownSize) {
+                        continue;
+                    }
+                    size = Math.max(size, 0);
+                    if (size <= remaining) {
+                        remaining -= size;
+                        count++;
+                        next = item;
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T item = next;
+                next = null;
+                return item;
+            }
+        };
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    public boolean isDeferUnknownSize() {
+        return deferUnknownSize;
+    }
+}
@@ -0,0 +1,327 @@
+package cn.sab1e.autosync;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * S3 协议对象存储后端，所有请求都用预签名 URL 发送（path-style：endpoint/bucket/key）。
+ * 小文件一次 PUT；大文件或长度未知时走分片上传，分片顺序读取、并行发送，
+ * 同时在内存中的分片数不超过并行数。任何分片失败都会中止整个分片上传，避免在存储桶里留下碎片。
+ * 对象名带内容摘要，原文件摘要保存在 x-amz-meta-sha256 中；写入带 If-None-Match: *，
+ * 已有同名对象时服务器返回 412，按失败处理，不会覆盖。
+ */
+public class S3Backend implements UploadBackend {
+
+    public static final int DEFAULT_PART_PARALLELISM = 3;
+    // S3 要求除最后一片外每片至少 5MB
+    static final int DEFAULT_PART_SIZE = 5 * 1024 * 1024;
+    static final long DEFAULT_MULTIPART_THRESHOLD = 16 * 1024 * 1024;
+    private static final int EXPIRES_SECONDS = 15 * 60;
+    private static final String META_SHA256 = "x-amz-meta-sha256";
+
+    private static final BackendCapabilities CAPABILITIES =
+            new BackendCapabilities(true, false);
+
+    private final UploadTransport transport;
+    private final String endpoint;
+    private final String bucket;
+    private final S3Signer signer;
+    private final int parallelism;
+    private final int partSize;
+    private final long multipartThreshold;
+
+    public S3Backend(UploadTransport transport, String endpoint, String bucket, S3Signer signer, int parallelism) {
+        this(transport, endpoint, bucket, signer, parallelism, DEFAULT_PART_SIZE, DEFAULT_MULTIPART_THRESHOLD);
+    }
+
+    S3Backend(UploadTransport transport, String endpoint, String bucket, S3Signer signer, int parallelism,
+              int partSize, long multipartThreshold) {
+        this.transport = transport;
+        this.endpoint = endpoint.replaceAll("/+$", "");
+        this.bucket = bucket;
+        this.signer = signer;
+        this.parallelism = Math.max(1, parallelism);
+        this.partSize = partSize;
+        this.multipartThreshold = multipartThreshold;
+    }
+
+    @Override
+    public BackendCapabilities capabilities() {
+        return CAPABILITIES;
+    }
+
+    @Override
+    public UploadResult upload(MultipartBody.Content content, String fileName, String contentType) {
+        return upload(content, fileName, contentType, null);
+    }
+
+    @Override
+    public UploadResult upload(MultipartBody.Content content, String fileName, String contentType, String sha256) {
+        String key = UploadBackend.contentKey(fileName, sha256);
+        Map<String, String> metadata = sha256 != null ? headers(META_SHA256, sha256) : null;
+        try {
+            long length = content.length();
+            if (length >= 0 && length < multipartThreshold) {
+                return putObject(content, key, contentType, metadata);
+            }
+            return multipartUpload(content, key, contentType, metadata);
+        } catch (IOException e) {
+            return UploadResult.error(e);
+        }
+    }
+
+    @Override
+    public UploadResponse lookup(String fileName, long size, String sha256) throws IOException {
+        String key = UploadBackend.contentKey(fileName, sha256);
+        try (UploadTransport.Response response = transport.execute(request("HEAD", key, null, null))) {
+            // 对象名里只有摘要的前缀，以保存的完整摘要为准；没有保存摘要的对象不是本应用上传的，不算命中
+            return response.code() == 200 && sha256.equalsIgnoreCase(response.header(META_SHA256))
+                    ? UploadResponse.of(200, objectUrl(key), key) : null;
+        }
+    }
+
+    private UploadResult putObject(MultipartBody.Content content, String key, String contentType,
+                                   Map<String, String> metadata) throws IOException {
+        Map<String, String> headers = headers("If-None-Match", "*");
+        if (metadata != null) {
+            headers.putAll(metadata);
+        }
+        UploadTransport.Request request = request("PUT", key, null, headers).body(content.asBody(contentType));
+        try (UploadTransport.Response response = transport.execute(request)) {
+            // 412 表示已有同名对象，不覆盖，由调用方按失败处理并保留本地文件
+            if (response.code() != 200) {
+                return new UploadResult(response.code(), null, response.timing(),
+                        RetryPolicy.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis()));
+            }
+            return new UploadResult(200, UploadResponse.of(200, objectUrl(key), key), response.timing());
+        }
+    }
+
+    private UploadResult multipartUpload(MultipartBody.Content content, String key, String contentType,
+                                         Map<String, String> metadata) throws IOException {
+        String uploadId;
+        // 元数据在发起时指定；带上空请求体，让请求有 Content-Length: 0，部分服务端拒绝没有长度的 POST
+        UploadTransport.Request initiate = request("POST", key, query("uploads", ""), metadata)
+                .body(new BytesBody(new byte[0], 0, contentType));
+        try (UploadTransport.Response response = transport.execute(initiate)) {
+            if (response.code() != 200) {
+                throw statusException("Initiate multipart upload failed", response);
+            }
+            uploadId = xmlValue(readBody(response), "UploadId");
+        }
+        if (uploadId == null) {
+            throw new IOException("Missing UploadId in initiate response");
+        }
+
+        try {
+            List<String> etags = uploadParts(content, key, uploadId);
+            return complete(key, uploadId, etags);
+        } catch (IOException e) {
+            abort(key, uploadId);
+            throw e;
+        }
+    }
+
+    private List<String> uploadParts(MultipartBody.Content content, String key, String uploadId) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        // 读取新分片前先占一个名额，内存中最多 parallelism 个分片缓冲区
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<String>> futures = new ArrayList<>();
+        try {
+            for (int partNumber = 1; !failed.get(); partNumber++) {
+                permits.acquire();
+                byte[] buffer = new byte[partSize];
+                int length = readPart(content, buffer);
+                if (length == 0 && partNumber > 1) {
+                    permits.release();
+                    break;
+                }
+                int number = partNumber;
+                futures.add(executor.submit(() -> {
+                    try {
+                        return uploadPart(key, uploadId, number, buffer, length);
+                    } catch (IOException e) {
+                        failed.set(true);
+                        throw e;
+                    } finally {
+                        permits.release();
+                    }
+                }));
+                if (length < partSize) {
+                    break;
+                }
+            }
+
+            List<String> etags = new ArrayList<>(futures.size());
+            for (Future<String> future : futures) {
+                etags.add(future.get());
+            }
+            return etags;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Multipart upload interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private String uploadPart(String key, String uploadId, int partNumber, byte[] data, int length) throws IOException {
+        Map<String, String> query = query("partNumber", String.valueOf(partNumber));
+        query.put("uploadId", uploadId);
+        UploadTransport.Request request = request("PUT", key, query, null)
+                .body(new BytesBody(data, length, "application/octet-stream"));
+        try (UploadTransport.Response response = transport.execute(request)) {
+            if (response.code() != 200) {
+                throw statusException("Part " + partNumber + " upload failed", response);
+            }
+            String etag = response.header("ETag");
+            if (etag == null) {
+                throw new IOException("Missing ETag for part " + partNumber);
+            }
+            return etag;
+        }
+    }
+
+    private UploadResult complete(String key, String uploadId, List<String> etags) throws IOException {
+        StringBuilder xml = new StringBuilder("<CompleteMultipartUpload>");
+        for (int i = 0; i < etags.size(); i++) {
+            xml.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                    .append(etags.get(i).replace("&", "&amp;").replace("\"", "&quot;")).append("</ETag></Part>");
+        }
+        xml.append("</CompleteMultipartUpload>");
+        byte[] body = xml.toString().getBytes(StandardCharsets.UTF_8);
+
+        // 条件写入在完成时检查，已有同名对象时返回 412，随后中止本次分片上传
+        UploadTransport.Request request = request("POST", key, query("uploadId", uploadId), headers("If-None-Match", "*"))
+                .body(new BytesBody(body, body.length, "application/xml"));
+        try (UploadTransport.Response response = transport.execute(request)) {
+            // 完成请求即使返回 200，响应体里也可能是错误
+            String responseBody = response.code() == 200 ? readBody(response) : null;
+            if (responseBody == null || responseBody.contains("<Error>")) {
+                throw statusException("Complete multipart upload failed", response);
+            }
+            return new UploadResult(200, UploadResponse.of(200, objectUrl(key), key), response.timing());
+        }
+    }
+
+    private void abort(String key, String uploadId) {
+        // 中止失败时残留的分片由存储桶的生命周期规则清理
+        try {
+            transport.execute(request("DELETE", key, query("uploadId", uploadId), null)).close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * @param headers 需要签名并随请求发送的请求头，可以为 null
+     */
+    private UploadTransport.Request request(String method, String key, Map<String, String> query, Map<String, String> headers) {
+        UploadTransport.Request request = new UploadTransport.Request(method,
+                signer.presign(method, endpoint, "/" + bucket + "/" + key, query, headers, Instant.now(), EXPIRES_SECONDS));
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                request.header(header.getKey(), header.getValue());
+            }
+        }
+        return request;
+    }
+
+    private String objectUrl(String key) {
+        return endpoint + "/" + bucket + "/" + S3Signer.encode(key, false);
+    }
+
+    private static Map<String, String> query(String name, String value) {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put(name, value);
+        return query;
+    }
+
+    private static Map<String, String> headers(String name, String value) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(name, value);
+        return headers;
+    }
+
+    private static int readPart(MultipartBody.Content content, byte[] buffer) throws IOException {
+        int offset = 0;
+        while (offset < buffer.length) {
+            int read = content.read(buffer, offset, buffer.length - offset);
+            if (read == -1) {
+                break;
+            }
+            offset += read;
+        }
+        return offset;
+    }
+
+    private static String readBody(UploadTransport.Response response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        InputStream in = response.body();
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    static String xmlValue(String xml, String tag) {
+        int start = xml.indexOf("<" + tag + ">");
+        int end = xml.indexOf("</" + tag + ">");
+        if (start < 0 || end < start) {
+            return null;
+        }
+        return xml.substring(start + tag.length() + 2, end).trim();
+    }
+
+    private static HttpStatusException statusException(String message, UploadTransport.Response response) {
+        return new HttpStatusException(message, response.code(),
+                RetryPolicy.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis()));
+    }
+
+    private static class BytesBody implements UploadTransport.Body {
+        private final byte[] data;
+        private final int length;
+        private final String contentType;
+
+        BytesBody(byte[] data, int length, String contentType) {
+            this.data = data;
+            this.length = length;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public String contentType() {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(data, 0, length);
+        }
+    }
+}
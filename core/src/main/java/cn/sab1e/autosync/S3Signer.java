@@ -0,0 +1,158 @@
+package cn.sab1e.autosync;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * AWS Signature Version 4 预签名 URL。请求体不参与签名（UNSIGNED-PAYLOAD）。
+ * 默认只签 host 头，签好的 URL 可以直接交给传输层发送；传入额外请求头时这些头一并签名，
+ * 发送时必须原样带上。兼容 MinIO、Cloudflare R2 等 S3 协议的对象存储。
+ */
+public class S3Signer {
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
+
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+
+    public S3Signer(String region, String accessKey, String secretKey) {
+        this.region = region == null || region.isEmpty() ? "us-east-1" : region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+    }
+
+    /**
+     * @param endpoint 服务地址，例如 https://s3.example.com
+     * @param path     未编码的对象路径，以 / 开头
+     * @param query    额外的查询参数（未编码），值为空字符串的参数按 AWS 规则写成 "name="
+     */
+    public String presign(String method, String endpoint, String path, Map<String, String> query, Instant now, int expiresSeconds) {
+        return presign(method, endpoint, path, query, null, now, expiresSeconds);
+    }
+
+    /**
+     * @param headers 需要签名的请求头（例如 If-None-Match、x-amz-meta-*），不含 host
+     */
+    public String presign(String method, String endpoint, String path, Map<String, String> query,
+                          Map<String, String> headers, Instant now, int expiresSeconds) {
+        URI uri = URI.create(endpoint);
+        String host = uri.getHost();
+        int port = uri.getPort();
+        boolean defaultPort = port == -1 || ("https".equals(uri.getScheme()) && port == 443) || ("http".equals(uri.getScheme()) && port == 80);
+        if (!defaultPort) {
+            host += ":" + port;
+        }
+
+        String dateTime = DATE_TIME.format(now);
+        String date = dateTime.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+
+        TreeMap<String, String> signedHeaders = new TreeMap<>();
+        signedHeaders.put("host", host);
+        if (headers != null) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                signedHeaders.put(entry.getKey().toLowerCase(Locale.ROOT), entry.getValue().trim());
+            }
+        }
+        StringBuilder canonicalHeaders = new StringBuilder();
+        for (Map.Entry<String, String> entry : signedHeaders.entrySet()) {
+            canonicalHeaders.append(entry.getKey()).append(':').append(entry.getValue()).append('\n');
+        }
+        String signedHeaderNames = String.join(";", signedHeaders.keySet());
+
+        TreeMap<String, String> params = new TreeMap<>();
+        if (query != null) {
+            for (Map.Entry<String, String> entry : query.entrySet()) {
+                params.put(encode(entry.getKey(), true), encode(entry.getValue(), true));
+            }
+        }
+        params.put("X-Amz-Algorithm", ALGORITHM);
+        params.put("X-Amz-Credential", encode(accessKey + "/" + scope, true));
+        params.put("X-Amz-Date", dateTime);
+        params.put("X-Amz-Expires", String.valueOf(expiresSeconds));
+        params.put("X-Amz-SignedHeaders", encode(signedHeaderNames, true));
+
+        StringBuilder canonicalQuery = new StringBuilder();
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (canonicalQuery.length() > 0) {
+                canonicalQuery.append('&');
+            }
+            canonicalQuery.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+
+        String canonicalPath = encode(path, false);
+        String canonicalRequest = method + "\n"
+                + canonicalPath + "\n"
+                + canonicalQuery + "\n"
+                + canonicalHeaders + "\n"
+                + signedHeaderNames + "\n"
+                + "UNSIGNED-PAYLOAD";
+        String stringToSign = ALGORITHM + "\n" + dateTime + "\n" + scope + "\n" + hex(sha256(canonicalRequest));
+
+        byte[] key = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        key = hmac(key, region);
+        key = hmac(key, "s3");
+        key = hmac(key, "aws4_request");
+        String signature = hex(hmac(key, stringToSign));
+
+        String base = endpoint.replaceAll("/+$", "");
+        return base + canonicalPath + "?" + canonicalQuery + "&X-Amz-Signature=" + signature;
+    }
+
+    /**
+     * RFC 3986 编码：只保留 A-Z a-z 0-9 - _ . ~，路径中的 / 按需保留。
+     */
+    static String encode(String value, boolean encodeSlash) {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || c == '-' || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                builder.append(c);
+            } else {
+                builder.append('%').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16)))
+                        .append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] sha256(String data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,24 @@
+package cn.sab1e.autosync;
+
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 遍历同步目录。每读完一个目录就把其中的文件交给调用方，上传不必等整棵目录树遍历完。
+ */
+public interface SourceScanner {
+
+    interface Sink {
+        /**
+         * 一个目录中的文件（不含子目录）。可能在多个扫描线程上同时调用。
+         */
+        void accept(List<SyncEntry> entries);
+    }
+
+    /**
+     * 遍历 treeUri，recursive 为 false 时只读目录本身。stopped 返回 true 后尽快结束。
+     *
+     * @return 完整遍历了所有目录时返回 true；有目录不可读或中途停止时返回 false，此时不能据此清理索引
+     */
+    boolean walk(String treeUri, boolean recursive, BooleanSupplier stopped, Sink sink) throws InterruptedException;
+}
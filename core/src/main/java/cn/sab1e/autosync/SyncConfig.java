@@ -0,0 +1,437 @@
+package cn.sab1e.autosync;
+
+/**
+ * 用户设置的不可变快照，界面和 ImageUploadWorker 读取的是同一份，由 SettingsStore 负责加载和保存。
+ * 仍按原来的键存放在 SharedPreferences 中，旧版本的设置无需迁移；数值类设置为 0 表示未填写，使用默认值。
+ * desktop 从 properties 文件按同样的键读取。
+ */
+public final class SyncConfig {
+
+    public static final String KEY_API_URL = "api_url";
+    public static final String KEY_TOKEN = "token";
+    public static final String KEY_INTERVAL = "interval";
+    public static final String KEY_UPLOAD_CONCURRENCY = "upload_concurrency";
+    public static final String KEY_CHUNKED_UPLOAD_URL = "chunked_upload_url";
+    public static final String KEY_BATCH_UPLOAD_URL = "batch_upload_url";
+    public static final String KEY_UPLOAD_ORDER = "upload_order";
+    public static final String KEY_TRANSPORT = "transport";
+    public static final String KEY_TRANSFORM_ENABLED = "transform_enabled";
+    public static final String KEY_TRANSFORM_MAX_EDGE = "transform_max_edge";
+    public static final String KEY_TRANSFORM_FORMAT = "transform_format";
+    public static final String KEY_TRANSFORM_QUALITY = "transform_quality";
+    public static final String KEY_TRANSFORM_KEEP_EXIF = "transform_keep_exif";
+    public static final String KEY_UNMETERED_ONLY = "unmetered_only";
+    public static final String KEY_METERED_CAP_MB = "metered_cap_mb";
+    public static final String KEY_RUN_BUDGET_MB = "run_budget_mb";
+    public static final String KEY_CHARGING_BACKLOG = "charging_backlog";
+    public static final String KEY_BANDWIDTH_KBPS = "bandwidth_kbps";
+    public static final String KEY_BACKEND = "backend";
+    public static final String KEY_ACCESS_KEY = "access_key";
+    public static final String KEY_SECRET_KEY = "secret_key";
+    public static final String KEY_S3_BUCKET = "s3_bucket";
+    public static final String KEY_S3_REGION = "s3_region";
+
+    private final String backend;
+    private final String apiUrl;
+    private final String token;
+    private final String accessKey;
+    private final String secretKey;
+    private final String s3Bucket;
+    private final String s3Region;
+    private final String transport;
+    private final int intervalMinutes;
+    private final int uploadConcurrency;
+    private final String uploadOrder;
+    private final String chunkedUploadUrl;
+    private final String batchUploadUrl;
+    private final boolean transformEnabled;
+    private final int transformMaxEdge;
+    private final String transformFormat;
+    private final int transformQuality;
+    private final boolean transformKeepExif;
+    private final boolean unmeteredOnly;
+    private final int meteredCapMb;
+    private final int runBudgetMb;
+    private final int chargingBacklog;
+    private final int bandwidthKbps;
+
+    private SyncConfig(Builder builder) {
+        backend = builder.backend;
+        apiUrl = builder.apiUrl;
+        token = builder.token;
+        accessKey = builder.accessKey;
+        secretKey = builder.secretKey;
+        s3Bucket = builder.s3Bucket;
+        s3Region = builder.s3Region;
+        transport = builder.transport;
+        intervalMinutes = builder.intervalMinutes;
+        uploadConcurrency = builder.uploadConcurrency;
+        uploadOrder = UploadOrder.normalize(builder.uploadOrder);
+        chunkedUploadUrl = builder.chunkedUploadUrl;
+        batchUploadUrl = builder.batchUploadUrl;
+        transformEnabled = builder.transformEnabled;
+        transformMaxEdge = builder.transformMaxEdge;
+        transformFormat = builder.transformFormat;
+        transformQuality = builder.transformQuality;
+        transformKeepExif = builder.transformKeepExif;
+        unmeteredOnly = builder.unmeteredOnly;
+        meteredCapMb = builder.meteredCapMb;
+        runBudgetMb = builder.runBudgetMb;
+        chargingBacklog = builder.chargingBacklog;
+        bandwidthKbps = builder.bandwidthKbps;
+    }
+
+    public static SyncConfig from(SyncSettings settings) {
+        return new Builder()
+                .setBackend(settings.getString(KEY_BACKEND, UploadBackend.TYPE_EASYIMAGE))
+                .setApiUrl(settings.getString(KEY_API_URL, ""))
+                .setToken(settings.getString(KEY_TOKEN, ""))
+                .setAccessKey(settings.getString(KEY_ACCESS_KEY, ""))
+                .setSecretKey(settings.getString(KEY_SECRET_KEY, ""))
+                .setS3Bucket(settings.getString(KEY_S3_BUCKET, ""))
+                .setS3Region(settings.getString(KEY_S3_REGION, ""))
+                .setTransport(settings.getString(KEY_TRANSPORT, UploadTransport.TYPE_OKHTTP))
+                .setIntervalMinutes(readInt(settings, KEY_INTERVAL))
+                .setUploadConcurrency(readInt(settings, KEY_UPLOAD_CONCURRENCY))
+                .setUploadOrder(settings.getString(KEY_UPLOAD_ORDER, UploadOrder.DEADLINE))
+                .setChunkedUploadUrl(settings.getString(KEY_CHUNKED_UPLOAD_URL, ""))
+                .setBatchUploadUrl(settings.getString(KEY_BATCH_UPLOAD_URL, ""))
+                .setTransformEnabled(settings.getBoolean(KEY_TRANSFORM_ENABLED, false))
+                .setTransformMaxEdge(readInt(settings, KEY_TRANSFORM_MAX_EDGE))
+                .setTransformFormat(settings.getString(KEY_TRANSFORM_FORMAT, UploadTransformer.FORMAT_JPEG))
+                .setTransformQuality(readInt(settings, KEY_TRANSFORM_QUALITY))
+                .setTransformKeepExif(settings.getBoolean(KEY_TRANSFORM_KEEP_EXIF, true))
+                .setUnmeteredOnly(settings.getBoolean(KEY_UNMETERED_ONLY, false))
+                .setMeteredCapMb(readInt(settings, KEY_METERED_CAP_MB))
+                .setRunBudgetMb(readInt(settings, KEY_RUN_BUDGET_MB))
+                .setChargingBacklog(readInt(settings, KEY_CHARGING_BACKLOG))
+                .setBandwidthKbps(readInt(settings, KEY_BANDWIDTH_KBPS))
+                .build();
+    }
+
+    /**
+     * 数值类设置一直以界面输入的字符串保存，这里沿用同样的格式。
+     */
+    private static int readInt(SyncSettings settings, String key) {
+        return Math.max(0, parseInt(settings.getString(key, ""), 0));
+    }
+
+    /**
+     * 解析界面输入的整数，空白或格式不对时返回默认值。
+     */
+    public static int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static String formatInt(int value) {
+        return value > 0 ? String.valueOf(value) : "";
+    }
+
+    public void writeTo(SyncSettings.Editor editor) {
+        editor.putString(KEY_BACKEND, backend)
+                .putString(KEY_API_URL, apiUrl)
+                .putString(KEY_TOKEN, token)
+                .putString(KEY_ACCESS_KEY, accessKey)
+                .putString(KEY_SECRET_KEY, secretKey)
+                .putString(KEY_S3_BUCKET, s3Bucket)
+                .putString(KEY_S3_REGION, s3Region)
+                .putString(KEY_TRANSPORT, transport)
+                .putString(KEY_INTERVAL, formatInt(intervalMinutes))
+                .putString(KEY_UPLOAD_CONCURRENCY, formatInt(uploadConcurrency))
+                .putString(KEY_UPLOAD_ORDER, uploadOrder)
+                .putString(KEY_CHUNKED_UPLOAD_URL, chunkedUploadUrl)
+                .putString(KEY_BATCH_UPLOAD_URL, batchUploadUrl)
+                .putBoolean(KEY_TRANSFORM_ENABLED, transformEnabled)
+                .putString(KEY_TRANSFORM_MAX_EDGE, formatInt(transformMaxEdge))
+                .putString(KEY_TRANSFORM_FORMAT, transformFormat)
+                .putString(KEY_TRANSFORM_QUALITY, formatInt(transformQuality))
+                .putBoolean(KEY_TRANSFORM_KEEP_EXIF, transformKeepExif)
+                .putBoolean(KEY_UNMETERED_ONLY, unmeteredOnly)
+                .putString(KEY_METERED_CAP_MB, formatInt(meteredCapMb))
+                .putString(KEY_RUN_BUDGET_MB, formatInt(runBudgetMb))
+                .putString(KEY_CHARGING_BACKLOG, formatInt(chargingBacklog))
+                .putString(KEY_BANDWIDTH_KBPS, formatInt(bandwidthKbps));
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    public BackendConfig toBackendConfig() {
+        return new BackendConfig(backend, apiUrl, token, accessKey, secretKey, s3Bucket, s3Region, batchUploadUrl);
+    }
+
+    public SyncPolicy toPolicy() {
+        return SyncPolicy.from(this);
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String getAccessKey() {
+        return accessKey;
+    }
+
+    public String getSecretKey() {
+        return secretKey;
+    }
+
+    public String getS3Bucket() {
+        return s3Bucket;
+    }
+
+    public String getS3Region() {
+        return s3Region;
+    }
+
+    public String getTransport() {
+        return transport;
+    }
+
+    public int getIntervalMinutes() {
+        return intervalMinutes;
+    }
+
+    public int getUploadConcurrency() {
+        return uploadConcurrency;
+    }
+
+    public String getUploadOrder() {
+        return uploadOrder;
+    }
+
+    public String getChunkedUploadUrl() {
+        return chunkedUploadUrl;
+    }
+
+    public String getBatchUploadUrl() {
+        return batchUploadUrl;
+    }
+
+    public boolean isTransformEnabled() {
+        return transformEnabled;
+    }
+
+    public int getTransformMaxEdge() {
+        return transformMaxEdge;
+    }
+
+    public String getTransformFormat() {
+        return transformFormat;
+    }
+
+    public int getTransformQuality() {
+        return transformQuality;
+    }
+
+    public boolean isTransformKeepExif() {
+        return transformKeepExif;
+    }
+
+    public boolean isUnmeteredOnly() {
+        return unmeteredOnly;
+    }
+
+    public int getMeteredCapMb() {
+        return meteredCapMb;
+    }
+
+    public int getRunBudgetMb() {
+        return runBudgetMb;
+    }
+
+    public int getChargingBacklog() {
+        return chargingBacklog;
+    }
+
+    public int getBandwidthKbps() {
+        return bandwidthKbps;
+    }
+
+    public static final class Builder {
+        private String backend = UploadBackend.TYPE_EASYIMAGE;
+        private String apiUrl = "";
+        private String token = "";
+        private String accessKey = "";
+        private String secretKey = "";
+        private String s3Bucket = "";
+        private String s3Region = "";
+        private String transport = UploadTransport.TYPE_OKHTTP;
+        private int intervalMinutes;
+        private int uploadConcurrency;
+        private String uploadOrder = UploadOrder.DEADLINE;
+        private String chunkedUploadUrl = "";
+        private String batchUploadUrl = "";
+        private boolean transformEnabled;
+        private int transformMaxEdge;
+        private String transformFormat = UploadTransformer.FORMAT_JPEG;
+        private int transformQuality;
+        private boolean transformKeepExif = true;
+        private boolean unmeteredOnly;
+        private int meteredCapMb;
+        private int runBudgetMb;
+        private int chargingBacklog;
+        private int bandwidthKbps;
+
+        public Builder() {
+        }
+
+        private Builder(SyncConfig config) {
+            backend = config.backend;
+            apiUrl = config.apiUrl;
+            token = config.token;
+            accessKey = config.accessKey;
+            secretKey = config.secretKey;
+            s3Bucket = config.s3Bucket;
+            s3Region = config.s3Region;
+            transport = config.transport;
+            intervalMinutes = config.intervalMinutes;
+            uploadConcurrency = config.uploadConcurrency;
+            uploadOrder = config.uploadOrder;
+            chunkedUploadUrl = config.chunkedUploadUrl;
+            batchUploadUrl = config.batchUploadUrl;
+            transformEnabled = config.transformEnabled;
+            transformMaxEdge = config.transformMaxEdge;
+            transformFormat = config.transformFormat;
+            transformQuality = config.transformQuality;
+            transformKeepExif = config.transformKeepExif;
+            unmeteredOnly = config.unmeteredOnly;
+            meteredCapMb = config.meteredCapMb;
+            runBudgetMb = config.runBudgetMb;
+            chargingBacklog = config.chargingBacklog;
+            bandwidthKbps = config.bandwidthKbps;
+        }
+
+        public Builder setBackend(String backend) {
+            this.backend = backend;
+            return this;
+        }
+
+        public Builder setApiUrl(String apiUrl) {
+            this.apiUrl = apiUrl;
+            return this;
+        }
+
+        public Builder setToken(String token) {
+            this.token = token;
+            return this;
+        }
+
+        public Builder setAccessKey(String accessKey) {
+            this.accessKey = accessKey;
+            return this;
+        }
+
+        public Builder setSecretKey(String secretKey) {
+            this.secretKey = secretKey;
+            return this;
+        }
+
+        public Builder setS3Bucket(String s3Bucket) {
+            this.s3Bucket = s3Bucket;
+            return this;
+        }
+
+        public Builder setS3Region(String s3Region) {
+            this.s3Region = s3Region;
+            return this;
+        }
+
+        public Builder setTransport(String transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        public Builder setIntervalMinutes(int intervalMinutes) {
+            this.intervalMinutes = intervalMinutes;
+            return this;
+        }
+
+        public Builder setUploadConcurrency(int uploadConcurrency) {
+            this.uploadConcurrency = uploadConcurrency;
+            return this;
+        }
+
+        public Builder setUploadOrder(String uploadOrder) {
+            this.uploadOrder = uploadOrder;
+            return this;
+        }
+
+        public Builder setChunkedUploadUrl(String chunkedUploadUrl) {
+            this.chunkedUploadUrl = chunkedUploadUrl;
+            return this;
+        }
+
+        public Builder setBatchUploadUrl(String batchUploadUrl) {
+            this.batchUploadUrl = batchUploadUrl;
+            return this;
+        }
+
+        public Builder setTransformEnabled(boolean transformEnabled) {
+            this.transformEnabled = transformEnabled;
+            return this;
+        }
+
+        public Builder setTransformMaxEdge(int transformMaxEdge) {
+            this.transformMaxEdge = transformMaxEdge;
+            return this;
+        }
+
+        public Builder setTransformFormat(String transformFormat) {
+            this.transformFormat = transformFormat;
+            return this;
+        }
+
+        public Builder setTransformQuality(int transformQuality) {
+            this.transformQuality = transformQuality;
+            return this;
+        }
+
+        public Builder setTransformKeepExif(boolean transformKeepExif) {
+            this.transformKeepExif = transformKeepExif;
+            return this;
+        }
+
+        public Builder setUnmeteredOnly(boolean unmeteredOnly) {
+            this.unmeteredOnly = unmeteredOnly;
+            return this;
+        }
+
+        public Builder setMeteredCapMb(int meteredCapMb) {
+            this.meteredCapMb = meteredCapMb;
+            return this;
+        }
+
+        public Builder setRunBudgetMb(int runBudgetMb) {
+            this.runBudgetMb = runBudgetMb;
+            return this;
+        }
+
+        public Builder setChargingBacklog(int chargingBacklog) {
+            this.chargingBacklog = chargingBacklog;
+            return this;
+        }
+
+        public Builder setBandwidthKbps(int bandwidthKbps) {
+            this.bandwidthKbps = bandwidthKbps;
+            return this;
+        }
+
+        public SyncConfig build() {
+            return new SyncConfig(this);
+        }
+    }
+}
@@ -0,0 +1,649 @@
+package cn.sab1e.autosync;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 一次同步：扫描到期的目录，与上传日志合并，按目录轮转排队，上传，再按结果更新日志、删除本地文件。
+ * 不依赖 Android：文件的读取和删除、目录遍历、上传日志、上传前转换和累计统计都由宿主通过接口提供，
+ * app 中的宿主是 ImageUploadWorker，desktop 中是 DesktopRunner。
+ * 单个文件的失败由上传日志按文件退避；连续连不上服务器或认证失败时熔断，结束本次同步。
+ * 一个实例只运行一次 {@link #run}。
+ */
+public class SyncEngine {
+
+    public interface Listener {
+        /**
+         * 目录完整遍历后调用，宿主据此记录扫描时间。在扫描线程上调用。
+         */
+        void onSourceScanned(SyncSource source, long scannedAt);
+
+        /**
+         * 进度按文件数计算，total 随扫描增长。可能在多个上传线程上同时调用。
+         */
+        void onProgress(int total, int completed);
+    }
+
+    private static final String TAG = "SyncEngine";
+    // 连续这么多个文件连不上服务器就结束本次同步
+    private static final int UNREACHABLE_THRESHOLD = 2;
+    private static final int DEFAULT_UPLOAD_CONCURRENCY = 3;
+    private static final int MAX_UPLOAD_CONCURRENCY = 8;
+    // 超过该大小的文件在配置了分片上传地址时走断点续传
+    private static final long CHUNKED_UPLOAD_THRESHOLD = 8L * 1024 * 1024;
+    // 不超过该大小的文件在后端支持时合并成批量请求，每批不超过 BATCH_MAX_FILES 个、BATCH_MAX_BYTES 字节
+    private static final long BATCH_FILE_THRESHOLD = 1024 * 1024;
+    private static final int BATCH_MAX_FILES = 20;
+    private static final long BATCH_MAX_BYTES = 8L * 1024 * 1024;
+
+    private final UploadJournal journal;
+    private final DocumentStore documents;
+    private final SourceScanner scanner;
+    private final UploadTransformer transformer;
+    private final SyncStats stats;
+    private final BooleanSupplier stopped;
+    private final Listener listener;
+    private volatile boolean cancelled;
+    // 以下对象在 run 开始时创建，由所有上传线程共享
+    private UploadTransport transport;
+    private UploadBackend backend;
+    private String chunkedUploadUrl;
+    private String token;
+    private SyncMetrics metrics;
+    private CircuitBreaker breaker;
+    private volatile UploadPipeline<List<SyncEntry>> pipeline;
+
+    private SyncEngine(Builder builder) {
+        journal = builder.journal;
+        documents = builder.documents;
+        scanner = builder.scanner;
+        transformer = builder.transformer;
+        stats = builder.stats != null ? builder.stats : new SyncStats(SyncStats.NO_STORE);
+        stopped = builder.stopped;
+        listener = builder.listener;
+    }
+
+    /**
+     * 上次同步在服务器确认之后、删除本地文件之前中断的，直接补做删除；上传中断的文件退回待上传。
+     */
+    public void recover() {
+        for (UploadJournal.JournalEntry journalEntry : journal.recover()) {
+            SyncLog.d(TAG, "补做删除: " + journalEntry.getDocumentId() + " -> " + journalEntry.getRemoteId());
+            deleteLocal(journalEntry.getTreeUri(), journalEntry.getDocumentId());
+        }
+    }
+
+    /**
+     * 扫描 sources 并上传。扫描在后台线程进行，每读完一个目录就把待上传的文件放进队列，上传不必等扫描结束；
+     * 目录内按设置的顺序出队，额度有限时优先上传排在前面的文件。
+     */
+    public Report run(SyncConfig config, List<SyncSource> sources, RunBudget budget, long now) {
+        String order = config.getUploadOrder();
+        metrics = new SyncMetrics(now);
+        metrics.setOrder(order);
+        FairUploadQueue<SyncEntry> queue = new FairUploadQueue<>(UploadOrder.comparator(order));
+        AtomicInteger discovered = new AtomicInteger();
+        ExecutorService scanExecutor = Executors.newSingleThreadExecutor();
+        scanExecutor.execute(() -> {
+            try {
+                for (SyncSource source : sources) {
+                    if (isStopped()) {
+                        break;
+                    }
+                    scanSource(source, now, queue, discovered);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                SyncLog.e(TAG, "扫描目录出错", e);
+            } finally {
+                queue.finish();
+            }
+        });
+
+        long sentBefore = stats.getBytesSent();
+        Report report;
+        try {
+            report = upload(budget.limit(queue.takeAll(), SyncEntry::getSize), discovered, config);
+        } finally {
+            // 额度用完后上传先结束，等扫描把索引更新完
+            scanExecutor.shutdown();
+            try {
+                scanExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                scanExecutor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 只有文件数额度用完时队列里才会有剩余
+        report.left = queue.size();
+        report.bytesSent = stats.getBytesSent() - sentBefore;
+        metrics.finish(System.currentTimeMillis());
+        return report;
+    }
+
+    /**
+     * 不再开始新的上传，并中断正在进行的上传。
+     * 中断的文件回到待上传状态，分片上传的偏移量已保存，下次同步从断点继续。
+     */
+    public void cancel() {
+        cancelled = true;
+        UploadPipeline<List<SyncEntry>> current = pipeline;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private boolean isStopped() {
+        return cancelled || stopped.getAsBoolean();
+    }
+
+    /**
+     * 遍历一个同步目录，需要上传的文件直接加入队列。
+     * 只有完整遍历后才清理索引中已不存在的文件并通知宿主，中途停止或有子目录不可读时留待下次。
+     */
+    private void scanSource(SyncSource source, long now, FairUploadQueue<SyncEntry> queue,
+                            AtomicInteger discovered) throws InterruptedException {
+        String treeUri = source.getTreeUri();
+        Set<String> present = ConcurrentHashMap.newKeySet();
+        AtomicInteger pendingCount = new AtomicInteger();
+        long startNanos = System.nanoTime();
+        boolean complete = scanner.walk(treeUri, source.isRecursive(), this::isStopped, entries -> {
+            List<SyncEntry> matched = new ArrayList<>();
+            for (SyncEntry entry : entries) {
+                if (source.accepts(entry.getName(), entry.getMimeType(), entry.getSize(), entry.getLastModified(), now)) {
+                    matched.add(entry);
+                    present.add(entry.getDocumentId());
+                }
+            }
+            for (SyncEntry entry : journal.merge(treeUri, matched)) {
+                queue.add(source.getId(), entry);
+                discovered.incrementAndGet();
+                pendingCount.incrementAndGet();
+            }
+        });
+        metrics.recordScan(elapsedMillis(startNanos), present.size());
+        if (complete) {
+            journal.prune(treeUri, present);
+            listener.onSourceScanned(source, now);
+        } else if (!isStopped()) {
+            SyncLog.e(TAG, "目录未能完整读取: " + treeUri);
+        }
+        SyncLog.d(TAG, treeUri + " 扫描到 " + present.size() + " 个文件，其中 " + pendingCount.get() + " 个需要上传");
+    }
+
+    private Report upload(Iterable<SyncEntry> entries, AtomicInteger discovered, SyncConfig config) {
+        int concurrency = clampConcurrency(config.getUploadConcurrency());
+        breaker = new CircuitBreaker(UNREACHABLE_THRESHOLD);
+        Report report = new Report(metrics);
+        // 传输层在整次同步中只创建一次，所有上传共享连接池
+        try (UploadTransport transport = UploadTransport.create(config.getTransport(), config.toPolicy().newBandwidthLimiter())) {
+            this.transport = transport;
+            backend = UploadBackend.create(config.toBackendConfig(), transport);
+            // 分片续传协议只有 EasyImage 部署会配置
+            String chunkedUrl = config.getChunkedUploadUrl();
+            chunkedUploadUrl = chunkedUrl.isEmpty() || !UploadBackend.TYPE_EASYIMAGE.equals(config.getBackend())
+                    ? null : chunkedUrl;
+            token = config.getToken();
+            UploadPipeline<List<SyncEntry>> pipeline = new UploadPipeline<>(concurrency, concurrency * 2);
+            this.pipeline = pipeline;
+            if (isStopped()) {
+                // cancel 在流水线创建之前就已调用
+                pipeline.cancel();
+            }
+
+            // 压缩后的文件要逐个确认能否变小，开启压缩时不合并
+            boolean batching = backend.capabilities().isBatchUpload() && transformer == null;
+            UploadBatcher batcher = new UploadBatcher(batching ? BATCH_MAX_FILES : 1, BATCH_MAX_BYTES);
+            AtomicInteger completedFiles = new AtomicInteger();
+
+            // 所有目录共用一条流水线，entries 按目录轮转出队；总数随扫描增长。进度按文件数计算
+            UploadPipeline.Report<List<SyncEntry>> pipelineReport = pipeline.run(
+                    batcher.batches(entries, SyncEntry::getSize, this::isBatchable), -1,
+                    this::uploadBatch,
+                    (batch, success, completed, total) -> {
+                        int files = completedFiles.addAndGet(batch.size());
+                        listener.onProgress(Math.max(discovered.get(), files), files);
+                    });
+            report.attempted = completedFiles.get();
+            report.allSucceeded = pipelineReport.isAllSucceeded();
+        } catch (InterruptedException e) {
+            SyncLog.e("Upload", "上传被中断", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            stats.flush();
+        }
+        SyncLog.d("Upload", "本次同步" + stats + "，上传耗时 " + stats.getUploadMillis() + " ms");
+        report.stopped = isStopped();
+        report.trippedBy = breaker.getTrippedBy();
+        return report;
+    }
+
+    private boolean uploadImage(SyncEntry entry) {
+        String fileName = entry.getName();
+        if (breaker.isOpen() || isStopped()) {
+            // 本次同步已熔断或被停止，留给下次同步，不计入失败次数
+            return false;
+        }
+        journal.setState(entry.getTreeUri(), entry.getDocumentId(), UploadJournal.STATE_UPLOADING);
+        try {
+            // 支持查询的后端按原文件摘要给对象命名，上传前先算出摘要
+            String sha256 = backend.capabilities().isDedupeLookup() ? sha256Of(entry) : null;
+            if (skipIfUploaded(entry, sha256)) {
+                return true;
+            }
+
+            // 视频不压缩，配置了断点续传时一律走续传，中途断网不必从头再传；
+            // 续传要先声明总长度，SAF 报不出大小的文件只能走普通上传
+            boolean video = MimeSniffer.isVideo(MimeSniffer.resolve(null, entry.getMimeType(), fileName));
+            if (transformer != null && !video) {
+                UploadTransformer.Result transformed = transformer.transform(entry);
+                if (transformed != null) {
+                    return uploadTransformed(entry, transformed, sha256);
+                }
+            }
+
+            if (chunkedUploadUrl != null && entry.getSize() > 0 && (video || entry.getSize() >= CHUNKED_UPLOAD_THRESHOLD)) {
+                return uploadChunked(entry);
+            }
+            long startNanos = System.nanoTime();
+            MessageDigest digest = ContentHasher.newDigest();
+            try (FileChannel channel = documents.openChannel(entry)) {
+                String contentType = contentTypeOf(entry, channel);
+                UploadResult result = backend.upload(MultipartBody.Content.of(channel).digestWith(digest), fileName, contentType, sha256);
+
+                boolean isSuccessful = result.isSuccessful();
+                if (isSuccessful) {
+                    SyncLog.d("Upload", "上传成功: " + fileName);
+                    journal.recordContent(ContentHasher.toHex(digest.digest()), entry.getSize());
+                    long elapsed = elapsedMillis(startNanos);
+                    stats.recordSuccess(entry.getSize(), elapsed);
+                    metrics.recordUploaded(fileName, entry.getSize(), elapsed, result.getTiming());
+                    onUploaded(entry, result.getResponse());
+                } else {
+                    SyncLog.e("Upload", "上传失败: " + fileName);
+                    onFailed(entry, result);
+                }
+                return isSuccessful;
+            }
+        } catch (Exception e) {
+            SyncLog.e("Upload", "上传过程中出现异常", e);
+            onFailed(entry, RetryPolicy.classify(e), e.toString(),
+                    e instanceof HttpStatusException ? ((HttpStatusException) e).getRetryAfterMillis() : -1);
+            return false;
+        }
+    }
+
+    /**
+     * 内容已上传过（本地摘要记录或服务器查询）时直接按上传成功处理并返回 true。
+     * sha256 为 null 时只在存在同样大小的已上传内容时才读一遍文件计算摘要。
+     */
+    private boolean skipIfUploaded(SyncEntry entry, String sha256) throws IOException {
+        String fileName = entry.getName();
+        if (sha256 == null && entry.getSize() >= 0 && journal.hasContentOfSize(entry.getSize())) {
+            sha256 = sha256Of(entry);
+        }
+        if (sha256 != null && journal.hasContent(sha256)) {
+            SyncLog.d("Upload", "内容已上传过，跳过: " + fileName);
+            stats.recordSkipped();
+            metrics.recordSkipped(fileName, entry.getSize());
+            onUploaded(entry, null);
+            return true;
+        }
+
+        // 服务器按摘要核对，只有内容相同才算已上传，名称和大小相同不够
+        if (sha256 != null && backend.capabilities().isDedupeLookup() && entry.getSize() >= 0) {
+            UploadResponse existing = backend.lookup(fileName, entry.getSize(), sha256);
+            if (existing != null) {
+                SyncLog.d("Upload", "服务器上已存在，跳过: " + fileName);
+                stats.recordSkipped();
+                metrics.recordSkipped(fileName, entry.getSize());
+                onUploaded(entry, existing);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按位置读取文件头判断类型，不移动通道位置，上传仍从头开始。
+     */
+    private static String contentTypeOf(SyncEntry entry, FileChannel channel) throws IOException {
+        byte[] header = new byte[MimeSniffer.HEADER_SIZE];
+        int headerLength = Math.max(0, channel.read(ByteBuffer.wrap(header), 0));
+        return MimeSniffer.resolve(MimeSniffer.sniff(header, headerLength), entry.getMimeType(), entry.getName());
+    }
+
+    private boolean isBatchable(SyncEntry entry) {
+        return entry.getSize() >= 0 && entry.getSize() <= BATCH_FILE_THRESHOLD
+                && !MimeSniffer.isVideo(MimeSniffer.resolve(null, entry.getMimeType(), entry.getName()));
+    }
+
+    /**
+     * 上传一批文件：已上传过的先跳过，其余放进一个请求，再按服务器返回的逐个结果分别记录成功或失败。
+     * 只有一个文件时走普通上传。
+     */
+    private boolean uploadBatch(List<SyncEntry> batch) {
+        if (batch.size() == 1) {
+            return uploadImage(batch.get(0));
+        }
+        if (breaker.isOpen() || isStopped()) {
+            return false;
+        }
+        List<SyncEntry> pending = new ArrayList<>();
+        List<UploadBackend.BatchItem> items = new ArrayList<>();
+        List<MessageDigest> digests = new ArrayList<>();
+        List<Closeable> opened = new ArrayList<>();
+        boolean allSucceeded = true;
+        try {
+            for (SyncEntry entry : batch) {
+                journal.setState(entry.getTreeUri(), entry.getDocumentId(), UploadJournal.STATE_UPLOADING);
+                try {
+                    if (skipIfUploaded(entry, null)) {
+                        continue;
+                    }
+                    FileChannel channel = documents.openChannel(entry);
+                    opened.add(channel);
+                    MessageDigest digest = ContentHasher.newDigest();
+                    items.add(new UploadBackend.BatchItem(MultipartBody.Content.of(channel).digestWith(digest),
+                            entry.getName(), contentTypeOf(entry, channel)));
+                    digests.add(digest);
+                    pending.add(entry);
+                } catch (Exception e) {
+                    SyncLog.e("Upload", "无法读取文件: " + entry.getName(), e);
+                    onFailed(entry, RetryPolicy.classify(e), e.toString(), -1);
+                    allSucceeded = false;
+                }
+            }
+            if (pending.isEmpty()) {
+                return allSucceeded;
+            }
+
+            long startNanos = System.nanoTime();
+            List<UploadResult> results = backend.uploadBatch(items);
+            long elapsed = elapsedMillis(startNanos);
+            SyncLog.d("Upload", "批量上传 " + pending.size() + " 个文件，耗时 " + elapsed + " ms");
+            for (int i = 0; i < pending.size(); i++) {
+                SyncEntry entry = pending.get(i);
+                UploadResult result = results.get(i);
+                if (result.isSuccessful()) {
+                    journal.recordContent(ContentHasher.toHex(digests.get(i).digest()), entry.getSize());
+                    // 上传耗时按文件数分摊，合计仍等于请求耗时；指标里记录的是整个请求的耗时
+                    stats.recordSuccess(entry.getSize(), elapsed / pending.size());
+                    metrics.recordUploaded(entry.getName(), entry.getSize(), elapsed, result.getTiming());
+                    onUploaded(entry, result.getResponse());
+                } else {
+                    SyncLog.e("Upload", "上传失败: " + entry.getName() + " (" + result + ")");
+                    onFailed(entry, result);
+                    allSucceeded = false;
+                }
+            }
+            return allSucceeded;
+        } finally {
+            for (Closeable closeable : opened) {
+                try {
+                    closeable.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @param sha256 原文件的摘要，后端不需要时为 null
+     */
+    private boolean uploadTransformed(SyncEntry entry, UploadTransformer.Result transformed, String sha256) throws IOException {
+        long startNanos = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(transformed.getFile().toPath())) {
+            UploadResult result = backend.upload(MultipartBody.Content.of(channel), transformed.getFileName(),
+                    transformed.getMimeType(), sha256);
+
+            boolean isSuccessful = result.isSuccessful();
+            if (isSuccessful) {
+                SyncLog.d("Upload", "压缩后上传成功: " + entry.getName() + " (" + entry.getSize() + " -> " + transformed.getFile().length() + " 字节)");
+                // 记录原文件的摘要，这样原文件再次出现时仍能被识别为已上传
+                journal.recordContent(transformed.getSourceSha256(), entry.getSize());
+                long elapsed = elapsedMillis(startNanos);
+                stats.recordSuccess(transformed.getFile().length(), elapsed);
+                metrics.recordUploaded(entry.getName(), transformed.getFile().length(), elapsed, result.getTiming());
+                onUploaded(entry, result.getResponse());
+            } else {
+                SyncLog.e("Upload", "上传失败: " + entry.getName());
+                onFailed(entry, result);
+            }
+            return isSuccessful;
+        } finally {
+            transformed.getFile().delete();
+        }
+    }
+
+    private boolean uploadChunked(SyncEntry entry) throws IOException {
+        String fileName = entry.getName();
+        long startNanos = System.nanoTime();
+        // 续传会话按目录分别保存
+        ChunkedUploader chunkedUploader = new ChunkedUploader(transport, chunkedUploadUrl, token,
+                ChunkedUploader.DEFAULT_CHUNK_SIZE, journal.sessionStore(entry.getTreeUri()));
+        UploadResult result = chunkedUploader.upload(() -> documents.openStream(entry),
+                entry.getSize(), fileName, entry.getDocumentId());
+
+        boolean isSuccessful = result.isSuccessful();
+        if (isSuccessful) {
+            SyncLog.d("Upload", "分片上传成功: " + fileName);
+            long elapsed = elapsedMillis(startNanos);
+            stats.recordSuccess(entry.getSize(), elapsed);
+            metrics.recordUploaded(fileName, entry.getSize(), elapsed, result.getTiming());
+            // 续传时没有读到完整内容，单独计算一次摘要
+            journal.recordContent(sha256Of(entry), entry.getSize());
+            onUploaded(entry, result.getResponse());
+        } else {
+            SyncLog.e("Upload", "分片上传失败: " + fileName);
+            onFailed(entry, result);
+        }
+        return isSuccessful;
+    }
+
+    private String sha256Of(SyncEntry entry) throws IOException {
+        try (InputStream inputStream = documents.openStream(entry)) {
+            return ContentHasher.sha256(inputStream);
+        }
+    }
+
+    private void onUploaded(SyncEntry entry, UploadResponse response) {
+        breaker.recordSuccess();
+        // 先记下服务器已确认，再删除本地文件
+        journal.markUploaded(entry, response);
+        metrics.recordTimeToUpload(entry.getLastModified(), entry.getDiscoveredAt(), System.currentTimeMillis());
+        deleteLocal(entry.getTreeUri(), entry.getDocumentId());
+    }
+
+    private void deleteLocal(String treeUri, String documentId) {
+        if (documents.delete(treeUri, documentId)) {
+            journal.setState(treeUri, documentId, UploadJournal.STATE_DELETED);
+            SyncLog.d("Upload", "已删除: " + documentId);
+        } else {
+            // 保持 UPLOADED，下次启动时重试删除
+            SyncLog.e("Upload", "删除失败: " + documentId);
+        }
+    }
+
+    private void onFailed(SyncEntry entry, UploadResult result) {
+        onFailed(entry, RetryPolicy.classify(result), result.toString(), result.getRetryAfterMillis(), result.getTiming());
+    }
+
+    private void onFailed(SyncEntry entry, RetryPolicy.FailureKind kind, String error, long retryAfterMillis) {
+        onFailed(entry, kind, error, retryAfterMillis, null);
+    }
+
+    private void onFailed(SyncEntry entry, RetryPolicy.FailureKind kind, String error, long retryAfterMillis,
+                          RequestTiming timing) {
+        if (isStopped()) {
+            // 被取消而中断的上传不是文件的问题，留到下次同步
+            journal.setState(entry.getTreeUri(), entry.getDocumentId(), UploadJournal.STATE_PENDING);
+            return;
+        }
+        stats.recordFailure();
+        breaker.recordFailure(kind);
+        String treeUri = entry.getTreeUri();
+        String documentId = entry.getDocumentId();
+        if (kind == RetryPolicy.FailureKind.AUTH || kind == RetryPolicy.FailureKind.UNREACHABLE) {
+            // 不是文件本身的问题，不计入失败次数
+            journal.setState(treeUri, documentId, UploadJournal.STATE_PENDING);
+            metrics.recordFailed(entry.getName(), entry.getSize(), timing, error, false);
+            return;
+        }
+        int attempts = journal.getAttempts(treeUri, documentId) + 1;
+        boolean quarantine = RetryPolicy.shouldQuarantine(kind, attempts);
+        metrics.recordFailed(entry.getName(), entry.getSize(), timing, error, !quarantine);
+        if (quarantine) {
+            SyncLog.e("Upload", "已隔离: " + entry.getName() + "（" + kind + "，第 " + attempts + " 次失败）");
+            journal.markFailed(treeUri, documentId, UploadJournal.STATE_QUARANTINED, attempts, 0, error);
+        } else {
+            long delay = RetryPolicy.nextDelayMillis(attempts, retryAfterMillis, ThreadLocalRandom.current());
+            SyncLog.d("Upload", entry.getName() + " 将在 " + delay / 1000 + " 秒后重试（第 " + attempts + " 次失败）");
+            journal.markFailed(treeUri, documentId, UploadJournal.STATE_FAILED, attempts, System.currentTimeMillis() + delay, error);
+        }
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    /**
+     * 未设置（0）时使用默认并发数，超出范围时截断。
+     */
+    static int clampConcurrency(int value) {
+        int concurrency = value > 0 ? value : DEFAULT_UPLOAD_CONCURRENCY;
+        return Math.max(1, Math.min(concurrency, MAX_UPLOAD_CONCURRENCY));
+    }
+
+    /**
+     * 一次同步的结果。
+     */
+    public static class Report {
+        private final SyncMetrics metrics;
+        private int attempted;
+        private boolean allSucceeded;
+        private boolean stopped;
+        private RetryPolicy.FailureKind trippedBy;
+        private int left;
+        private long bytesSent;
+
+        Report(SyncMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        /**
+         * 处理过的文件数，包括跳过和失败的。
+         */
+        public int getAttempted() {
+            return attempted;
+        }
+
+        public boolean isAllSucceeded() {
+            return allSucceeded;
+        }
+
+        /**
+         * 被宿主停止或取消，未处理的文件保持待上传。
+         */
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        /**
+         * 导致熔断的失败类型，没有熔断时为 null。
+         */
+        public RetryPolicy.FailureKind getTrippedBy() {
+            return trippedBy;
+        }
+
+        /**
+         * 超出文件数额度、留待下次上传的文件数。
+         */
+        public int getLeft() {
+            return left;
+        }
+
+        /**
+         * 本次同步实际发送的字节数（压缩后的大小），宿主据此累计计费网络的用量。
+         */
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public SyncMetrics getMetrics() {
+            return metrics;
+        }
+    }
+
+    public static final class Builder {
+        private final UploadJournal journal;
+        private final DocumentStore documents;
+        private final SourceScanner scanner;
+        private UploadTransformer transformer;
+        private SyncStats stats;
+        private BooleanSupplier stopped = () -> false;
+        private Listener listener;
+
+        public Builder(UploadJournal journal, DocumentStore documents, SourceScanner scanner) {
+            this.journal = journal;
+            this.documents = documents;
+            this.scanner = scanner;
+        }
+
+        /**
+         * 上传前转换，为 null 时上传原文件。
+         */
+        public Builder setTransformer(UploadTransformer transformer) {
+            this.transformer = transformer;
+            return this;
+        }
+
+        public Builder setStats(SyncStats stats) {
+            this.stats = stats;
+            return this;
+        }
+
+        /**
+         * 宿主的停止信号，返回 true 后不再开始新的上传。
+         */
+        public Builder setStopped(BooleanSupplier stopped) {
+            this.stopped = stopped;
+            return this;
+        }
+
+        public Builder setListener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public SyncEngine build() {
+            if (listener == null) {
+                listener = new Listener() {
+                    @Override
+                    public void onSourceScanned(SyncSource source, long scannedAt) {
+                    }
+
+                    @Override
+                    public void onProgress(int total, int completed) {
+                    }
+                };
+            }
+            return new SyncEngine(this);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package cn.sab1e.autosync;
+
+/**
+ * 一次扫描中读到的单个文档，字段全部来自同一次目录查询，discoveredAt 为查询时间。
+ * uri 是宿主用来打开文件的地址：app 中为 SAF 文档 URI，desktop 中为文件的绝对路径。
+ */
+public class SyncEntry {
+    private final String treeUri;
+    private final String documentId;
+    private final String uri;
+    private final String name;
+    private final String mimeType;
+    private final long size;
+    private final long lastModified;
+    private final long discoveredAt;
+
+    public SyncEntry(String treeUri, String documentId, String uri, String name, String mimeType, long size, long lastModified,
+                     long discoveredAt) {
+        this.treeUri = treeUri;
+        this.documentId = documentId;
+        this.uri = uri;
+        this.name = name;
+        this.mimeType = mimeType;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.discoveredAt = discoveredAt;
+    }
+
+    /**
+     * 所属同步目录，也是同步索引中的分区键。
+     */
+    public String getTreeUri() {
+        return treeUri;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * 扫描到该文件的时间，用于计算从发现到上传完成的耗时。
+     */
+    public long getDiscoveredAt() {
+        return discoveredAt;
+    }
+}
@@ -0,0 +1,132 @@
+package cn.sab1e.autosync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 同步目录的附加筛选条件：文件名通配符（包含/排除）、大小范围和文件年龄。
+ * 通配符支持 * 和 ?，不区分大小写；没有包含规则时所有文件名都算包含。
+ */
+public class SyncFilter {
+
+    public static final long UNLIMITED_SIZE = Long.MAX_VALUE;
+    public static final SyncFilter ACCEPT_ALL = new SyncFilter(null, null, 0, UNLIMITED_SIZE, 0);
+
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final long minSize;
+    private final long maxSize;
+    private final long maxAgeMillis;
+
+    /**
+     * @param maxAgeMillis 只同步修改时间在这段时间以内的文件，0 为不限
+     */
+    public SyncFilter(List<String> includes, List<String> excludes, long minSize, long maxSize, long maxAgeMillis) {
+        this.includes = includes == null ? Collections.<String>emptyList() : Collections.unmodifiableList(new ArrayList<>(includes));
+        this.excludes = excludes == null ? Collections.<String>emptyList() : Collections.unmodifiableList(new ArrayList<>(excludes));
+        this.minSize = Math.max(0, minSize);
+        this.maxSize = maxSize <= 0 ? UNLIMITED_SIZE : maxSize;
+        this.maxAgeMillis = Math.max(0, maxAgeMillis);
+    }
+
+    /**
+     * 解析用逗号或空白分隔的通配符列表，例如 "IMG_*, *.tmp"。
+     */
+    public static List<String> parsePatterns(String value) {
+        List<String> patterns = new ArrayList<>();
+        if (value == null) {
+            return patterns;
+        }
+        for (String part : value.split("[,\\s]+")) {
+            if (!part.isEmpty()) {
+                patterns.add(part);
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * 大小未知（小于 0）或修改时间未知（0）时不按该条件筛选。
+     */
+    public boolean accepts(String fileName, long size, long lastModified, long nowMillis) {
+        if (fileName == null) {
+            return false;
+        }
+        if (!includes.isEmpty() && !matchesAny(includes, fileName)) {
+            return false;
+        }
+        if (matchesAny(excludes, fileName)) {
+            return false;
+        }
+        if (size >= 0 && (size < minSize || size > maxSize)) {
+            return false;
+        }
+        return maxAgeMillis == 0 || lastModified <= 0 || nowMillis - lastModified <= maxAgeMillis;
+    }
+
+    private static boolean matchesAny(List<String> patterns, String fileName) {
+        for (String pattern : patterns) {
+            if (matches(pattern, fileName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 通配符匹配，* 匹配任意多个字符，? 匹配一个字符。
+     */
+    static boolean matches(String pattern, String name) {
+        String p = pattern.toLowerCase(Locale.ROOT);
+        String s = name.toLowerCase(Locale.ROOT);
+        int pi = 0;
+        int si = 0;
+        int star = -1;
+        int mark = 0;
+        while (si < s.length()) {
+            if (pi < p.length() && (p.charAt(pi) == '?' || p.charAt(pi) == s.charAt(si))) {
+                pi++;
+                si++;
+            } else if (pi < p.length() && p.charAt(pi) == '*') {
+                // 记下 * 的位置，先让它匹配空串，失配时回退多吃一个字符
+                star = pi++;
+                mark = si;
+            } else if (star >= 0) {
+                pi = star + 1;
+                si = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (pi < p.length() && p.charAt(pi) == '*') {
+            pi++;
+        }
+        return pi == p.length();
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public long getMinSize() {
+        return minSize;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public long getMaxAgeMillis() {
+        return maxAgeMillis;
+    }
+
+    public boolean isEmpty() {
+        return includes.isEmpty() && excludes.isEmpty() && minSize == 0 && maxSize == UNLIMITED_SIZE && maxAgeMillis == 0;
+    }
+}
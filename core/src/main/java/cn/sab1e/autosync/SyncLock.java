@@ -0,0 +1,65 @@
+package cn.sab1e.autosync;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于文件锁的同步互斥。锁由操作系统持有，进程被杀死时自动释放，对多个进程同样有效。
+ */
+public class SyncLock implements Closeable {
+
+    // 部分系统上关闭同一文件的任意通道都会释放本进程持有的锁，所以进程内先用标志互斥，不再打开第二个通道
+    private static final AtomicBoolean HELD = new AtomicBoolean();
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private SyncLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    /**
+     * 尝试获取锁，已被占用时立即返回 null。
+     */
+    public static SyncLock tryAcquire(File file) throws IOException {
+        if (!HELD.compareAndSet(false, true)) {
+            return null;
+        }
+        FileChannel channel = null;
+        try {
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return new SyncLock(channel, lock);
+            }
+        } catch (OverlappingFileLockException e) {
+            // 不应出现，按锁被占用处理
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            HELD.set(false);
+            throw e;
+        }
+        channel.close();
+        HELD.set(false);
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            lock.release();
+        } finally {
+            channel.close();
+            HELD.set(false);
+        }
+    }
+}
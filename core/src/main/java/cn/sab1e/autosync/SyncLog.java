@@ -0,0 +1,67 @@
+package cn.sab1e.autosync;
+
+/**
+ * 同步引擎的日志出口，调用方式与 android.util.Log 相同。
+ * 引擎不依赖任何平台，日志交给宿主设置的 {@link Sink}：app 转到 logcat，desktop 写到标准错误。
+ */
+public final class SyncLog {
+
+    public interface Sink {
+        void debug(String tag, String message);
+
+        void info(String tag, String message);
+
+        /**
+         * @param error 可以为 null
+         */
+        void error(String tag, String message, Throwable error);
+    }
+
+    /**
+     * 没有设置时写到标准错误，单元测试里也能看到日志。
+     */
+    public static final Sink STDERR = new Sink() {
+        @Override
+        public void debug(String tag, String message) {
+            System.err.println("D/" + tag + ": " + message);
+        }
+
+        @Override
+        public void info(String tag, String message) {
+            System.err.println("I/" + tag + ": " + message);
+        }
+
+        @Override
+        public void error(String tag, String message, Throwable error) {
+            System.err.println("E/" + tag + ": " + message);
+            if (error != null) {
+                error.printStackTrace();
+            }
+        }
+    };
+
+    private static volatile Sink sink = STDERR;
+
+    private SyncLog() {
+    }
+
+    public static void setSink(Sink newSink) {
+        sink = newSink == null ? STDERR : newSink;
+    }
+
+    public static void d(String tag, String message) {
+        sink.debug(tag, message);
+    }
+
+    public static void i(String tag, String message) {
+        sink.info(tag, message);
+    }
+
+    public static void e(String tag, String message) {
+        sink.error(tag, message, null);
+    }
+
+    public static void e(String tag, String message, Throwable error) {
+        sink.error(tag, message, error);
+    }
+}
@@ -0,0 +1,311 @@
+package cn.sab1e.autosync;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次同步的结构化指标：扫描耗时、字节数、吞吐量、各阶段请求耗时的直方图和重试次数，另附每个文件的明细。
+ * 扫描线程和上传线程并发写入；同步结束后整体写入 MetricsStore，供诊断界面展示和导出。
+ * 与 SyncStats 不同，这里不面向界面计数，只用于分析一次同步慢在扫描、读取还是网络。
+ * 另记录本次同步的出队顺序和文件从发现到上传完成的耗时，用于比较不同顺序下新文件多快到达服务器。
+ */
+public class SyncMetrics {
+
+    public static final String OUTCOME_UPLOADED = "uploaded";
+    public static final String OUTCOME_SKIPPED = "skipped";
+    public static final String OUTCOME_FAILED = "failed";
+    // 明细只保留前若干个文件，避免一次上万个文件的同步占用过多内存和存储
+    static final int MAX_SAMPLES = 1000;
+
+    private long id = -1;
+    private final long startedAt;
+    private volatile long finishedAt;
+    private final AtomicLong scanMillis = new AtomicLong();
+    private final AtomicInteger scanned = new AtomicInteger();
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile String order = UploadOrder.FIFO;
+    private final LatencyHistogram connect;
+    private final LatencyHistogram ttfb;
+    private final LatencyHistogram total;
+    private final LatencyHistogram timeToUpload;
+    private final LatencyHistogram freshTimeToUpload;
+    private final List<FileSample> samples = new ArrayList<>();
+
+    public SyncMetrics(long startedAt) {
+        this(startedAt, new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram(),
+                new LatencyHistogram(), new LatencyHistogram());
+    }
+
+    private SyncMetrics(long startedAt, LatencyHistogram connect, LatencyHistogram ttfb, LatencyHistogram total,
+                        LatencyHistogram timeToUpload, LatencyHistogram freshTimeToUpload) {
+        this.startedAt = startedAt;
+        this.connect = connect;
+        this.ttfb = ttfb;
+        this.total = total;
+        this.timeToUpload = timeToUpload;
+        this.freshTimeToUpload = freshTimeToUpload;
+    }
+
+    /**
+     * 从存储中恢复一条记录，文件明细随后通过 addSample 补上。
+     */
+    static SyncMetrics restore(long id, long startedAt, long finishedAt, long scanMillis, int scanned, int uploaded,
+                               int skipped, int failed, int retries, long bytes, String order,
+                               LatencyHistogram connect, LatencyHistogram ttfb, LatencyHistogram total,
+                               LatencyHistogram timeToUpload, LatencyHistogram freshTimeToUpload) {
+        SyncMetrics metrics = new SyncMetrics(startedAt, connect, ttfb, total, timeToUpload, freshTimeToUpload);
+        metrics.id = id;
+        metrics.order = order != null ? order : UploadOrder.FIFO;
+        metrics.finishedAt = finishedAt;
+        metrics.scanMillis.set(scanMillis);
+        metrics.scanned.set(scanned);
+        metrics.uploaded.set(uploaded);
+        metrics.skipped.set(skipped);
+        metrics.failed.set(failed);
+        metrics.retries.set(retries);
+        metrics.bytes.set(bytes);
+        return metrics;
+    }
+
+    /**
+     * 一个目录扫描完成。多个目录的扫描耗时累加。
+     */
+    public void recordScan(long durationMillis, int files) {
+        scanMillis.addAndGet(durationMillis);
+        scanned.addAndGet(files);
+    }
+
+    /**
+     * 一个文件上传成功。timing 为最后一次请求的各阶段耗时，没有时为 null。
+     */
+    public void recordUploaded(String fileName, long size, long durationMillis, RequestTiming timing) {
+        uploaded.incrementAndGet();
+        bytes.addAndGet(Math.max(size, 0));
+        long connectMs = timing != null ? timing.getConnectMs() : -1;
+        long ttfbMs = timing != null ? timing.getWaitMs() : -1;
+        connect.record(connectMs);
+        ttfb.record(ttfbMs);
+        total.record(durationMillis);
+        addSample(new FileSample(System.currentTimeMillis(), fileName, size, OUTCOME_UPLOADED,
+                connectMs, ttfbMs, durationMillis, null));
+    }
+
+    /**
+     * 一个文件已到达服务器：记录从扫描发现到现在的耗时；发现时还是新文件的，另记录从修改到现在的耗时。
+     */
+    public void recordTimeToUpload(long lastModified, long discoveredAt, long uploadedAt) {
+        timeToUpload.record(uploadedAt - discoveredAt);
+        if (UploadOrder.isFresh(lastModified, discoveredAt)) {
+            freshTimeToUpload.record(uploadedAt - lastModified);
+        }
+    }
+
+    public void recordSkipped(String fileName, long size) {
+        skipped.incrementAndGet();
+        addSample(new FileSample(System.currentTimeMillis(), fileName, size, OUTCOME_SKIPPED, -1, -1, -1, null));
+    }
+
+    /**
+     * 失败的文件只进入明细，不计入直方图，以免超时把成功请求的分布拉偏。
+     *
+     * @param timing         失败请求的各阶段耗时，请求没有完成时为 null
+     * @param retryScheduled 该文件是否会在退避后重试，隔离或不计次数的失败为 false
+     */
+    public void recordFailed(String fileName, long size, RequestTiming timing, String error, boolean retryScheduled) {
+        failed.incrementAndGet();
+        if (retryScheduled) {
+            retries.incrementAndGet();
+        }
+        addSample(new FileSample(System.currentTimeMillis(), fileName, size, OUTCOME_FAILED,
+                timing != null ? timing.getConnectMs() : -1, timing != null ? timing.getWaitMs() : -1,
+                timing != null ? timing.getTotalMs() : -1, error));
+    }
+
+    void addSample(FileSample sample) {
+        synchronized (samples) {
+            if (samples.size() < MAX_SAMPLES) {
+                samples.add(sample);
+            }
+        }
+    }
+
+    /**
+     * 本次同步使用的出队顺序，见 {@link UploadOrder}。
+     */
+    public void setOrder(String order) {
+        this.order = order;
+    }
+
+    public void finish(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public boolean isEmpty() {
+        return scanned.get() == 0 && uploaded.get() == 0 && skipped.get() == 0 && failed.get() == 0;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    void setId(long id) {
+        this.id = id;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getDurationMillis() {
+        return finishedAt > 0 ? finishedAt - startedAt : -1;
+    }
+
+    public long getScanMillis() {
+        return scanMillis.get();
+    }
+
+    public int getScanned() {
+        return scanned.get();
+    }
+
+    public int getUploaded() {
+        return uploaded.get();
+    }
+
+    public int getSkipped() {
+        return skipped.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public int getRetries() {
+        return retries.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * 整次同步的平均吞吐量（字节/秒），按墙钟时间计算，包含扫描与上传重叠的部分。
+     */
+    public long getThroughput() {
+        long duration = getDurationMillis();
+        return duration > 0 ? bytes.get() * 1000 / duration : 0;
+    }
+
+    public String getOrder() {
+        return order;
+    }
+
+    public LatencyHistogram getConnect() {
+        return connect;
+    }
+
+    public LatencyHistogram getTtfb() {
+        return ttfb;
+    }
+
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    /**
+     * 从扫描发现到上传完成的耗时，包括排队等待的时间。
+     */
+    public LatencyHistogram getTimeToUpload() {
+        return timeToUpload;
+    }
+
+    /**
+     * 新文件从修改（通常就是拍摄）到上传完成的耗时。
+     */
+    public LatencyHistogram getFreshTimeToUpload() {
+        return freshTimeToUpload;
+    }
+
+    public List<FileSample> getSamples() {
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "扫描 " + scanned.get() + " 个文件用时 " + scanMillis.get() + " ms，上传 " + uploaded.get() + "，跳过 "
+                + skipped.get() + "，失败 " + failed.get() + "（重试 " + retries.get() + "），"
+                + bytes.get() / 1024 + " KB，" + getThroughput() / 1024 + " KB/s；总耗时 " + total
+                + "；首字节 " + ttfb + "；连接 " + connect + "；顺序 " + order + "，发现到上传 " + timeToUpload
+                + "，新文件 " + freshTimeToUpload;
+    }
+
+    /**
+     * 单个文件的处理结果。耗时为 -1 表示没有该阶段（跳过的文件、复用的连接）。
+     */
+    public static class FileSample {
+        private final long timestamp;
+        private final String fileName;
+        private final long size;
+        private final String outcome;
+        private final long connectMs;
+        private final long ttfbMs;
+        private final long totalMs;
+        private final String error;
+
+        public FileSample(long timestamp, String fileName, long size, String outcome,
+                          long connectMs, long ttfbMs, long totalMs, String error) {
+            this.timestamp = timestamp;
+            this.fileName = fileName;
+            this.size = size;
+            this.outcome = outcome;
+            this.connectMs = connectMs;
+            this.ttfbMs = ttfbMs;
+            this.totalMs = totalMs;
+            this.error = error;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getOutcome() {
+            return outcome;
+        }
+
+        public long getConnectMs() {
+            return connectMs;
+        }
+
+        public long getTtfbMs() {
+            return ttfbMs;
+        }
+
+        public long getTotalMs() {
+            return totalMs;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package cn.sab1e.autosync;
+
+/**
+ * 同步策略：网络类型、计费网络每天的额度、电量与充电要求、单次同步额度和上行限速。
+ * 对应的 WorkManager 约束由 app 中的 WorkConstraints 生成。
+ * 数值类设置为空或 0 表示不限制。
+ */
+public class SyncPolicy {
+
+    private static final long MB = 1024L * 1024;
+
+    private final boolean unmeteredOnly;
+    private final long meteredCapBytes;
+    private final long runBudgetBytes;
+    private final int chargingBacklog;
+    private final long bandwidthBytesPerSecond;
+
+    SyncPolicy(boolean unmeteredOnly, long meteredCapBytes, long runBudgetBytes, int chargingBacklog, long bandwidthBytesPerSecond) {
+        this.unmeteredOnly = unmeteredOnly;
+        this.meteredCapBytes = meteredCapBytes;
+        this.runBudgetBytes = runBudgetBytes;
+        this.chargingBacklog = chargingBacklog;
+        this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+    }
+
+    public static SyncPolicy from(SyncConfig config) {
+        return new SyncPolicy(
+                config.isUnmeteredOnly(),
+                config.getMeteredCapMb() * MB,
+                config.getRunBudgetMb() * MB,
+                config.getChargingBacklog(),
+                config.getBandwidthKbps() * 1024L);
+    }
+
+    /**
+     * 不计费网络或今天还没有用过计费网络时的额度。
+     */
+    public RunBudget budget(boolean metered, boolean charging) {
+        return budget(metered, charging, 0);
+    }
+
+    /**
+     * 本次同步的额度。计费网络下额外受 meteredCap 当天剩余的部分限制，大小未知的文件无法计入，留到不计费网络上传；
+     * 未充电且积压超过 chargingBacklog 时只上传前 chargingBacklog 个。
+     *
+     * @param meteredUsedToday 今天已经在计费网络上发送的字节数，由宿主保存
+     */
+    public RunBudget budget(boolean metered, boolean charging, long meteredUsedToday) {
+        long bytes = runBudgetBytes > 0 ? runBudgetBytes : RunBudget.UNLIMITED_BYTES;
+        boolean capped = metered && meteredCapBytes > 0;
+        if (capped) {
+            bytes = Math.min(bytes, Math.max(meteredCapBytes - meteredUsedToday, 0));
+        }
+        int files = !charging && chargingBacklog > 0 ? chargingBacklog : RunBudget.UNLIMITED_FILES;
+        return new RunBudget(bytes, files, capped);
+    }
+
+    /**
+     * @return 令牌桶限速器，不限速时返回 null
+     */
+    public TokenBucket newBandwidthLimiter() {
+        if (bandwidthBytesPerSecond <= 0) {
+            return null;
+        }
+        // 桶容量为半秒的流量，既能平滑突发也不会让每次写入都等待
+        return new TokenBucket(bandwidthBytesPerSecond, Math.max(bandwidthBytesPerSecond / 2, 16 * 1024));
+    }
+
+    public boolean isUnmeteredOnly() {
+        return unmeteredOnly;
+    }
+
+    public int getChargingBacklog() {
+        return chargingBacklog;
+    }
+}
@@ -0,0 +1,17 @@
+package cn.sab1e.autosync;
+
+/**
+ * 设置的键值存储，{@link SyncConfig} 通过它读写。app 中是 SharedPreferences，desktop 中是 properties 文件。
+ */
+public interface SyncSettings {
+
+    String getString(String key, String defaultValue);
+
+    boolean getBoolean(String key, boolean defaultValue);
+
+    interface Editor {
+        Editor putString(String key, String value);
+
+        Editor putBoolean(String key, boolean value);
+    }
+}
@@ -0,0 +1,112 @@
+package cn.sab1e.autosync;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 一个同步目录及其筛选条件和扫描间隔。
+ * 文件先按扩展名（或 provider 报告的 MIME 类型）筛选，再按 {@link SyncFilter} 的附加条件筛选。
+ */
+public class SyncSource {
+
+    public static final Set<String> DEFAULT_EXTENSIONS = Collections.unmodifiableSet(
+            new LinkedHashSet<>(Arrays.asList("jpg", "jpeg", "png", "gif", "bmp", "webp", "heic", "heif", "avif")));
+    public static final long MIN_INTERVAL_MINUTES = 15;
+    // 周期任务的实际执行时间会有偏差，差几分钟也算到期，避免整整错过一个周期
+    private static final long DUE_TOLERANCE_MILLIS = 5 * 60 * 1000L;
+
+    private final String id;
+    private final String treeUri;
+    private final long intervalMinutes;
+    private final Set<String> extensions;
+    private final Set<String> acceptedTypes = new HashSet<>();
+    private final boolean recursive;
+    private final SyncFilter filter;
+
+    /**
+     * @param recursive 是否同时同步子目录中的文件
+     * @param filter    附加筛选条件，为 null 时不限
+     */
+    public SyncSource(String id, String treeUri, long intervalMinutes, Set<String> extensions, boolean recursive,
+                      SyncFilter filter) {
+        this.id = id;
+        this.treeUri = treeUri;
+        this.intervalMinutes = Math.max(intervalMinutes, MIN_INTERVAL_MINUTES);
+        this.extensions = extensions == null || extensions.isEmpty() ? DEFAULT_EXTENSIONS
+                : Collections.unmodifiableSet(new LinkedHashSet<>(extensions));
+        this.recursive = recursive;
+        this.filter = filter == null ? SyncFilter.ACCEPT_ALL : filter;
+        for (String extension : this.extensions) {
+            String type = MimeSniffer.fromExtension("." + extension);
+            if (type != null) {
+                acceptedTypes.add(type);
+            }
+        }
+    }
+
+    /**
+     * 解析用逗号或空格分隔的扩展名列表，例如 "jpg, .png"。
+     */
+    public static Set<String> parseExtensions(String value) {
+        Set<String> extensions = new LinkedHashSet<>();
+        if (value == null) {
+            return extensions;
+        }
+        for (String part : value.split("[,\\s]+")) {
+            String extension = part.trim().toLowerCase(Locale.ROOT);
+            if (extension.startsWith(".")) {
+                extension = extension.substring(1);
+            }
+            if (!extension.isEmpty()) {
+                extensions.add(extension);
+            }
+        }
+        return extensions;
+    }
+
+    /**
+     * 扩展名在列表中，或者 provider 报告的类型是列表中某个扩展名对应的类型（没有扩展名或扩展名不规范的文件），
+     * 并且满足附加筛选条件。
+     */
+    public boolean accepts(String fileName, String mimeType, long size, long lastModified, long nowMillis) {
+        if (fileName == null) {
+            return false;
+        }
+        int dot = fileName.lastIndexOf('.');
+        boolean typeMatches = (dot >= 0 && extensions.contains(fileName.substring(dot + 1).toLowerCase(Locale.ROOT)))
+                || (mimeType != null && acceptedTypes.contains(mimeType));
+        return typeMatches && filter.accepts(fileName, size, lastModified, nowMillis);
+    }
+
+    public boolean isDue(long lastScanMillis, long nowMillis) {
+        return nowMillis - lastScanMillis + DUE_TOLERANCE_MILLIS >= intervalMinutes * 60 * 1000L;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTreeUri() {
+        return treeUri;
+    }
+
+    public long getIntervalMinutes() {
+        return intervalMinutes;
+    }
+
+    public Set<String> getExtensions() {
+        return extensions;
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    public SyncFilter getFilter() {
+        return filter;
+    }
+}
@@ -0,0 +1,144 @@
+package cn.sab1e.autosync;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次同步的统计数据。上传线程只更新内存中的原子计数，
+ * 每 FLUSH_EVERY 个成功文件或同步结束时才保存一次，界面更新最多每 PUBLISH_INTERVAL_MS 发一次。
+ */
+public class SyncStats {
+
+    /**
+     * 累计上传数和上次同步时间的存储，app 中写入 SharedPreferences 并通知界面。
+     */
+    public interface Store {
+        int loadTotal();
+
+        void save(int total, long lastSuccessMillis);
+
+        /**
+         * 上传进行中的界面更新，不必保存。
+         */
+        void publish(int total, long lastSuccessMillis);
+    }
+
+    /**
+     * 不保存累计数据，desktop 和测试使用。
+     */
+    public static final Store NO_STORE = new Store() {
+        @Override
+        public int loadTotal() {
+            return 0;
+        }
+
+        @Override
+        public void save(int total, long lastSuccessMillis) {
+        }
+
+        @Override
+        public void publish(int total, long lastSuccessMillis) {
+        }
+    };
+
+    private static final int FLUSH_EVERY = 50;
+    private static final long PUBLISH_INTERVAL_MS = 1000;
+
+    private final Store store;
+    private final int baseTotal;
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong uploadMillis = new AtomicLong();
+    private final AtomicLong lastSuccessMillis = new AtomicLong();
+    private final AtomicInteger unflushed = new AtomicInteger();
+    private final AtomicLong lastPublishMillis = new AtomicLong();
+    private int flushedTotal;
+
+    public SyncStats(Store store) {
+        this.store = store;
+        this.baseTotal = store.loadTotal();
+        this.flushedTotal = baseTotal;
+    }
+
+    public void recordSuccess(long bytes, long durationMillis) {
+        uploaded.incrementAndGet();
+        bytesSent.addAndGet(Math.max(bytes, 0));
+        uploadMillis.addAndGet(durationMillis);
+        lastSuccessMillis.set(System.currentTimeMillis());
+        if (unflushed.incrementAndGet() >= FLUSH_EVERY) {
+            flush();
+        }
+        maybePublish();
+    }
+
+    public void recordFailure() {
+        failed.incrementAndGet();
+    }
+
+    /**
+     * 内容已上传过而跳过的文件，不计入上传总数。
+     */
+    public void recordSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    /**
+     * 保存尚未保存的计数并通知界面，同步结束时必须调用一次。
+     */
+    public synchronized void flush() {
+        unflushed.set(0);
+        int total = baseTotal + uploaded.get();
+        long lastSuccess = lastSuccessMillis.get();
+        if (total == flushedTotal || lastSuccess == 0) {
+            return;
+        }
+        store.save(total, lastSuccess);
+        flushedTotal = total;
+        publish();
+    }
+
+    private void maybePublish() {
+        long now = System.currentTimeMillis();
+        long last = lastPublishMillis.get();
+        if (now - last >= PUBLISH_INTERVAL_MS && lastPublishMillis.compareAndSet(last, now)) {
+            publish();
+        }
+    }
+
+    private void publish() {
+        long lastSuccess = lastSuccessMillis.get();
+        if (lastSuccess == 0) {
+            return;
+        }
+        lastPublishMillis.set(System.currentTimeMillis());
+        store.publish(baseTotal + uploaded.get(), lastSuccess);
+    }
+
+    public int getUploaded() {
+        return uploaded.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    public int getSkipped() {
+        return skipped.get();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getUploadMillis() {
+        return uploadMillis.get();
+    }
+
+    @Override
+    public String toString() {
+        return "成功 " + uploaded.get() + " 张，跳过 " + skipped.get() + " 张，失败 " + failed.get()
+                + " 张，共发送 " + bytesSent.get() / 1024 + " KB";
+    }
+}
@@ -0,0 +1,56 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 给另一个传输层的所有请求体加上限速，分片上传和普通上传共用同一个令牌桶。
+ */
+public class ThrottledTransport implements UploadTransport {
+
+    private final UploadTransport delegate;
+    private final TokenBucket bucket;
+
+    public ThrottledTransport(UploadTransport delegate, TokenBucket bucket) {
+        this.delegate = delegate;
+        this.bucket = bucket;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        if (request.body != null && !(request.body instanceof ThrottledBody)) {
+            request.body(new ThrottledBody(request.body, bucket));
+        }
+        return delegate.execute(request);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static class ThrottledBody implements Body {
+        private final Body body;
+        private final TokenBucket bucket;
+
+        ThrottledBody(Body body, TokenBucket bucket) {
+            this.body = body;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public String contentType() {
+            return body.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return body.contentLength();
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            body.writeTo(new ThrottledOutputStream(outputStream, bucket));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package cn.sab1e.autosync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶限速器，所有上传线程共享同一个实例，限制的是整次同步的总上行速率。
+ * 令牌以 bytesPerSecond 的速度补充，最多积攒 capacity 个，允许短时突发。
+ */
+public class TokenBucket {
+
+    private final long bytesPerSecond;
+    private final long capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(long bytesPerSecond, long capacity) {
+        if (bytesPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("bytesPerSecond and capacity must be > 0");
+        }
+        this.bytesPerSecond = bytesPerSecond;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 阻塞直到取得 count 个令牌。超过桶容量的请求拆成多次获取。
+     */
+    public void acquire(long count) throws InterruptedException {
+        while (count > 0) {
+            long part = Math.min(count, capacity);
+            acquirePart(part);
+            count -= part;
+        }
+    }
+
+    private void acquirePart(long count) throws InterruptedException {
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= count) {
+                    tokens -= count;
+                    return;
+                }
+                waitNanos = (long) ((count - tokens) * 1_000_000_000L / bytesPerSecond);
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.max(waitNanos, 1_000_000L));
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * (double) bytesPerSecond / 1_000_000_000L);
+        lastRefillNanos = now;
+    }
+
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+}
@@ -0,0 +1,106 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图片上传的服务端。每次同步创建一个实例，由所有上传线程共享，实现必须线程安全。
+ */
+public interface UploadBackend {
+
+    String TYPE_EASYIMAGE = "easyimage";
+    String TYPE_LSKY = "lsky";
+    String TYPE_S3 = "s3";
+    String TYPE_WEBDAV = "webdav";
+
+    BackendCapabilities capabilities();
+
+    /**
+     * 上传一个文件。请求失败时返回带异常或状态码的结果而不是抛出异常。
+     */
+    UploadResult upload(MultipartBody.Content content, String fileName, String contentType);
+
+    /**
+     * 带内容摘要上传，{@link BackendCapabilities#isDedupeLookup()} 为 true 时调用。
+     * sha256 是本地原文件的摘要（压缩后上传时也是原文件的），后端用它生成不会与其他文件冲突的对象名，
+     * 并保存在服务器上供 {@link #lookup} 核对。默认忽略摘要。
+     */
+    default UploadResult upload(MultipartBody.Content content, String fileName, String contentType, String sha256) {
+        return upload(content, fileName, contentType);
+    }
+
+    /**
+     * 仅在 {@link BackendCapabilities#isDedupeLookup()} 为 true 时调用：服务器上已有内容摘要相同的文件时返回其信息，否则返回 null。
+     * 命中后本地文件会被删除，因此名称和大小相同但无法核对摘要时必须返回 null。
+     */
+    default UploadResponse lookup(String fileName, long size, String sha256) throws IOException {
+        return null;
+    }
+
+    /**
+     * 仅在 {@link BackendCapabilities#isBatchUpload()} 为 true 时调用：一个请求上传多个文件，
+     * 按 items 的顺序返回每个文件各自的结果。整个请求失败时每个文件都得到同一个失败结果。
+     * 默认实现逐个上传。
+     */
+    default List<UploadResult> uploadBatch(List<BatchItem> items) {
+        List<UploadResult> results = new ArrayList<>(items.size());
+        for (BatchItem item : items) {
+            results.add(upload(item.getContent(), item.getFileName(), item.getContentType()));
+        }
+        return results;
+    }
+
+    /**
+     * 服务器上的对象名：在扩展名前加上摘要的前 16 位，例如 IMG_1.jpg -> IMG_1-0123456789abcdef.jpg。
+     * 不同目录或不同时间出现的同名文件因此不会互相覆盖。sha256 为 null 时返回原文件名。
+     */
+    static String contentKey(String fileName, String sha256) {
+        if (sha256 == null) {
+            return fileName;
+        }
+        int dot = fileName.lastIndexOf('.');
+        String suffix = "-" + sha256.substring(0, 16);
+        return dot > 0 ? fileName.substring(0, dot) + suffix + fileName.substring(dot) : fileName + suffix;
+    }
+
+    static UploadBackend create(BackendConfig config, UploadTransport transport) {
+        String type = config.getType();
+        if (TYPE_LSKY.equals(type)) {
+            return new LskyBackend(transport, config.getUrl(), config.getToken());
+        } else if (TYPE_S3.equals(type)) {
+            return new S3Backend(transport, config.getUrl(), config.getBucket(),
+                    new S3Signer(config.getRegion(), config.getAccessKey(), config.getSecretKey()), S3Backend.DEFAULT_PART_PARALLELISM);
+        } else if (TYPE_WEBDAV.equals(type)) {
+            return new WebDavBackend(transport, config.getUrl(), config.getAccessKey(), config.getSecretKey());
+        }
+        return new ImageUploader(transport, config.getToken(), config.getUrl(), config.getBatchUrl());
+    }
+
+    /**
+     * 批量上传中的一个文件。
+     */
+    final class BatchItem {
+        private final MultipartBody.Content content;
+        private final String fileName;
+        private final String contentType;
+
+        public BatchItem(MultipartBody.Content content, String fileName, String contentType) {
+            this.content = content;
+            this.fileName = fileName;
+            this.contentType = contentType;
+        }
+
+        public MultipartBody.Content getContent() {
+            return content;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cn.sab1e.autosync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * 把待上传的文件分批：连续的小文件合并成一批，直到文件数或字节数达到上限；不适合合并的文件单独成一批。
+ * 几百 KB 的截图逐个上传时，请求头、鉴权和服务端的单次请求处理比文件本身还费时间，合并后这些开销按批摊薄。
+ * 上游是仍在增长的队列时，凑批会等待扫描送来下一个文件，最多等到扫描结束。
+ */
+public class UploadBatcher {
+
+    private final int maxFiles;
+    private final long maxBytes;
+
+    /**
+     * @param maxFiles 每批最多文件数，为 1 时不合并
+     * @param maxBytes 每批最多字节数
+     */
+    public UploadBatcher(int maxFiles, long maxBytes) {
+        this.maxFiles = Math.max(1, maxFiles);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * 边迭代边分批，不会先把 items 读完，适合仍在增长的队列。
+     * 上一个文件放不进当前批时留到下一批的开头，文件顺序不变。
+     *
+     * @param batchable 可以与其他文件合并的文件，其余文件单独成批
+     */
+    public <T> Iterable<List<T>> batches(Iterable<T> items, ToLongFunction<T> sizeOf, Predicate<T> batchable) {
+        return () -> new Iterator<List<T>>() {
+            private final Iterator<T> source = items.iterator();
+            private T pending;
+
+            @Override
+            public boolean hasNext() {
+                return pending != null || source.hasNext();
+            }
+
+            @Override
+            public List<T> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T first = pending != null ? pending : source.next();
+                pending = null;
+                if (maxFiles == 1 || !batchable.test(first)) {
+                    return Collections.singletonList(first);
+                }
+                List<T> batch = new ArrayList<>();
+                batch.add(first);
+                long bytes = Math.max(sizeOf.applyAsLong(first), 0);
+                while (batch.size() < maxFiles && source.hasNext()) {
+                    T item = source.next();
+                    long size = Math.max(sizeOf.applyAsLong(item), 0);
+                    if (!batchable.test(item) || bytes + size > maxBytes) {
+                        pending = item;
+                        break;
+                    }
+                    batch.add(item);
+                    bytes += size;
+                }
+                return batch;
+            }
+        };
+    }
+}
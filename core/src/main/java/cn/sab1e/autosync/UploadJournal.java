@@ -0,0 +1,93 @@
+package cn.sab1e.autosync;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 同步索引和上传日志：记录每个目录中已见过的文件及其上传状态，以及已上传内容的摘要。
+ * 上传前记为 UPLOADING，服务器确认后先记为 UPLOADED 再删除本地文件，删除后记为 DELETED，
+ * 进程在任一步骤被杀死，下次启动时 {@link #recover()} 都能接着完成，不会重复上传已确认的文件。
+ * app 中由 SQLite 实现（SyncIndex），desktop 保存在本地文件中（FileUploadJournal），测试使用 {@link MemoryUploadJournal}。
+ */
+public interface UploadJournal {
+
+    int STATE_PENDING = 0;
+    int STATE_UPLOADED = 1;
+    int STATE_FAILED = 2;
+    int STATE_UPLOADING = 3;
+    int STATE_DELETED = 4;
+    int STATE_QUARANTINED = 5;
+
+    /**
+     * 将扫描到的一批文件与索引合并，返回需要处理的条目，可以在多个扫描线程上同时调用。
+     * 新文件和大小/修改时间变化的文件会被（重新）记为待上传，失败次数清零；
+     * 未变化的文件如果已上传、还在退避等待中或已被隔离，则不返回。
+     */
+    List<SyncEntry> merge(String treeUri, List<SyncEntry> batch);
+
+    /**
+     * 删除目录下不在 present 中的记录。只能在完整遍历之后调用，否则会丢掉没扫到的文件的状态。
+     */
+    void prune(String treeUri, Set<String> present);
+
+    void setState(String treeUri, String documentId, int state);
+
+    int getAttempts(String treeUri, String documentId);
+
+    /**
+     * 记录一次失败。state 为 STATE_FAILED 时 nextAttemptAt 之前不会再上传，为 STATE_QUARANTINED 时直到文件变化。
+     */
+    void markFailed(String treeUri, String documentId, int state, int attempts, long nextAttemptAt, String error);
+
+    /**
+     * 服务器已确认收到文件。必须在删除本地文件之前提交。
+     * response 为 null 表示内容之前已上传过、本次没有请求服务器，此时不写上传记录。
+     */
+    void markUploaded(SyncEntry entry, UploadResponse response);
+
+    /**
+     * 启动时整理上次中断的工作：UPLOADING 的文件退回 PENDING 重新上传，返回已确认上传但本地文件还没删除的记录。
+     */
+    List<JournalEntry> recover();
+
+    /**
+     * 分片上传的会话记录，键为 documentId。
+     */
+    ChunkedUploader.SessionStore sessionStore(String treeUri);
+
+    /**
+     * 是否上传过同样大小的内容。大小不同的文件不可能重复，这时不需要在上传前额外读一遍文件算摘要。
+     */
+    boolean hasContentOfSize(long size);
+
+    boolean hasContent(String sha256);
+
+    void recordContent(String sha256, long size);
+
+    /**
+     * 上传日志中的一条记录。
+     */
+    class JournalEntry {
+        private final String treeUri;
+        private final String documentId;
+        private final String remoteId;
+
+        public JournalEntry(String treeUri, String documentId, String remoteId) {
+            this.treeUri = treeUri;
+            this.documentId = documentId;
+            this.remoteId = remoteId;
+        }
+
+        public String getTreeUri() {
+            return treeUri;
+        }
+
+        public String getDocumentId() {
+            return documentId;
+        }
+
+        public String getRemoteId() {
+            return remoteId;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cn.sab1e.autosync;
+
+import java.util.Comparator;
+
+/**
+ * 待上传文件的出队顺序。扫描顺序由 provider 决定，积压几千个文件时刚拍的照片可能排到一小时之后；
+ * 按新旧或大小排序后，新文件先到达服务器，旧的积压在后面慢慢上传。
+ * 排序只作用于同一个同步目录内已经扫描到的文件，目录之间仍由 FairUploadQueue 轮转。
+ */
+public final class UploadOrder {
+
+    /** 按扫描顺序 */
+    public static final String FIFO = "fifo";
+    /** 修改时间新的在前 */
+    public static final String NEWEST_FIRST = "newest";
+    /** 小文件在前，同样的时间内上传的文件最多 */
+    public static final String SMALLEST_FIRST = "smallest";
+    /** 按截止时间：新文件期望在发现后 1 分钟内上传，旧文件 30 分钟，先到期的在前 */
+    public static final String DEADLINE = "deadline";
+
+    // 发现时修改时间在这之内的文件视为新文件
+    static final long FRESH_WINDOW_MILLIS = 60 * 60 * 1000L;
+    static final long FRESH_TARGET_MILLIS = 60 * 1000L;
+    static final long BACKLOG_TARGET_MILLIS = 30 * 60 * 1000L;
+
+    private UploadOrder() {
+    }
+
+    /**
+     * 不认识的值按截止时间处理。
+     */
+    public static String normalize(String order) {
+        if (FIFO.equals(order) || NEWEST_FIRST.equals(order) || SMALLEST_FIRST.equals(order)) {
+            return order;
+        }
+        return DEADLINE;
+    }
+
+    /**
+     * 出队顺序的比较器，FIFO 返回 null。
+     */
+    public static Comparator<SyncEntry> comparator(String order) {
+        switch (normalize(order)) {
+            case NEWEST_FIRST:
+                return Comparator.comparingLong(SyncEntry::getLastModified).reversed();
+            case SMALLEST_FIRST:
+                return Comparator.comparingLong(UploadOrder::sizeOf);
+            case DEADLINE:
+                // 截止时间相同时小文件在前
+                return Comparator.comparingLong((SyncEntry entry) -> deadline(entry.getLastModified(), entry.getDiscoveredAt()))
+                        .thenComparingLong(UploadOrder::sizeOf);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 新文件在发现后 FRESH_TARGET 内到期，旧文件在 BACKLOG_TARGET 内到期。
+     * 扫描持续较久时，先发现的旧文件到期后会排到后发现的新文件之前，积压不会一直被新文件挤在后面。
+     */
+    static long deadline(long lastModified, long discoveredAt) {
+        return discoveredAt + (isFresh(lastModified, discoveredAt) ? FRESH_TARGET_MILLIS : BACKLOG_TARGET_MILLIS);
+    }
+
+    public static boolean isFresh(long lastModified, long discoveredAt) {
+        return lastModified > 0 && discoveredAt - lastModified <= FRESH_WINDOW_MILLIS;
+    }
+
+    private static long sizeOf(SyncEntry entry) {
+        // 大小未知的文件排在最后
+        return entry.getSize() < 0 ? Long.MAX_VALUE : entry.getSize();
+    }
+}
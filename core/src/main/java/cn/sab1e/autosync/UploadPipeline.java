@@ -0,0 +1,149 @@
+package cn.sab1e.autosync;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并发上传流水线。
+ * 同时进行的上传数量由 parallelism 限制，等待中的任务放在容量为 queueCapacity 的有界队列里，
+ * 队列满时提交方阻塞，而不是把整个文件列表一次性塞进线程池。
+ * 上传可能乱序完成，进度回调按完成顺序串行触发，计数保证单调递增。
+ * {@link #cancel} 可以从其他线程调用：不再提交新文件，并中断正在上传的线程。
+ */
+public class UploadPipeline<T> {
+
+    public interface Task<T> {
+        boolean upload(T item);
+    }
+
+    public interface Listener<T> {
+        void onItemCompleted(T item, boolean success, int completed, int total);
+    }
+
+    private final int parallelism;
+    private final int queueCapacity;
+    private int completed;
+    private volatile boolean cancelled;
+    private volatile ThreadPoolExecutor executor;
+
+    public UploadPipeline(int parallelism, int queueCapacity) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be >= 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be >= 1");
+        }
+        this.parallelism = parallelism;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Report<T> run(List<T> items, Task<T> task, Listener<T> listener) throws InterruptedException {
+        return run(items, items.size(), task, listener);
+    }
+
+    /**
+     * 按 items 的迭代顺序提交，适合边出队边上传的队列（例如 {@link FairUploadQueue}）。
+     *
+     * @param total 文件总数，仅用于进度回调，未知时传 -1
+     */
+    public Report<T> run(Iterable<T> items, int total, Task<T> task, Listener<T> listener) throws InterruptedException {
+        Report<T> report = new Report<>();
+        completed = 0;
+
+        // 队列长度由 slots 限制。任务在 finally 中释放名额时线程还没空出来，
+        // 用有界队列会在这一瞬间拒绝新提交的任务
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.executor = executor;
+        // 正在执行 + 排队中的任务总数不超过 parallelism + queueCapacity
+        Semaphore slots = new Semaphore(parallelism + queueCapacity);
+        try {
+            for (T item : items) {
+                slots.acquire();
+                if (cancelled) {
+                    break;
+                }
+                try {
+                    executor.execute(() -> {
+                        boolean success = false;
+                        try {
+                            success = task.upload(item);
+                        } catch (RuntimeException e) {
+                            success = false;
+                        } finally {
+                            report.record(item, success);
+                            synchronized (this) {
+                                completed++;
+                                if (listener != null) {
+                                    listener.onItemCompleted(item, success, completed, total);
+                                }
+                            }
+                            slots.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // 只有 cancel 关闭线程池后才会拒绝
+                    slots.release();
+                    break;
+                }
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // 等待所有上传结束
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            throw e;
+        }
+        return report;
+    }
+
+    /**
+     * 停止提交新文件并中断正在进行的上传，run 在已提交的任务结束后返回。
+     */
+    public void cancel() {
+        cancelled = true;
+        ThreadPoolExecutor current = executor;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 每个文件的完成情况。
+     */
+    public static class Report<T> {
+        private final List<T> succeeded = new ArrayList<>();
+        private final List<T> failed = new ArrayList<>();
+
+        synchronized void record(T item, boolean success) {
+            if (success) {
+                succeeded.add(item);
+            } else {
+                failed.add(item);
+            }
+        }
+
+        public synchronized List<T> getSucceeded() {
+            return Collections.unmodifiableList(new ArrayList<>(succeeded));
+        }
+
+        public synchronized List<T> getFailed() {
+            return Collections.unmodifiableList(new ArrayList<>(failed));
+        }
+
+        public synchronized boolean isAllSucceeded() {
+            return failed.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package cn.sab1e.autosync;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图床返回的上传结果。
+ * 用流式 JsonReader 边读边解析，不会先把整个响应拼成字符串；不认识的字段直接跳过。
+ * 兼容 EasyImage 的扁平格式（{"code":200,"url":...,"thumb":...,"del":...}）
+ * 和把地址放在嵌套对象里的格式（{"status":true,"data":{"key":...,"links":{"url":...}}}）。
+ */
+public class UploadResponse {
+
+    private static final int MAX_DEPTH = 4;
+
+    private int code = -1;
+    private String message;
+    private String url;
+    private String thumbUrl;
+    private String deleteUrl;
+    private String id;
+
+    /**
+     * 没有 JSON 响应体的后端（S3、WebDAV）根据请求结果构造。
+     */
+    public static UploadResponse of(int code, String url, String id) {
+        UploadResponse response = new UploadResponse();
+        response.code = code;
+        response.url = url;
+        response.id = id;
+        return response;
+    }
+
+    /**
+     * 解析响应体。格式错误时抛出 IOException（MalformedJsonException 等）。
+     * 不关闭 reader，响应流仍由传输层的 Response 负责读完和关闭。
+     */
+    public static UploadResponse parse(Reader reader) throws IOException {
+        UploadResponse response = new UploadResponse();
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IOException("Response is not a JSON object");
+        }
+        response.readObject(jsonReader, 0);
+        return response;
+    }
+
+    /**
+     * 解析批量上传的响应：顶层数组，或者把数组放在 data 字段里的对象。每个元素按单文件响应解析，
+     * 顺序与请求中的文件一致；不是对象的元素解析为失败的结果。
+     */
+    public static List<UploadResponse> parseList(Reader reader) throws IOException {
+        JsonReader jsonReader = new JsonReader(reader);
+        jsonReader.setLenient(true);
+        if (jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+            return readArray(jsonReader);
+        }
+        if (jsonReader.peek() != JsonToken.BEGIN_OBJECT) {
+            throw new IOException("Response is not a JSON array or object");
+        }
+        List<UploadResponse> responses = null;
+        jsonReader.beginObject();
+        while (jsonReader.hasNext()) {
+            String name = jsonReader.nextName();
+            if (responses == null && name.equals("data") && jsonReader.peek() == JsonToken.BEGIN_ARRAY) {
+                responses = readArray(jsonReader);
+            } else {
+                jsonReader.skipValue();
+            }
+        }
+        jsonReader.endObject();
+        if (responses == null) {
+            throw new IOException("Batch response has no result array");
+        }
+        return responses;
+    }
+
+    private static List<UploadResponse> readArray(JsonReader reader) throws IOException {
+        List<UploadResponse> responses = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            UploadResponse response = new UploadResponse();
+            if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                response.readObject(reader, 0);
+            } else {
+                reader.skipValue();
+            }
+            responses.add(response);
+        }
+        reader.endArray();
+        return responses;
+    }
+
+    private void readObject(JsonReader reader, int depth) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_OBJECT && depth < MAX_DEPTH) {
+                readObject(reader, depth + 1);
+            } else if (depth == 0 && name.equals("status") && token == JsonToken.BOOLEAN) {
+                // 没有 code 字段的图床用 status 表示成败
+                boolean status = reader.nextBoolean();
+                if (code < 0) {
+                    code = status ? 200 : 0;
+                }
+            } else if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+                reader.skipValue();
+            } else if (depth == 0 && name.equals("code")) {
+                code = readCode(reader);
+            } else if (name.equals("message") || name.equals("msg")) {
+                message = first(message, reader.nextString());
+            } else if (name.equals("url")) {
+                url = first(url, reader.nextString());
+            } else if (name.equals("thumb") || name.equals("thumbnail_url")) {
+                thumbUrl = first(thumbUrl, reader.nextString());
+            } else if (name.equals("del") || name.equals("delete_url")) {
+                deleteUrl = first(deleteUrl, reader.nextString());
+            } else if (name.equals("id") || name.equals("key")) {
+                id = first(id, reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static int readCode(JsonReader reader) throws IOException {
+        // 有的服务端把 code 写成字符串
+        String value = reader.nextString();
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String first(String current, String value) {
+        return current != null ? current : value;
+    }
+
+    public boolean isSuccessful() {
+        return code == 200;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getThumbUrl() {
+        return thumbUrl;
+    }
+
+    public String getDeleteUrl() {
+        return deleteUrl;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * 服务器上标识该文件的值：优先用返回的 id，没有时用图片地址。
+     */
+    public String getRemoteId() {
+        return id != null ? id : url;
+    }
+
+    @Override
+    public String toString() {
+        return "code=" + code + (message != null ? ", message=" + message : "") + (url != null ? ", url=" + url : "");
+    }
+}
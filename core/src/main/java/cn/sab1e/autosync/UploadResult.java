@@ -0,0 +1,86 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+
+/**
+ * 一次上传请求的结果。请求没有发出或没有收到响应时 responseCode 为 -1。
+ */
+public class UploadResult {
+    private final int responseCode;
+    private final UploadResponse response;
+    private final String error;
+    private final IOException exception;
+    private final RequestTiming timing;
+    private final long retryAfterMillis;
+
+    public UploadResult(int responseCode, UploadResponse response, RequestTiming timing) {
+        this(responseCode, response, timing, -1);
+    }
+
+    /**
+     * @param retryAfterMillis 服务器通过 Retry-After 要求的等待时间，没有时为 -1
+     */
+    public UploadResult(int responseCode, UploadResponse response, RequestTiming timing, long retryAfterMillis) {
+        this.responseCode = responseCode;
+        this.response = response;
+        this.error = null;
+        this.exception = null;
+        this.timing = timing;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    private UploadResult(IOException exception) {
+        this.responseCode = -1;
+        this.response = null;
+        this.error = exception.getMessage();
+        this.exception = exception;
+        this.timing = null;
+        this.retryAfterMillis = -1;
+    }
+
+    public static UploadResult error(IOException exception) {
+        return new UploadResult(exception);
+    }
+
+    public boolean isSuccessful() {
+        return responseCode == 200 && response != null && response.isSuccessful();
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * 解析后的响应体，请求失败或没有响应体时为 null。
+     */
+    public UploadResponse getResponse() {
+        return response;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * 请求没有完成时的异常，用于区分连接失败和超时。
+     */
+    public IOException getException() {
+        return exception;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public RequestTiming getTiming() {
+        return timing;
+    }
+
+    @Override
+    public String toString() {
+        if (error != null) {
+            return "Upload failed: " + error;
+        }
+        return "Upload response " + responseCode + ": " + response;
+    }
+}
@@ -0,0 +1,52 @@
+package cn.sab1e.autosync;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 上传前的文件转换（例如缩放、重新编码），app 中由 ImageTransformer 实现。
+ */
+public interface UploadTransformer {
+
+    String FORMAT_JPEG = "jpeg";
+    String FORMAT_WEBP = "webp";
+
+    /**
+     * 转换单个文件。不需要转换（动图、无法解码、转换后没有变小）时返回 null，调用方应上传原文件。
+     * 返回的临时文件由调用方在上传后删除。
+     */
+    Result transform(SyncEntry entry) throws IOException, InterruptedException;
+
+    class Result {
+        private final File file;
+        private final String fileName;
+        private final String mimeType;
+        private final String sourceSha256;
+
+        public Result(File file, String fileName, String mimeType, String sourceSha256) {
+            this.file = file;
+            this.fileName = fileName;
+            this.mimeType = mimeType;
+            this.sourceSha256 = sourceSha256;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        /**
+         * 原始文件的摘要，在解码时顺带计算，用于去重记录。
+         */
+        public String getSourceSha256() {
+            return sourceSha256;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package cn.sab1e.autosync;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 上传使用的 HTTP 传输层。每次同步只创建一个实例，所有上传共享其连接池，同步结束后 close。
+ */
+public interface UploadTransport extends Closeable {
+
+    String TYPE_OKHTTP = "okhttp";
+    String TYPE_URL_CONNECTION = "urlconnection";
+
+    Response execute(Request request) throws IOException;
+
+    @Override
+    void close();
+
+    static UploadTransport create(String type) {
+        if (TYPE_URL_CONNECTION.equals(type)) {
+            return new UrlConnectionTransport();
+        }
+        return new OkHttpTransport();
+    }
+
+    /**
+     * @param limiter 上行限速，为 null 时不限速
+     */
+    static UploadTransport create(String type, TokenBucket limiter) {
+        UploadTransport transport = create(type);
+        return limiter == null ? transport : new ThrottledTransport(transport, limiter);
+    }
+
+    interface Body {
+        String contentType();
+
+        /**
+         * @return 请求体字节数，未知时返回 -1
+         */
+        long contentLength();
+
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    class Request {
+        final String method;
+        final String url;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        Body body;
+
+        public Request(String method, String url) {
+            this.method = method;
+            this.url = url;
+        }
+
+        public Request header(String name, String value) {
+            headers.put(name, value);
+            return this;
+        }
+
+        public Request body(Body body) {
+            this.body = body;
+            return this;
+        }
+    }
+
+    abstract class Response implements Closeable {
+        private final int code;
+        private final Map<String, String> headers;
+        private final RequestTiming timing;
+
+        protected Response(int code, Map<String, String> headers, RequestTiming timing) {
+            this.code = code;
+            this.headers = Collections.unmodifiableMap(headers);
+            this.timing = timing;
+            // 收到响应头时记下总耗时，调用方在读响应体、关闭响应之前打印日志也能看到
+            timing.finish();
+        }
+
+        public int code() {
+            return code;
+        }
+
+        /**
+         * 响应头，名称不区分大小写。
+         */
+        public String header(String name) {
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                if (entry.getKey() != null && entry.getKey().equalsIgnoreCase(name)) {
+                    return entry.getValue();
+                }
+            }
+            return null;
+        }
+
+        public RequestTiming timing() {
+            return timing;
+        }
+
+        /**
+         * 响应体。读完后调用 close 以便连接回到连接池。
+         */
+        public abstract InputStream body() throws IOException;
+    }
+}
@@ -0,0 +1,113 @@
+package cn.sab1e.autosync;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于 HttpURLConnection 的传输层。连接复用依赖系统自带的 keep-alive 连接池，
+ * 不支持 HTTP/2，也无法单独测出 TLS 握手耗时（计入 connect）。
+ */
+public class UrlConnectionTransport implements UploadTransport {
+
+    private static final int CHUNK_LENGTH = 64 * 1024;
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        RequestTiming timing = new RequestTiming();
+        HttpURLConnection connection = (HttpURLConnection) new URL(request.url).openConnection();
+        connection.setRequestMethod(request.method);
+        connection.setUseCaches(false);
+        connection.setDoInput(true);
+        for (Map.Entry<String, String> header : request.headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        if (request.body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", request.body.contentType());
+            long contentLength = request.body.contentLength();
+            // 无论哪种模式都边写边发，不会把整个请求体缓存在内存里
+            if (contentLength >= 0) {
+                connection.setFixedLengthStreamingMode(contentLength);
+            } else {
+                connection.setChunkedStreamingMode(CHUNK_LENGTH);
+            }
+        }
+
+        try {
+            long connectStart = System.nanoTime();
+            connection.connect();
+            timing.connectMs = RequestTiming.elapsedMs(connectStart);
+            timing.connected = true;
+
+            if (request.body != null) {
+                long sendStart = System.nanoTime();
+                try (OutputStream outputStream = connection.getOutputStream()) {
+                    request.body.writeTo(outputStream);
+                }
+                timing.sendMs = RequestTiming.elapsedMs(sendStart);
+            }
+
+            long waitStart = System.nanoTime();
+            int code = connection.getResponseCode();
+            timing.waitMs = RequestTiming.elapsedMs(waitStart);
+            timing.protocol = "http/1.1";
+
+            Map<String, String> headers = new HashMap<>();
+            for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+                if (header.getKey() != null && !header.getValue().isEmpty()) {
+                    headers.put(header.getKey(), header.getValue().get(0));
+                }
+            }
+            return new UrlConnectionResponse(connection, code, headers, timing);
+        } catch (SocketTimeoutException e) {
+            connection.disconnect();
+            throw timing.connected ? e : new ConnectTimeoutException("Connect timed out: " + request.url, e);
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        // 连接池由系统管理，无需释放
+    }
+
+    private static class UrlConnectionResponse extends Response {
+        private final HttpURLConnection connection;
+        private InputStream body;
+
+        UrlConnectionResponse(HttpURLConnection connection, int code, Map<String, String> headers, RequestTiming timing) {
+            super(code, headers, timing);
+            this.connection = connection;
+        }
+
+        @Override
+        public InputStream body() throws IOException {
+            if (body == null) {
+                InputStream stream = code() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+                body = stream != null ? stream : new ByteArrayInputStream(new byte[0]);
+            }
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            // 读完并关闭响应流后连接会回到 keep-alive 池
+            InputStream stream = body();
+            byte[] buffer = new byte[1024];
+            while (stream.read(buffer) != -1) {
+                // 丢弃未读完的响应体
+            }
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 通用 WebDAV 后端：把文件 PUT 到目录地址下，Basic 认证。
+ * 文件名带内容摘要，写入带 If-None-Match: *，已有同名文件时服务器返回 412，按失败处理，不会覆盖。
+ * 上传前查询同名文件：大小一致时再下载下来核对摘要，确认内容相同才算已上传。
+ * 不用 WebDAV 属性保存摘要，因为 HttpURLConnection 不支持 PROPFIND/PROPPATCH。
+ */
+public class WebDavBackend implements UploadBackend {
+
+    private static final BackendCapabilities CAPABILITIES =
+            new BackendCapabilities(true, false);
+
+    private final UploadTransport transport;
+    private final String collectionUrl;
+    private final String authorization;
+
+    /**
+     * @param collectionUrl 目标目录地址，例如 https://dav.example.com/photos/
+     */
+    public WebDavBackend(UploadTransport transport, String collectionUrl, String username, String password) {
+        this.transport = transport;
+        this.collectionUrl = collectionUrl.endsWith("/") ? collectionUrl : collectionUrl + "/";
+        this.authorization = username == null || username.isEmpty() ? null
+                : "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public BackendCapabilities capabilities() {
+        return CAPABILITIES;
+    }
+
+    @Override
+    public UploadResult upload(MultipartBody.Content content, String fileName, String contentType) {
+        return upload(content, fileName, contentType, null);
+    }
+
+    @Override
+    public UploadResult upload(MultipartBody.Content content, String fileName, String contentType, String sha256) {
+        String url = fileUrl(UploadBackend.contentKey(fileName, sha256));
+        UploadTransport.Request request = newRequest("PUT", url)
+                .header("If-None-Match", "*")
+                .body(content.asBody(contentType));
+        try (UploadTransport.Response response = transport.execute(request)) {
+            int responseCode = response.code();
+            // 新建返回 201；不支持条件请求的服务器覆盖已有文件时返回 204 或 200，文件名带摘要，覆盖的也是同样的内容。
+            // 412 表示已有同名文件，走下面的失败分支
+            if (responseCode == 200 || responseCode == 201 || responseCode == 204) {
+                return new UploadResult(200, UploadResponse.of(200, url, url), response.timing());
+            }
+            return new UploadResult(responseCode, null, response.timing(),
+                    RetryPolicy.parseRetryAfter(response.header("Retry-After"), System.currentTimeMillis()));
+        } catch (IOException e) {
+            return UploadResult.error(e);
+        }
+    }
+
+    @Override
+    public UploadResponse lookup(String fileName, long size, String sha256) throws IOException {
+        String url = fileUrl(UploadBackend.contentKey(fileName, sha256));
+        try (UploadTransport.Response response = transport.execute(newRequest("HEAD", url))) {
+            String length = response.header("Content-Length");
+            if (response.code() != 200 || length == null || !length.trim().equals(String.valueOf(size))) {
+                return null;
+            }
+        }
+        // 名称和大小相同不能证明内容相同，命中后本地文件会被删除，必须核对摘要
+        try (UploadTransport.Response response = transport.execute(newRequest("GET", url))) {
+            if (response.code() != 200) {
+                return null;
+            }
+            return sha256.equals(ContentHasher.sha256(response.body())) ? UploadResponse.of(200, url, url) : null;
+        }
+    }
+
+    private String fileUrl(String fileName) {
+        try {
+            return collectionUrl + URLEncoder.encode(fileName, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private UploadTransport.Request newRequest(String method, String url) {
+        UploadTransport.Request request = new UploadTransport.Request(method, url);
+        if (authorization != null) {
+            request.header("Authorization", authorization);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,213 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class ChunkedUploaderTest {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private HttpServer server;
+    private final UploadTransport transport = new UrlConnectionTransport();
+    private String endpoint;
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    private long uploadLength;
+    private long bytesOnWire;
+    private int createCount;
+    private int putCount;
+    private int failPutNumber = -1;
+    private boolean staleOffset;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", this::handleCreate);
+        server.createContext("/session/1", this::handleSession);
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/upload";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void uploadsAllChunks() throws IOException {
+        byte[] data = randomBytes(CHUNK_SIZE * 3 + 100);
+        MemorySessionStore store = new MemorySessionStore();
+        ChunkedUploader uploader = new ChunkedUploader(transport, endpoint, "token", CHUNK_SIZE, store);
+
+        UploadResult result = uploader.upload(() -> new ByteArrayInputStream(data), data.length, "a.jpg", "doc");
+
+        assertTrue(result.isSuccessful());
+        assertArrayEquals(data, received.toByteArray());
+        assertEquals(4, putCount);
+        assertNull(store.loadSession("doc"));
+    }
+
+    @Test
+    public void retryResendsOnlyMissingChunks() throws IOException {
+        byte[] data = randomBytes(CHUNK_SIZE * 5);
+        MemorySessionStore store = new MemorySessionStore();
+        ChunkedUploader uploader = new ChunkedUploader(transport, endpoint, "token", CHUNK_SIZE, store);
+
+        failPutNumber = 3;
+        try {
+            uploader.upload(() -> new ByteArrayInputStream(data), data.length, "a.jpg", "doc");
+            fail("expected the third chunk to fail");
+        } catch (IOException expected) {
+            // 第三个分片失败，前两个分片已被服务端接收
+        }
+        assertEquals(2L * CHUNK_SIZE, store.offsets.get("doc").longValue());
+
+        failPutNumber = -1;
+        bytesOnWire = 0;
+        UploadResult result = uploader.upload(() -> new ByteArrayInputStream(data), data.length, "a.jpg", "doc");
+
+        assertTrue(result.isSuccessful());
+        assertArrayEquals(data, received.toByteArray());
+        assertEquals(3L * CHUNK_SIZE, bytesOnWire);
+    }
+
+    @Test
+    public void unknownLengthIsRejectedBeforeCreatingASession() {
+        MemorySessionStore store = new MemorySessionStore();
+        ChunkedUploader uploader = new ChunkedUploader(transport, endpoint, "token", CHUNK_SIZE, store);
+
+        try {
+            uploader.upload(() -> new ByteArrayInputStream(new byte[10]), -1, "a.mp4", "doc");
+            fail("expected an unknown length to be rejected");
+        } catch (IOException expected) {
+            // SAF 报不出大小时应当改走普通上传
+        }
+        assertEquals(0, createCount);
+        assertEquals(0, putCount);
+        assertTrue(store.sessions.isEmpty());
+    }
+
+    @Test
+    public void staleOffsetFailsInsteadOfResendingForever() {
+        byte[] data = randomBytes(CHUNK_SIZE * 3);
+        MemorySessionStore store = new MemorySessionStore();
+        ChunkedUploader uploader = new ChunkedUploader(transport, endpoint, "token", CHUNK_SIZE, store);
+
+        staleOffset = true;
+        try {
+            uploader.upload(() -> new ByteArrayInputStream(data), data.length, "a.mp4", "doc");
+            fail("expected a stale Upload-Offset to fail the upload");
+        } catch (IOException expected) {
+            // 服务端（或代理）一直报告偏移量 0
+        }
+        assertEquals(1, putCount);
+        assertNull(store.loadSession("doc"));
+    }
+
+    private void handleCreate(HttpExchange exchange) throws IOException {
+        assertEquals("POST", exchange.getRequestMethod());
+        createCount++;
+        drain(exchange.getRequestBody());
+        uploadLength = Long.parseLong(exchange.getRequestHeaders().getFirst("Upload-Length"));
+        exchange.getResponseHeaders().add("Location", "/session/1");
+        exchange.sendResponseHeaders(201, -1);
+        exchange.close();
+    }
+
+    private synchronized void handleSession(HttpExchange exchange) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().add("Upload-Offset", String.valueOf(received.size()));
+            // JDK 自带 HttpServer 对 HEAD 响应后复用连接有问题，这里让客户端重新建立连接
+            exchange.getResponseHeaders().add("Connection", "close");
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        long offset = Long.parseLong(exchange.getRequestHeaders().getFirst("Upload-Offset"));
+        byte[] chunk = drain(exchange.getRequestBody());
+        bytesOnWire += chunk.length;
+        putCount++;
+        if (putCount == failPutNumber) {
+            // 模拟连接中断
+            exchange.getResponseHeaders().add("Connection", "close");
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+        if (offset != received.size()) {
+            exchange.sendResponseHeaders(409, -1);
+            exchange.close();
+            return;
+        }
+        received.write(chunk);
+        if (received.size() == uploadLength) {
+            byte[] body = "{\"result\":\"success\",\"code\":200}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } else {
+            exchange.getResponseHeaders().add("Upload-Offset", staleOffset ? "0" : String.valueOf(received.size()));
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        }
+    }
+
+    private static byte[] drain(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] data = new byte[length];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    private static class MemorySessionStore implements ChunkedUploader.SessionStore {
+        final Map<String, String> sessions = new HashMap<>();
+        final Map<String, Long> offsets = new HashMap<>();
+
+        @Override
+        public String loadSession(String key) {
+            return sessions.get(key);
+        }
+
+        @Override
+        public void saveSession(String key, String sessionUrl, long offset) {
+            sessions.put(key, sessionUrl);
+            offsets.put(key, offset);
+        }
+
+        @Override
+        public void clearSession(String key) {
+            sessions.remove(key);
+            offsets.remove(key);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+public class FairUploadQueueTest {
+
+    @Test
+    public void largeBacklogDoesNotStarveOtherSources() {
+        FairUploadQueue<String> queue = new FairUploadQueue<>();
+        for (int i = 0; i < 100; i++) {
+            queue.add("camera", "c" + i);
+        }
+        queue.add("screenshots", "s0");
+        queue.add("screenshots", "s1");
+        queue.add("downloads", "d0");
+
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            order.add(queue.poll());
+        }
+        assertEquals(Arrays.asList("c0", "s0", "d0", "c1", "s1", "c2"), order);
+        assertEquals(97, queue.size());
+    }
+
+    @Test
+    public void iteratorDrainsQueue() {
+        FairUploadQueue<String> queue = new FairUploadQueue<>();
+        queue.add("a", "a0");
+        queue.add("b", "b0");
+        queue.add("a", "a1");
+
+        List<String> order = new ArrayList<>();
+        for (String item : queue) {
+            order.add(item);
+        }
+        assertEquals(Arrays.asList("a0", "b0", "a1"), order);
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void orderAppliesWithinEachSource() {
+        FairUploadQueue<Integer> queue = new FairUploadQueue<>(Comparator.reverseOrder());
+        queue.add("a", 1);
+        queue.add("a", 3);
+        queue.add("b", 20);
+        queue.add("a", 2);
+        queue.add("b", 10);
+
+        List<Integer> order = new ArrayList<>();
+        for (Integer item : queue) {
+            order.add(item);
+        }
+        assertEquals(Arrays.asList(3, 20, 2, 10, 1), order);
+    }
+
+    @Test
+    public void takeAllWaitsForProducerUntilFinished() throws InterruptedException {
+        FairUploadQueue<String> queue = new FairUploadQueue<>();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 3; i++) {
+                    Thread.sleep(20);
+                    queue.add("a", "a" + i);
+                }
+            } catch (InterruptedException ignored) {
+            } finally {
+                queue.finish();
+            }
+        });
+        producer.start();
+
+        List<String> order = new ArrayList<>();
+        for (String item : queue.takeAll()) {
+            order.add(item);
+        }
+        producer.join();
+        assertEquals(Arrays.asList("a0", "a1", "a2"), order);
+    }
+
+    @Test
+    public void budgetLimitStopsPullingAtFileCap() {
+        FairUploadQueue<String> queue = new FairUploadQueue<>();
+        for (int i = 0; i < 5; i++) {
+            queue.add("a", "a" + i);
+        }
+        queue.finish();
+
+        List<String> order = new ArrayList<>();
+        for (String item : new RunBudget(RunBudget.UNLIMITED_BYTES, 2).limit(queue.takeAll(), String::length)) {
+            order.add(item);
+        }
+        assertEquals(Arrays.asList("a0", "a1"), order);
+        assertEquals(3, queue.size());
+    }
+}
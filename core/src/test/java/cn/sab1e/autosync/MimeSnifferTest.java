@@ -0,0 +1,48 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class MimeSnifferTest {
+
+    @Test
+    public void recognisesCommonImageHeaders() {
+        assertEquals("image/jpeg", sniff(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1}));
+        assertEquals("image/png", sniff(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A}));
+        assertEquals("image/webp", sniff(ascii("RIFF\u0000\u0000\u0000\u0000WEBPVP8 ")));
+    }
+
+    @Test
+    public void distinguishesIsoMediaBrands() {
+        assertEquals("image/heic", sniff(ftyp("heic")));
+        assertEquals("image/heif", sniff(ftyp("mif1")));
+        assertEquals("image/avif", sniff(ftyp("avif")));
+        assertEquals("video/quicktime", sniff(ftyp("qt  ")));
+        assertEquals("video/mp4", sniff(ftyp("isom")));
+    }
+
+    @Test
+    public void fallsBackToReportedTypeThenExtension() {
+        assertNull(sniff(ascii("hello")));
+        // 文件头优先于错误的扩展名
+        assertEquals("image/heic", MimeSniffer.resolve(sniff(ftyp("heic")), "image/jpeg", "IMG_1.jpg"));
+        assertEquals("video/mp4", MimeSniffer.resolve(null, "application/octet-stream", "VID_1.MP4"));
+        assertEquals("application/octet-stream", MimeSniffer.resolve(null, null, "noext"));
+    }
+
+    private static String sniff(byte[] header) {
+        return MimeSniffer.sniff(header, header.length);
+    }
+
+    private static byte[] ftyp(String brand) {
+        return ascii("\u0000\u0000\u0000\u0018ftyp" + brand + "\u0000\u0000\u0000\u0000");
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
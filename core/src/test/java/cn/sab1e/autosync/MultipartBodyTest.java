@@ -0,0 +1,88 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+
+public class MultipartBodyTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void contentLengthMatchesWrittenBytes() throws IOException {
+        byte[] data = new byte[200 * 1024 + 17];
+        new Random(1).nextBytes(data);
+        File file = temporaryFolder.newFile("a.jpg");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+
+        MessageDigest digest = ContentHasher.newDigest();
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        long contentLength;
+        try (FileChannel channel = new FileInputStream(file).getChannel()) {
+            MultipartBody body = new MultipartBody("boundary")
+                    .addFile("image", "a.jpg", "image/jpeg", MultipartBody.Content.of(channel).digestWith(digest))
+                    .addFormField("token", "令牌");
+            contentLength = body.contentLength();
+            body.writeTo(written);
+        }
+
+        assertEquals(written.size(), contentLength);
+        assertEquals(ContentHasher.sha256(new ByteArrayInputStream(data)), ContentHasher.toHex(digest.digest()));
+        String text = new String(written.toByteArray(), StandardCharsets.ISO_8859_1);
+        assertTrue(text.startsWith("--boundary\r\nContent-Disposition: form-data; name=\"image\"; filename=\"a.jpg\"\r\n"));
+        assertTrue(text.endsWith("\r\n--boundary--\r\n"));
+    }
+
+    @Test
+    public void unknownLengthFallsBackToChunked() throws IOException {
+        MultipartBody body = new MultipartBody("boundary")
+                .addFile("image", "a.jpg", "image/jpeg", MultipartBody.Content.of(new ByteArrayInputStream(new byte[10]), -1));
+
+        assertEquals(-1, body.contentLength());
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        body.writeTo(written);
+        assertTrue(written.size() > 10);
+    }
+
+    @Test(expected = InterruptedIOException.class)
+    public void interruptedThreadStopsWriting() throws IOException {
+        MultipartBody body = new MultipartBody("boundary")
+                .addFile("image", "a.jpg", "image/jpeg", MultipartBody.Content.of(new ByteArrayInputStream(new byte[64 * 1024]), -1));
+
+        Thread.currentThread().interrupt();
+        try {
+            body.writeTo(new ByteArrayOutputStream());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void progressThrottleSkipsUpdatesWithinInterval() {
+        ProgressThrottle throttle = new ProgressThrottle(1000);
+
+        assertTrue(throttle.tryUpdate(0, false));
+        assertFalse(throttle.tryUpdate(500, false));
+        assertTrue(throttle.tryUpdate(600, true));
+        assertTrue(throttle.tryUpdate(1600, false));
+    }
+}
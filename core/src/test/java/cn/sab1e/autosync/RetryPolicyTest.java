@@ -0,0 +1,68 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.FileNotFoundException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Random;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void classifiesFailures() {
+        assertEquals(RetryPolicy.FailureKind.TRANSIENT, RetryPolicy.classify(503));
+        assertEquals(RetryPolicy.FailureKind.TRANSIENT, RetryPolicy.classify(429));
+        assertEquals(RetryPolicy.FailureKind.AUTH, RetryPolicy.classify(401));
+        assertEquals(RetryPolicy.FailureKind.PERMANENT, RetryPolicy.classify(415));
+        assertEquals(RetryPolicy.FailureKind.UNREACHABLE, RetryPolicy.classify(new ConnectException()));
+        assertEquals(RetryPolicy.FailureKind.TRANSIENT, RetryPolicy.classify(new SocketTimeoutException()));
+        assertEquals(RetryPolicy.FailureKind.PERMANENT, RetryPolicy.classify(new FileNotFoundException()));
+        assertEquals(RetryPolicy.FailureKind.TRANSIENT,
+                RetryPolicy.classify(new HttpStatusException("Chunk upload failed", 502, -1)));
+    }
+
+    @Test
+    public void connectTimeoutIsUnreachableAndOpensTheBreaker() {
+        Exception connectTimeout = new ConnectTimeoutException("Connect timed out", new SocketTimeoutException());
+        assertEquals(RetryPolicy.FailureKind.UNREACHABLE, RetryPolicy.classify(connectTimeout));
+        // 发送或等待响应时超时说明服务器可达，仍按单个文件退避
+        assertEquals(RetryPolicy.FailureKind.TRANSIENT, RetryPolicy.classify(new SocketTimeoutException("Read timed out")));
+
+        CircuitBreaker breaker = new CircuitBreaker(2);
+        breaker.recordFailure(RetryPolicy.classify(connectTimeout));
+        breaker.recordFailure(RetryPolicy.classify(connectTimeout));
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void backoffGrowsWithJitterAndHonoursRetryAfter() {
+        Random random = new Random(1);
+        for (int attempts = 1; attempts <= 5; attempts++) {
+            long full = 30_000L << (attempts - 1);
+            long delay = RetryPolicy.nextDelayMillis(attempts, -1, random);
+            assertTrue(delay >= full / 2 && delay <= full);
+        }
+        assertTrue(RetryPolicy.nextDelayMillis(40, -1, random) <= 6 * 60 * 60 * 1000L);
+        assertEquals(600_000L, RetryPolicy.nextDelayMillis(1, 600_000L, random));
+        assertEquals(120_000L, RetryPolicy.parseRetryAfter("120", 0));
+        assertEquals(-1, RetryPolicy.parseRetryAfter("soon", 0));
+    }
+
+    @Test
+    public void breakerOpensOnRepeatedUnreachable() {
+        CircuitBreaker breaker = new CircuitBreaker(2);
+        breaker.recordFailure(RetryPolicy.FailureKind.UNREACHABLE);
+        breaker.recordSuccess();
+        breaker.recordFailure(RetryPolicy.FailureKind.UNREACHABLE);
+        assertFalse(breaker.isOpen());
+        breaker.recordFailure(RetryPolicy.FailureKind.UNREACHABLE);
+        assertTrue(breaker.isOpen());
+        assertFalse(RetryPolicy.shouldQuarantine(RetryPolicy.FailureKind.TRANSIENT, 1));
+        assertTrue(RetryPolicy.shouldQuarantine(RetryPolicy.FailureKind.TRANSIENT, RetryPolicy.MAX_ATTEMPTS));
+    }
+}
@@ -0,0 +1,269 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * 用本地目录和 MockWebServer 走一遍完整的同步：扫描、上传、记录日志、删除本地文件。
+ */
+public class SyncEngineTest {
+
+    private static final String UPLOADED = "{\"code\":200,\"url\":\"https://img.example/a.jpg\"}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private MemoryUploadJournal journal;
+    private String treeUri;
+    private SyncConfig config;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        journal = new MemoryUploadJournal();
+        treeUri = folder.getRoot().getAbsolutePath();
+        config = new SyncConfig.Builder()
+                .setApiUrl(server.url("/api/index.php").toString())
+                .setToken("token")
+                .setUploadConcurrency(1)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void uploadsAndDeletesFiles() throws Exception {
+        File first = write("a.jpg");
+        File second = write("album/b.png");
+        write("notes.txt");
+        server.enqueue(new MockResponse().setBody(UPLOADED));
+        server.enqueue(new MockResponse().setBody(UPLOADED));
+
+        SyncEngine.Report report = run();
+
+        assertEquals(2, report.getAttempted());
+        assertTrue(report.isAllSucceeded());
+        assertNull(report.getTrippedBy());
+        assertEquals(2, server.getRequestCount());
+        assertFalse(first.exists());
+        assertFalse(second.exists());
+        assertTrue(new File(folder.getRoot(), "notes.txt").exists());
+        assertEquals(UploadJournal.STATE_DELETED, journal.getState(treeUri, "a.jpg"));
+        assertEquals(UploadJournal.STATE_DELETED, journal.getState(treeUri, "album/b.png"));
+    }
+
+    @Test
+    public void failedUploadKeepsFileUntilBackoffExpires() throws Exception {
+        File file = write("a.jpg");
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        SyncEngine.Report report = run();
+
+        assertFalse(report.isAllSucceeded());
+        assertTrue(file.exists());
+        assertEquals(UploadJournal.STATE_FAILED, journal.getState(treeUri, "a.jpg"));
+
+        // 退避期间再次同步不会重新上传
+        assertEquals(0, run().getAttempted());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void sameSizeDifferentContentIsUploaded() throws Exception {
+        write("a.jpg", (byte) 1);
+        server.enqueue(new MockResponse().setBody(UPLOADED));
+        server.enqueue(new MockResponse().setBody(UPLOADED));
+        run();
+
+        // 与已上传的 a.jpg 大小相同，只能靠摘要区分
+        File other = write("b.jpg", (byte) 2);
+        SyncEngine.Report report = run();
+
+        assertEquals(1, report.getAttempted());
+        assertEquals(2, server.getRequestCount());
+        assertFalse(other.exists());
+        assertEquals(UploadJournal.STATE_DELETED, journal.getState(treeUri, "b.jpg"));
+    }
+
+    @Test
+    public void sameContentIsSkippedAndDeleted() throws Exception {
+        write("a.jpg", (byte) 1);
+        server.enqueue(new MockResponse().setBody(UPLOADED));
+        run();
+
+        File copy = write("album/copy.jpg", (byte) 1);
+        SyncEngine.Report report = run();
+
+        assertEquals(1, report.getAttempted());
+        assertEquals(1, server.getRequestCount());
+        assertFalse(copy.exists());
+        assertEquals(UploadJournal.STATE_DELETED, journal.getState(treeUri, "album/copy.jpg"));
+    }
+
+    @Test
+    public void serverCopyWithSameNameAndSizeButOtherContentIsNotTrusted() throws Exception {
+        useWebDav();
+        File file = write("a.jpg", (byte) 1);
+        // HEAD 命中同名同大小的文件，下载下来内容不同，仍然上传
+        server.enqueue(new MockResponse().setHeader("Content-Length", 1024));
+        server.enqueue(new MockResponse().setBody(new Buffer().write(content((byte) 2))));
+        server.enqueue(new MockResponse().setResponseCode(201));
+
+        SyncEngine.Report report = run();
+
+        assertTrue(report.isAllSucceeded());
+        assertEquals("HEAD", server.takeRequest().getMethod());
+        assertEquals("GET", server.takeRequest().getMethod());
+        RecordedRequest put = server.takeRequest();
+        assertEquals("PUT", put.getMethod());
+        assertEquals("*", put.getHeader("If-None-Match"));
+        assertTrue(put.getPath(), put.getPath().matches("/dav/a-[0-9a-f]{16}\\.jpg"));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void serverCopyWithSameContentIsSkipped() throws Exception {
+        useWebDav();
+        File file = write("a.jpg", (byte) 1);
+        server.enqueue(new MockResponse().setHeader("Content-Length", 1024));
+        server.enqueue(new MockResponse().setBody(new Buffer().write(content((byte) 1))));
+
+        SyncEngine.Report report = run();
+
+        assertTrue(report.isAllSucceeded());
+        assertEquals(2, server.getRequestCount());
+        assertFalse(file.exists());
+        assertEquals(UploadJournal.STATE_DELETED, journal.getState(treeUri, "a.jpg"));
+    }
+
+    @Test
+    public void recoverFinishesInterruptedDelete() throws Exception {
+        File file = write("a.jpg");
+        SyncEntry entry = new SyncEntry(treeUri, "a.jpg", file.getAbsolutePath(), "a.jpg", "image/jpeg",
+                file.length(), file.lastModified(), System.currentTimeMillis());
+        journal.merge(treeUri, Collections.singletonList(entry));
+        journal.markUploaded(entry, UploadResponse.of(200, "https://img.example/a.jpg", null));
+
+        newEngine().recover();
+
+        assertFalse(file.exists());
+        assertEquals(UploadJournal.STATE_DELETED, journal.getState(treeUri, "a.jpg"));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    private SyncEngine newEngine() {
+        LocalFiles files = new LocalFiles();
+        return new SyncEngine.Builder(journal, files, files).build();
+    }
+
+    private SyncEngine.Report run() {
+        List<SyncSource> sources = Collections.singletonList(
+                new SyncSource("test", treeUri, SyncSource.MIN_INTERVAL_MINUTES, null, true, null));
+        return newEngine().run(config, sources, new RunBudget(RunBudget.UNLIMITED_BYTES, RunBudget.UNLIMITED_FILES),
+                System.currentTimeMillis());
+    }
+
+    private void useWebDav() {
+        config = config.toBuilder()
+                .setBackend(UploadBackend.TYPE_WEBDAV)
+                .setApiUrl(server.url("/dav/").toString())
+                .setAccessKey("user")
+                .setSecretKey("pass")
+                .build();
+    }
+
+    private File write(String path) throws IOException {
+        // 内容不同，避免被当成重复文件跳过
+        return write(path, (byte) path.hashCode());
+    }
+
+    /**
+     * 写入 1024 字节，第一个字节为 marker，marker 相同的文件内容相同。
+     */
+    private File write(String path, byte marker) throws IOException {
+        File file = new File(folder.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content(marker));
+        return file;
+    }
+
+    private static byte[] content(byte marker) {
+        byte[] content = new byte[1024];
+        content[0] = marker;
+        return content;
+    }
+
+    /**
+     * 以临时目录作为同步目录，documentId 为相对路径，所有文件一次交给 sink。
+     */
+    private class LocalFiles implements SourceScanner, DocumentStore {
+
+        @Override
+        public boolean walk(String treeUri, boolean recursive, BooleanSupplier stopped, Sink sink) {
+            List<SyncEntry> entries = new ArrayList<>();
+            collect(folder.getRoot(), "", entries);
+            sink.accept(entries);
+            return true;
+        }
+
+        private void collect(File directory, String prefix, List<SyncEntry> entries) {
+            File[] children = directory.listFiles();
+            if (children == null) {
+                return;
+            }
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    collect(child, prefix + child.getName() + "/", entries);
+                } else {
+                    entries.add(new SyncEntry(treeUri, prefix + child.getName(), child.getAbsolutePath(), child.getName(),
+                            MimeSniffer.fromExtension(child.getName()), child.length(), child.lastModified(),
+                            System.currentTimeMillis()));
+                }
+            }
+        }
+
+        @Override
+        public FileChannel openChannel(SyncEntry entry) throws IOException {
+            return FileChannel.open(new File(entry.getUri()).toPath());
+        }
+
+        @Override
+        public InputStream openStream(SyncEntry entry) throws IOException {
+            return Files.newInputStream(new File(entry.getUri()).toPath());
+        }
+
+        @Override
+        public boolean delete(String treeUri, String documentId) {
+            File file = new File(folder.getRoot(), documentId);
+            return !file.exists() || file.delete();
+        }
+    }
+}
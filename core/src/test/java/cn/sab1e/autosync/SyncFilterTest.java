@@ -0,0 +1,49 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class SyncFilterTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void matchesGlobsCaseInsensitively() {
+        assertTrue(SyncFilter.matches("IMG_*.jpg", "img_2024.JPG"));
+        assertTrue(SyncFilter.matches("*.tmp", ".pending-1.tmp"));
+        assertTrue(SyncFilter.matches("a?c*", "abc"));
+        assertFalse(SyncFilter.matches("IMG_*", "Screenshot_1.png"));
+        assertFalse(SyncFilter.matches("*.jpg", "a.jpg.tmp"));
+    }
+
+    @Test
+    public void appliesIncludeExcludeSizeAndAge() {
+        SyncFilter filter = new SyncFilter(SyncFilter.parsePatterns("IMG_*, VID_*"), Collections.singletonList("*_trash*"),
+                10 * 1024, 100 * 1024 * 1024, TimeUnit.DAYS.toMillis(30));
+        long recent = NOW - TimeUnit.DAYS.toMillis(1);
+
+        assertTrue(filter.accepts("IMG_1.heic", 2_000_000, recent, NOW));
+        assertFalse(filter.accepts("Screenshot_1.png", 2_000_000, recent, NOW));
+        assertFalse(filter.accepts("IMG_1_trash.jpg", 2_000_000, recent, NOW));
+        assertFalse(filter.accepts("IMG_2.jpg", 1024, recent, NOW));
+        assertFalse(filter.accepts("VID_1.mp4", 200L * 1024 * 1024, recent, NOW));
+        assertFalse(filter.accepts("IMG_3.jpg", 2_000_000, NOW - TimeUnit.DAYS.toMillis(31), NOW));
+        // 大小和修改时间未知时不按这两项筛选
+        assertTrue(filter.accepts("IMG_4.jpg", -1, 0, NOW));
+    }
+
+    @Test
+    public void sourceAcceptsByReportedTypeWhenNameHasNoExtension() {
+        SyncSource source = new SyncSource("id", "tree", 30, null, false, null);
+
+        assertTrue(source.accepts("IMG_1.HEIC", null, 1, NOW, NOW));
+        assertTrue(source.accepts("IMG_2", "image/heic", 1, NOW, NOW));
+        assertFalse(source.accepts("VID_1.mp4", "video/mp4", 1, NOW, NOW));
+        assertFalse(source.accepts(null, "image/jpeg", 1, NOW, NOW));
+    }
+}
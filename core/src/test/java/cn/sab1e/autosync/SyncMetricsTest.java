@@ -0,0 +1,139 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+public class SyncMetricsTest {
+
+    @Test
+    public void histogramEstimatesPercentilesByBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(30);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(900);
+        }
+        histogram.record(-1);
+
+        assertEquals(100, histogram.count());
+        assertEquals(32, histogram.percentile(0.5));
+        assertEquals(32, histogram.percentile(0.9));
+        assertEquals(1024, histogram.percentile(0.95));
+        assertEquals(117, histogram.mean());
+    }
+
+    @Test
+    public void histogramSurvivesEncodeDecode() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(5);
+        histogram.record(Long.MAX_VALUE / 4);
+
+        LatencyHistogram decoded = LatencyHistogram.decode(histogram.encode());
+        assertEquals(histogram.encode(), decoded.encode());
+        assertEquals(3, decoded.count());
+        assertEquals(0, LatencyHistogram.decode("garbage").count());
+    }
+
+    @Test
+    public void exportsCsvWithEscapedFields() throws IOException {
+        SyncMetrics metrics = new SyncMetrics(1000);
+        metrics.recordUploaded("a,b.jpg", 2048, 120, null);
+        metrics.recordFailed("c.jpg", 10, null, "Upload response 500: \"oops\"", true);
+        metrics.finish(3000);
+
+        StringWriter csv = new StringWriter();
+        MetricsExporter.writeCsv(Collections.singletonList(metrics), csv);
+        String[] lines = csv.toString().split("\n");
+
+        assertEquals(3, lines.length);
+        assertTrue(lines[1], lines[1].matches("1000,\\d+,\"a,b.jpg\",2048,uploaded,-1,-1,120,"));
+        assertTrue(lines[2], lines[2].endsWith(",failed,-1,-1,-1,\"Upload response 500: \"\"oops\"\"\""));
+        assertEquals(1, metrics.getRetries());
+        assertEquals(1024, metrics.getThroughput());
+    }
+
+    @Test
+    public void timeToUploadTracksFreshFilesSeparately() {
+        SyncMetrics metrics = new SyncMetrics(0);
+        long discoveredAt = 10 * UploadOrder.FRESH_WINDOW_MILLIS;
+        // 刚拍的照片：修改后 10 秒被发现，再过 5 秒上传完成
+        metrics.recordTimeToUpload(discoveredAt - 10_000, discoveredAt, discoveredAt + 5_000);
+        // 一周前的积压
+        metrics.recordTimeToUpload(discoveredAt - 7 * 24 * UploadOrder.FRESH_WINDOW_MILLIS, discoveredAt, discoveredAt + 60_000);
+
+        assertEquals(2, metrics.getTimeToUpload().count());
+        assertEquals(1, metrics.getFreshTimeToUpload().count());
+        assertEquals(16_384, metrics.getFreshTimeToUpload().percentile(0.5));
+        assertEquals(65_536, metrics.getTimeToUpload().percentile(0.99));
+    }
+
+    @Test
+    public void countersAndHistogramsAggregateAcrossFiles() {
+        SyncMetrics metrics = new SyncMetrics(0);
+        assertTrue(metrics.isEmpty());
+        RequestTiming timing = new RequestTiming();
+        timing.connectMs = 20;
+        timing.waitMs = 100;
+
+        metrics.recordScan(30, 5);
+        metrics.recordScan(10, 2);
+        metrics.recordUploaded("a.jpg", 1000, 200, timing);
+        metrics.recordUploaded("b.jpg", -1, 300, null);
+        metrics.recordSkipped("c.jpg", 10);
+        metrics.recordFailed("d.jpg", 10, timing, "timeout", true);
+        metrics.recordFailed("e.jpg", 10, null, "rejected", false);
+        metrics.finish(2000);
+
+        assertEquals(40, metrics.getScanMillis());
+        assertEquals(7, metrics.getScanned());
+        assertEquals(2, metrics.getUploaded());
+        assertEquals(1, metrics.getSkipped());
+        assertEquals(2, metrics.getFailed());
+        assertEquals(1, metrics.getRetries());
+        assertEquals(1000, metrics.getBytes());
+        assertEquals(500, metrics.getThroughput());
+        // 失败的请求不进入直方图，没有 timing 的成功记为未测量
+        assertEquals(2, metrics.getTotal().count());
+        assertEquals(1, metrics.getConnect().count());
+        assertEquals(1, metrics.getTtfb().count());
+        assertEquals(5, metrics.getSamples().size());
+        assertFalse(metrics.isEmpty());
+    }
+
+    @Test
+    public void samplesAreCappedButCountersAreNot() {
+        SyncMetrics metrics = new SyncMetrics(0);
+        for (int i = 0; i < SyncMetrics.MAX_SAMPLES + 10; i++) {
+            metrics.recordSkipped("f" + i, 1);
+        }
+
+        assertEquals(SyncMetrics.MAX_SAMPLES, metrics.getSamples().size());
+        assertEquals(SyncMetrics.MAX_SAMPLES + 10, metrics.getSkipped());
+    }
+
+    @Test
+    public void exportsJsonSummary() throws IOException {
+        SyncMetrics metrics = new SyncMetrics(0);
+        metrics.recordScan(40, 7);
+        metrics.recordSkipped("x.jpg", 1);
+        metrics.finish(100);
+
+        StringWriter json = new StringWriter();
+        MetricsExporter.writeJson(Collections.singletonList(metrics), json);
+
+        String text = json.toString();
+        assertTrue(text, text.contains("\"scanMs\": 40"));
+        assertTrue(text, text.contains("\"scanned\": 7"));
+        assertTrue(text, text.contains("\"outcome\": \"skipped\""));
+        assertTrue(text, text.contains("\"p95\": -1"));
+    }
+}
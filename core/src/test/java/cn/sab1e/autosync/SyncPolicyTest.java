@@ -0,0 +1,41 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class SyncPolicyTest {
+
+    private static final long MB = 1024L * 1024;
+
+    @Test
+    public void meteredCapIsSharedAcrossRunsOfTheSameDay() {
+        SyncPolicy policy = new SyncPolicy(false, 10 * MB, 0, 0, 0);
+
+        assertEquals(10 * MB, policy.budget(true, true, 0).getMaxBytes());
+        assertEquals(4 * MB, policy.budget(true, true, 6 * MB).getMaxBytes());
+        assertEquals(0, policy.budget(true, true, 12 * MB).getMaxBytes());
+        // 不计费网络不受计费额度限制
+        assertEquals(RunBudget.UNLIMITED_BYTES, policy.budget(false, true, 12 * MB).getMaxBytes());
+    }
+
+    @Test
+    public void unknownSizesAreDeferredOnlyUnderMeteredCap() {
+        SyncPolicy policy = new SyncPolicy(false, 10 * MB, 0, 0, 0);
+        List<Long> sizes = Arrays.asList(-1L, MB, -1L);
+
+        assertEquals(Arrays.asList(MB), policy.budget(true, true, 0).select(sizes, Long::longValue));
+        assertEquals(sizes, policy.budget(false, true, 0).select(sizes, Long::longValue));
+    }
+
+    @Test
+    public void runBudgetStillAppliesWhenSmallerThanRemainingCap() {
+        SyncPolicy policy = new SyncPolicy(false, 10 * MB, 3 * MB, 0, 0);
+
+        assertEquals(3 * MB, policy.budget(true, true, 2 * MB).getMaxBytes());
+        assertEquals(1 * MB, policy.budget(true, true, 9 * MB).getMaxBytes());
+    }
+}
@@ -0,0 +1,104 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SyncStatsTest {
+
+    @Test
+    public void savesEveryFiftySuccessesAndTheRestOnFlush() {
+        RecordingStore store = new RecordingStore(100);
+        SyncStats stats = new SyncStats(store);
+
+        for (int i = 0; i < 49; i++) {
+            stats.recordSuccess(10, 1);
+        }
+        assertTrue(store.saved.isEmpty());
+        stats.recordSuccess(10, 1);
+        assertEquals(1, store.saved.size());
+        assertEquals(150, (int) store.saved.get(0));
+
+        stats.recordSuccess(10, 1);
+        stats.flush();
+        assertEquals(151, (int) store.saved.get(1));
+        // 没有新的成功时 flush 不再保存
+        stats.flush();
+        assertEquals(2, store.saved.size());
+    }
+
+    @Test
+    public void skipsAndFailuresAreCountedButNotSaved() {
+        RecordingStore store = new RecordingStore(0);
+        SyncStats stats = new SyncStats(store);
+
+        stats.recordSkipped();
+        stats.recordFailure();
+        stats.recordFailure();
+        stats.flush();
+
+        assertTrue(store.saved.isEmpty());
+        assertEquals(0, stats.getUploaded());
+        assertEquals(1, stats.getSkipped());
+        assertEquals(2, stats.getFailed());
+    }
+
+    @Test
+    public void bytesAndDurationsAccumulateIgnoringUnknownSizes() {
+        SyncStats stats = new SyncStats(SyncStats.NO_STORE);
+
+        stats.recordSuccess(1000, 5);
+        stats.recordSuccess(-1, 7);
+
+        assertEquals(2, stats.getUploaded());
+        assertEquals(1000, stats.getBytesSent());
+        assertEquals(12, stats.getUploadMillis());
+    }
+
+    @Test
+    public void concurrentUploadsAreAllCounted() throws InterruptedException {
+        RecordingStore store = new RecordingStore(0);
+        SyncStats stats = new SyncStats(store);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 1000; i++) {
+            executor.execute(() -> stats.recordSuccess(1, 1));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        stats.flush();
+
+        assertEquals(1000, stats.getUploaded());
+        assertEquals(1000, stats.getBytesSent());
+        assertEquals(1000, (int) store.saved.get(store.saved.size() - 1));
+    }
+
+    private static class RecordingStore implements SyncStats.Store {
+        private final int initialTotal;
+        final List<Integer> saved = new ArrayList<>();
+
+        RecordingStore(int initialTotal) {
+            this.initialTotal = initialTotal;
+        }
+
+        @Override
+        public int loadTotal() {
+            return initialTotal;
+        }
+
+        @Override
+        public synchronized void save(int total, long lastSuccessMillis) {
+            saved.add(total);
+        }
+
+        @Override
+        public void publish(int total, long lastSuccessMillis) {
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ThrottledTransportTest {
+
+    private static final int RATE = 200 * 1024;
+    private static final int BURST = 32 * 1024;
+    private static final int PAYLOAD = 300 * 1024;
+
+    private HttpServer server;
+    private String url;
+    private final AtomicLong received = new AtomicLong();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", exchange -> {
+            byte[] buffer = new byte[8192];
+            try (InputStream in = exchange.getRequestBody()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    received.addAndGet(read);
+                }
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/upload";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void limitsUploadRate() throws IOException {
+        UploadTransport transport = new ThrottledTransport(new UrlConnectionTransport(), new TokenBucket(RATE, BURST));
+        long start = System.nanoTime();
+        try (UploadTransport.Response response = transport.execute(
+                new UploadTransport.Request("POST", url).body(new ZeroBody(PAYLOAD)))) {
+            assertEquals(200, response.code());
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(PAYLOAD, received.get());
+        // 桶初始是满的，其余部分按限速发送
+        long expectedMs = (PAYLOAD - BURST) * 1000L / RATE;
+        assertTrue("elapsed " + elapsedMs + " ms, expected at least " + expectedMs, elapsedMs >= expectedMs * 9 / 10);
+        assertTrue("elapsed " + elapsedMs + " ms, limiter too slow", elapsedMs < expectedMs * 3);
+    }
+
+    private static class ZeroBody implements UploadTransport.Body {
+        private final int length;
+
+        ZeroBody(int length) {
+            this.length = length;
+        }
+
+        @Override
+        public String contentType() {
+            return "application/octet-stream";
+        }
+
+        @Override
+        public long contentLength() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            byte[] chunk = new byte[8192];
+            for (int written = 0; written < length; written += chunk.length) {
+                outputStream.write(chunk, 0, Math.min(chunk.length, length - written));
+            }
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 用本地 HttpServer 模拟各个服务端，检查请求格式和结果解析。
+ */
+public class UploadBackendTest {
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private String baseUrl;
+    private UploadTransport transport;
+    // 按路径保存收到的 PUT 内容，供 HEAD 查询
+    private final Map<String, byte[]> stored = new ConcurrentHashMap<>();
+    // S3 对象的 x-amz-meta-sha256
+    private final Map<String, String> storedSha256 = new ConcurrentHashMap<>();
+    private final Map<Integer, byte[]> parts = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile String completeBody;
+    private volatile boolean aborted;
+    private volatile int failPart = -1;
+    private volatile int batchStatus = 200;
+    private final AtomicInteger batchRequests = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // 分片请求需要并发处理
+        serverExecutor = Executors.newFixedThreadPool(8);
+        server.setExecutor(serverExecutor);
+        server.createContext("/api/v1/upload", exchange -> {
+            String auth = exchange.getRequestHeaders().getFirst("Authorization");
+            byte[] body = readAll(exchange.getRequestBody());
+            if (!"Bearer secret".equals(auth)) {
+                respond(exchange, 401, "{\"status\":false,\"message\":\"Unauthenticated.\"}");
+                return;
+            }
+            assertTrue(new String(body, StandardCharsets.UTF_8).contains("name=\"file\"; filename=\"a.png\""));
+            respond(exchange, 200, "{\"status\":true,\"message\":\"上传成功\","
+                    + "\"data\":{\"key\":\"k1\",\"links\":{\"url\":\"https://lsky/i/a.png\"}}}");
+        });
+        server.createContext("/batch", this::handleBatch);
+        server.createContext("/dav/", this::handleDav);
+        server.createContext("/bucket/", this::handleS3);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        transport = new UrlConnectionTransport();
+    }
+
+    @After
+    public void tearDown() {
+        transport.close();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void lskyParsesNestedLinks() {
+        UploadBackend backend = new LskyBackend(transport, baseUrl + "/", "secret");
+        UploadResult result = backend.upload(content("png"), "a.png", "image/png");
+
+        assertTrue(result.isSuccessful());
+        assertEquals("k1", result.getResponse().getRemoteId());
+        assertEquals("https://lsky/i/a.png", result.getResponse().getUrl());
+    }
+
+    @Test
+    public void lskyReportsAuthFailure() {
+        UploadResult result = new LskyBackend(transport, baseUrl, "wrong").upload(content("png"), "a.png", "image/png");
+
+        assertEquals(RetryPolicy.FailureKind.AUTH, RetryPolicy.classify(result));
+    }
+
+    @Test
+    public void easyImageBatchParsesResultPerFile() {
+        UploadBackend backend = new ImageUploader(transport, "secret", baseUrl + "/upload", baseUrl + "/batch");
+        assertTrue(backend.capabilities().isBatchUpload());
+
+        List<UploadResult> results = backend.uploadBatch(Arrays.asList(
+                new UploadBackend.BatchItem(content("one"), "a.jpg", "image/jpeg"),
+                new UploadBackend.BatchItem(content("two"), "bad.jpg", "image/jpeg"),
+                new UploadBackend.BatchItem(content("three"), "c.jpg", "image/jpeg")));
+
+        assertEquals(1, batchRequests.get());
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals("https://img/a.jpg", results.get(0).getResponse().getUrl());
+        assertEquals(RetryPolicy.FailureKind.PERMANENT, RetryPolicy.classify(results.get(1)));
+        assertEquals("https://img/c.jpg", results.get(2).getResponse().getUrl());
+        assertEquals("https://img/del/c.jpg", results.get(2).getResponse().getDeleteUrl());
+    }
+
+    @Test
+    public void easyImageBatchFailureAppliesToEveryFile() {
+        batchStatus = 503;
+        UploadBackend backend = new ImageUploader(transport, "secret", baseUrl + "/upload", baseUrl + "/batch");
+
+        List<UploadResult> results = backend.uploadBatch(Arrays.asList(
+                new UploadBackend.BatchItem(content("one"), "a.jpg", "image/jpeg"),
+                new UploadBackend.BatchItem(content("two"), "b.jpg", "image/jpeg")));
+
+        assertEquals(2, results.size());
+        for (UploadResult result : results) {
+            assertEquals(503, result.getResponseCode());
+            assertEquals(RetryPolicy.FailureKind.TRANSIENT, RetryPolicy.classify(result));
+        }
+    }
+
+    @Test
+    public void webDavPutsFileAndFindsItAgain() throws IOException {
+        UploadBackend backend = new WebDavBackend(transport, baseUrl + "/dav", "user", "pass");
+        String sha256 = sha256("jpeg");
+        String name = "IMG 1-" + sha256.substring(0, 16) + ".jpg";
+        assertNull(backend.lookup("IMG 1.jpg", 4, sha256));
+
+        UploadResult result = backend.upload(content("jpeg"), "IMG 1.jpg", "image/jpeg", sha256);
+        assertTrue(result.isSuccessful());
+        assertEquals(baseUrl + "/dav/" + name.replace(" ", "%20"), result.getResponse().getUrl());
+        assertEquals("jpeg", new String(stored.get("/dav/" + name), StandardCharsets.UTF_8));
+
+        assertNotNull(backend.lookup("IMG 1.jpg", 4, sha256));
+        assertNull(backend.lookup("IMG 1.jpg", 5, sha256));
+    }
+
+    @Test
+    public void webDavLookupComparesContentNotJustNameAndSize() throws IOException {
+        UploadBackend backend = new WebDavBackend(transport, baseUrl + "/dav", "user", "pass");
+        String sha256 = sha256("jpeg");
+        stored.put("/dav/IMG 1-" + sha256.substring(0, 16) + ".jpg", "JPEG".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(backend.lookup("IMG 1.jpg", 4, sha256));
+    }
+
+    @Test
+    public void webDavDoesNotOverwriteExistingFile() {
+        UploadBackend backend = new WebDavBackend(transport, baseUrl + "/dav", "user", "pass");
+        assertTrue(backend.upload(content("jpeg"), "IMG 1.jpg", "image/jpeg").isSuccessful());
+
+        UploadResult result = backend.upload(content("JPEG"), "IMG 1.jpg", "image/jpeg");
+
+        assertEquals(412, result.getResponseCode());
+        assertEquals(RetryPolicy.FailureKind.PERMANENT, RetryPolicy.classify(result));
+        assertEquals("jpeg", new String(stored.get("/dav/IMG 1.jpg"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void s3SmallFileUsesSinglePut() throws IOException {
+        UploadBackend backend = new S3Backend(transport, baseUrl, "bucket", signer(), 2, 4, 16);
+        String sha256 = sha256("0123456789");
+        String key = "small-" + sha256.substring(0, 16) + ".jpg";
+        UploadResult result = backend.upload(content("0123456789"), "small.jpg", "image/jpeg", sha256);
+
+        assertTrue(result.isSuccessful());
+        assertEquals(key, result.getResponse().getRemoteId());
+        assertEquals("0123456789", new String(stored.get("/bucket/" + key), StandardCharsets.UTF_8));
+        assertEquals(sha256, storedSha256.get("/bucket/" + key));
+        assertNotNull(backend.lookup("small.jpg", 10, sha256));
+    }
+
+    @Test
+    public void s3LookupRequiresStoredDigest() throws IOException {
+        UploadBackend backend = new S3Backend(transport, baseUrl, "bucket", signer(), 2, 4, 16);
+        String sha256 = sha256("0123456789");
+        // 同名同大小但不是本应用上传的对象
+        stored.put("/bucket/small-" + sha256.substring(0, 16) + ".jpg", "9876543210".getBytes(StandardCharsets.UTF_8));
+
+        assertNull(backend.lookup("small.jpg", 10, sha256));
+    }
+
+    @Test
+    public void s3DoesNotOverwriteExistingObject() {
+        UploadBackend backend = new S3Backend(transport, baseUrl, "bucket", signer(), 2, 4, 16);
+        assertTrue(backend.upload(content("0123456789"), "small.jpg", "image/jpeg").isSuccessful());
+
+        UploadResult result = backend.upload(content("9876543210"), "small.jpg", "image/jpeg");
+
+        assertEquals(412, result.getResponseCode());
+        assertEquals(RetryPolicy.FailureKind.PERMANENT, RetryPolicy.classify(result));
+        assertEquals("0123456789", new String(stored.get("/bucket/small.jpg"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void s3LargeFileUploadsPartsInParallel() {
+        byte[] data = new byte[64 * 10 + 3];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        UploadBackend backend = new S3Backend(transport, baseUrl, "bucket", signer(), 3, 64, 128);
+        UploadResult result = backend.upload(MultipartBody.Content.of(new ByteArrayInputStream(data), data.length),
+                "big.mp4", "video/mp4");
+
+        assertTrue(result.toString(), result.isSuccessful());
+        assertEquals(11, parts.size());
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        for (int i = 1; i <= parts.size(); i++) {
+            joined.write(parts.get(i), 0, parts.get(i).length);
+        }
+        assertTrue(Arrays.equals(data, joined.toByteArray()));
+        assertTrue(completeBody.contains("<PartNumber>11</PartNumber><ETag>&quot;etag-11&quot;</ETag>"));
+        assertTrue("max in flight " + maxInFlight.get(), maxInFlight.get() > 1 && maxInFlight.get() <= 3);
+    }
+
+    @Test
+    public void s3AbortsMultipartUploadWhenPartFails() {
+        failPart = 2;
+        UploadBackend backend = new S3Backend(transport, baseUrl, "bucket", signer(), 2, 64, 128);
+        UploadResult result = backend.upload(MultipartBody.Content.of(new ByteArrayInputStream(new byte[400]), -1),
+                "big.mp4", "video/mp4");
+
+        assertEquals(RetryPolicy.FailureKind.PERMANENT, RetryPolicy.classify(result));
+        assertTrue(aborted);
+        assertNull(completeBody);
+    }
+
+    /**
+     * 批量上传：按请求中 image[] 字段的顺序逐个返回结果，文件名为 bad.jpg 的文件被拒绝。
+     */
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        batchRequests.incrementAndGet();
+        String body = new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8);
+        if (batchStatus != 200) {
+            respond(exchange, batchStatus, "");
+            return;
+        }
+        assertTrue(body.contains("name=\"token\""));
+        Matcher matcher = Pattern.compile("name=\"image\\[]\"; filename=\"([^\"]+)\"").matcher(body);
+        StringBuilder response = new StringBuilder("{\"code\":200,\"data\":[");
+        for (int i = 0; matcher.find(); i++) {
+            String name = matcher.group(1);
+            response.append(i > 0 ? "," : "").append(name.equals("bad.jpg")
+                    ? "{\"code\":\"202\",\"message\":\"不支持的文件类型\"}"
+                    : "{\"code\":200,\"url\":\"https://img/" + name + "\",\"del\":\"https://img/del/" + name + "\"}");
+        }
+        respond(exchange, 200, response.append("]}").toString());
+    }
+
+    private void handleDav(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = readAll(exchange.getRequestBody());
+        if (!exchange.getRequestHeaders().getFirst("Authorization").startsWith("Basic ")) {
+            respond(exchange, 401, "");
+        } else if (exchange.getRequestMethod().equals("PUT")) {
+            if (conflicts(exchange, path)) {
+                return;
+            }
+            stored.put(path, body);
+            respond(exchange, 201, "");
+        } else if (exchange.getRequestMethod().equals("HEAD")) {
+            respondHead(exchange, path);
+        } else if (exchange.getRequestMethod().equals("GET")) {
+            byte[] existing = stored.get(path);
+            if (existing == null) {
+                respond(exchange, 404, "");
+            } else {
+                exchange.sendResponseHeaders(200, existing.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(existing);
+                }
+            }
+        }
+    }
+
+    /**
+     * 带 If-None-Match: * 且路径已存在时返回 412。
+     */
+    private boolean conflicts(HttpExchange exchange, String path) throws IOException {
+        if ("*".equals(exchange.getRequestHeaders().getFirst("If-None-Match")) && stored.containsKey(path)) {
+            respond(exchange, 412, "");
+            return true;
+        }
+        return false;
+    }
+
+    private void respondHead(HttpExchange exchange, String path) throws IOException {
+        byte[] existing = stored.get(path);
+        if (existing == null) {
+            exchange.sendResponseHeaders(404, -1);
+        } else {
+            exchange.getResponseHeaders().set("Content-Length", String.valueOf(existing.length));
+            String sha256 = storedSha256.get(path);
+            if (sha256 != null) {
+                exchange.getResponseHeaders().set("x-amz-meta-sha256", sha256);
+            }
+            exchange.sendResponseHeaders(200, -1);
+        }
+        exchange.close();
+    }
+
+    private void handleS3(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+        assertTrue(query, query.contains("X-Amz-Signature="));
+        String method = exchange.getRequestMethod();
+        byte[] body = readAll(exchange.getRequestBody());
+        if (method.equals("POST") && query.startsWith("X-Amz") && query.contains("&uploads=")) {
+            respond(exchange, 200, "<InitiateMultipartUploadResult><UploadId>u-1</UploadId></InitiateMultipartUploadResult>");
+        } else if (method.equals("PUT") && query.contains("partNumber=")) {
+            int partNumber = Integer.parseInt(query.replaceAll(".*partNumber=(\\d+).*", "$1"));
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException ignored) {
+            }
+            inFlight.decrementAndGet();
+            if (partNumber == failPart) {
+                respond(exchange, 400, "<Error><Code>EntityTooSmall</Code></Error>");
+                return;
+            }
+            parts.put(partNumber, body);
+            exchange.getResponseHeaders().set("ETag", "\"etag-" + partNumber + "\"");
+            respond(exchange, 200, "");
+        } else if (method.equals("POST") && query.contains("uploadId=u-1")) {
+            assertEquals("*", exchange.getRequestHeaders().getFirst("If-None-Match"));
+            completeBody = new String(body, StandardCharsets.UTF_8);
+            respond(exchange, 200, "<CompleteMultipartUploadResult><Key>big.mp4</Key></CompleteMultipartUploadResult>");
+        } else if (method.equals("DELETE")) {
+            aborted = true;
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        } else if (method.equals("PUT")) {
+            // 条件写入和元数据都必须参与签名
+            assertTrue(query, query.contains("X-Amz-SignedHeaders=host%3Bif-none-match"));
+            if (conflicts(exchange, path)) {
+                return;
+            }
+            stored.put(path, body);
+            String sha256 = exchange.getRequestHeaders().getFirst("x-amz-meta-sha256");
+            if (sha256 != null) {
+                assertTrue(query, query.contains("%3Bx-amz-meta-sha256"));
+                storedSha256.put(path, sha256);
+            }
+            exchange.getResponseHeaders().set("ETag", "\"e\"");
+            respond(exchange, 200, "");
+        } else if (method.equals("HEAD")) {
+            respondHead(exchange, path);
+        } else {
+            respond(exchange, 400, "unexpected " + method + " " + query);
+        }
+    }
+
+    private static S3Signer signer() {
+        return new S3Signer("us-east-1", "access", "secret");
+    }
+
+    private static String sha256(String text) throws IOException {
+        return ContentHasher.sha256(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MultipartBody.Content content(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return MultipartBody.Content.of(new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length == 0) {
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
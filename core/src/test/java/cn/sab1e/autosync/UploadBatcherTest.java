@@ -0,0 +1,41 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class UploadBatcherTest {
+
+    @Test
+    public void groupsSmallFilesUpToLimits() {
+        // 负数表示不适合合并的大文件
+        List<Long> sizes = Arrays.asList(10L, 20L, 30L, 40L, -1L, 50L, 60L, 5L);
+        UploadBatcher batcher = new UploadBatcher(3, 100);
+
+        List<List<Long>> batches = new ArrayList<>();
+        for (List<Long> batch : batcher.batches(sizes, Long::longValue, size -> size >= 0)) {
+            batches.add(batch);
+        }
+
+        assertEquals(Arrays.asList(
+                Arrays.asList(10L, 20L, 30L),
+                Arrays.asList(40L),
+                Arrays.asList(-1L),
+                Arrays.asList(50L),
+                Arrays.asList(60L, 5L)), batches);
+    }
+
+    @Test
+    public void singleFileLimitDisablesBatching() {
+        int count = 0;
+        for (List<Integer> batch : new UploadBatcher(1, 100).batches(Arrays.asList(1, 2, 3), i -> 1, i -> true)) {
+            assertEquals(1, batch.size());
+            count++;
+        }
+        assertEquals(3, count);
+    }
+}
@@ -0,0 +1,162 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+/**
+ * 上传流水线的负载测试：用本地 MockWebServer 模拟图床，注入响应延迟和服务器错误，
+ * 让几千张合成图片经过 UploadPipeline、LskyBackend 和真实的传输层，输出每种配置的吞吐量、延迟分位数和堆内存峰值。
+ * 耗时较长，默认跳过：./gradlew :core:test -PloadTest [-PloadTestFiles=5000] --tests '*UploadLoadTest'
+ */
+public class UploadLoadTest {
+
+    private static final int DEFAULT_FILES = 2000;
+    private static final int MIN_SIZE = 32 * 1024;
+    private static final int MAX_SIZE = 256 * 1024;
+    private static final String RESPONSE = "{\"status\":true,\"data\":{\"key\":\"k\",\"links\":{\"url\":\"https://x/a.jpg\"}}}";
+
+    private MockWebServer server;
+    private volatile long latencyMillis;
+    private volatile double failureRate;
+    private byte[] image;
+    private int files;
+
+    @Before
+    public void setUp() throws IOException {
+        Assume.assumeTrue("负载测试需要 -PloadTest", Boolean.getBoolean("autosync.loadTest"));
+        files = Integer.getInteger("autosync.loadTest.files", DEFAULT_FILES);
+        image = new byte[MAX_SIZE];
+        new Random(1).nextBytes(image);
+        // JPEG 文件头，让内容看起来像真的照片
+        image[0] = (byte) 0xFF;
+        image[1] = (byte) 0xD8;
+        image[2] = (byte) 0xFF;
+
+        server = new MockWebServer();
+        // 不保留请求体，否则几千个请求会把测试自己的堆撑满
+        server.setBodyLimit(0);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                MockResponse response = ThreadLocalRandom.current().nextDouble() < failureRate
+                        ? new MockResponse().setResponseCode(500).setBody("{\"status\":false}")
+                        : new MockResponse().setBody(RESPONSE);
+                return response.setHeadersDelay(latencyMillis, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void reportsThroughputLatencyAndHeapPerConfiguration() throws Exception {
+        List<String> report = new ArrayList<>();
+        report.add(run(UploadTransport.TYPE_OKHTTP, 1, 0, 0));
+        report.add(run(UploadTransport.TYPE_OKHTTP, 4, 0, 0));
+        report.add(run(UploadTransport.TYPE_OKHTTP, 4, 20, 0));
+        report.add(run(UploadTransport.TYPE_OKHTTP, 8, 20, 0.05));
+        report.add(run(UploadTransport.TYPE_URL_CONNECTION, 4, 20, 0.05));
+
+        System.out.println("上传负载测试，" + files + " 个文件，" + MIN_SIZE / 1024 + "~" + MAX_SIZE / 1024 + " KB");
+        for (String line : report) {
+            System.out.println(line);
+        }
+    }
+
+    private String run(String transportType, int concurrency, long latency, double failures) throws Exception {
+        latencyMillis = latency;
+        failureRate = failures;
+        List<Integer> items = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            items.add(i);
+        }
+        LatencyHistogram latencies = new LatencyHistogram();
+        AtomicLong bytes = new AtomicLong();
+
+        System.gc();
+        for (MemoryPoolMXBean pool : heapPools()) {
+            pool.resetPeakUsage();
+        }
+        long startNanos = System.nanoTime();
+        UploadPipeline.Report<Integer> result;
+        try (UploadTransport transport = UploadTransport.create(transportType)) {
+            UploadBackend backend = new LskyBackend(transport, server.url("/").toString(), "token");
+            result = new UploadPipeline<Integer>(concurrency, concurrency * 2).run(items, index -> {
+                int size = sizeOf(index);
+                long uploadStart = System.nanoTime();
+                UploadResult uploadResult = backend.upload(
+                        MultipartBody.Content.of(new ByteArrayInputStream(image, 0, size), size),
+                        "IMG_" + index + ".jpg", "image/jpeg");
+                latencies.record((System.nanoTime() - uploadStart) / 1_000_000);
+                if (uploadResult.isSuccessful()) {
+                    bytes.addAndGet(size);
+                }
+                return uploadResult.isSuccessful();
+            }, (item, success, completed, total) -> {
+            });
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools()) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        int failed = result.getFailed().size();
+        assertEquals(files, result.getSucceeded().size() + failed);
+        if (failures == 0) {
+            assertEquals(0, failed);
+        } else {
+            assertTrue("failed " + failed, failed <= files * failures * 3);
+        }
+        return String.format(Locale.ROOT, "%-14s x%d %3dms %4.0f%% 错误 | %7.1f 个/s %6.1f MB/s | p50=%dms p99=%dms | 失败 %d | 堆峰值 %d MB",
+                transportType, concurrency, latency, failures * 100, files * 1000.0 / elapsedMillis,
+                bytes.get() / 1024.0 / 1024 * 1000 / elapsedMillis, latencies.percentile(0.5), latencies.percentile(0.99),
+                failed, peakHeap / 1024 / 1024);
+    }
+
+    /**
+     * 文件大小在 MIN_SIZE 到 MAX_SIZE 之间按序号固定分布，每种配置上传的数据完全相同。
+     */
+    private static int sizeOf(int index) {
+        return MIN_SIZE + (int) ((index * 2654435761L) % (MAX_SIZE - MIN_SIZE));
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+}
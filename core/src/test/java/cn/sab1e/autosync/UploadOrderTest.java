@@ -0,0 +1,68 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class UploadOrderTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long MINUTE = 60 * 1000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+
+    @Test
+    public void newestFirstPutsJustTakenPhotoAhead() {
+        assertEquals(Arrays.asList("new", "mid", "old"), drain(UploadOrder.NEWEST_FIRST,
+                entry("old", 100, NOW - 30 * DAY, NOW),
+                entry("new", 100, NOW - MINUTE, NOW),
+                entry("mid", 100, NOW - DAY, NOW)));
+    }
+
+    @Test
+    public void smallestFirstLeavesUnknownSizeLast() {
+        assertEquals(Arrays.asList("small", "large", "unknown"), drain(UploadOrder.SMALLEST_FIRST,
+                entry("unknown", -1, NOW, NOW),
+                entry("large", 5_000_000, NOW, NOW),
+                entry("small", 10_000, NOW, NOW)));
+    }
+
+    @Test
+    public void deadlinePrefersFreshFilesButNotForever() {
+        assertEquals(Arrays.asList("fresh", "backlog-early", "backlog-small", "backlog-large", "fresh-late"),
+                drain(UploadOrder.DEADLINE,
+                        entry("backlog-large", 9_000_000, NOW - 30 * DAY, NOW),
+                        entry("backlog-small", 10_000, NOW - 30 * DAY, NOW),
+                        entry("fresh", 3_000_000, NOW - MINUTE, NOW),
+                        // 扫描了半小时才发现的新文件，排在此前已经到期的积压之后
+                        entry("fresh-late", 3_000_000, NOW + 29 * MINUTE, NOW + 30 * MINUTE),
+                        entry("backlog-early", 9_000_000, NOW - 30 * DAY, NOW - 10 * MINUTE)));
+    }
+
+    @Test
+    public void unknownOrderFallsBackToDeadline() {
+        assertEquals(UploadOrder.DEADLINE, UploadOrder.normalize(null));
+        assertEquals(UploadOrder.DEADLINE, UploadOrder.normalize("random"));
+        assertNull(UploadOrder.comparator(UploadOrder.FIFO));
+    }
+
+    private static List<String> drain(String order, SyncEntry... entries) {
+        FairUploadQueue<SyncEntry> queue = new FairUploadQueue<>(UploadOrder.comparator(order));
+        for (SyncEntry entry : entries) {
+            queue.add("camera", entry);
+        }
+        List<String> names = new ArrayList<>();
+        for (SyncEntry entry : queue) {
+            names.add(entry.getName());
+        }
+        return names;
+    }
+
+    private static SyncEntry entry(String name, long size, long lastModified, long discoveredAt) {
+        return new SyncEntry("tree", name, null, name, "image/jpeg", size, lastModified, discoveredAt);
+    }
+}
@@ -0,0 +1,45 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UploadPipelineTest {
+
+    @Test
+    public void quickTasksAreNeverDropped() throws InterruptedException {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            items.add(i);
+        }
+
+        UploadPipeline.Report<Integer> report = new UploadPipeline<Integer>(1, 2).run(items, item -> item % 10 != 0, null);
+
+        assertEquals(4500, report.getSucceeded().size());
+        assertEquals(500, report.getFailed().size());
+    }
+
+    @Test
+    public void cancelStopsDispatching() throws InterruptedException {
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items.add(i);
+        }
+        UploadPipeline<Integer> pipeline = new UploadPipeline<>(2, 4);
+
+        UploadPipeline.Report<Integer> report = pipeline.run(items, item -> {
+            if (item == 10) {
+                pipeline.cancel();
+            }
+            return true;
+        }, null);
+
+        assertTrue(pipeline.isCancelled());
+        int finished = report.getSucceeded().size() + report.getFailed().size();
+        assertTrue("finished " + finished, finished < 20);
+    }
+}
@@ -0,0 +1,66 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+public class UploadResponseTest {
+
+    @Test
+    public void parsesEasyImageResponseWithWhitespace() throws IOException {
+        UploadResponse response = UploadResponse.parse(new StringReader("{\n  \"result\": \"success\",\n  \"code\" : 200,\n"
+                + "  \"url\": \"https:\\/\\/img.example.com\\/i\\/a.jpg\",\n  \"srcName\": \"a\",\n"
+                + "  \"thumb\": \"https://img.example.com/t/a.jpg\",\n  \"del\": \"https://img.example.com/del?k=1\"\n}"));
+
+        assertTrue(response.isSuccessful());
+        assertEquals("https://img.example.com/i/a.jpg", response.getUrl());
+        assertEquals("https://img.example.com/t/a.jpg", response.getThumbUrl());
+        assertEquals("https://img.example.com/del?k=1", response.getDeleteUrl());
+        assertEquals("https://img.example.com/i/a.jpg", response.getRemoteId());
+    }
+
+    @Test
+    public void parsesNestedDataAndStatusFlag() throws IOException {
+        UploadResponse response = UploadResponse.parse(new StringReader("{\"status\":true,\"message\":\"ok\","
+                + "\"data\":{\"key\":\"abc\",\"tags\":[1,2],\"links\":{\"url\":\"https://x/abc.png\",\"thumbnail_url\":null}}}"));
+
+        assertTrue(response.isSuccessful());
+        assertEquals("abc", response.getRemoteId());
+        assertEquals("https://x/abc.png", response.getUrl());
+        assertNull(response.getThumbUrl());
+        assertEquals("ok", response.getMessage());
+    }
+
+    @Test
+    public void reportsServerRejection() throws IOException {
+        UploadResponse response = UploadResponse.parse(new StringReader("{\"code\":\"202\",\"message\":\"不支持的文件类型\"}"));
+
+        assertFalse(response.isSuccessful());
+        assertEquals(202, response.getCode());
+        assertEquals("不支持的文件类型", response.getMessage());
+    }
+
+    @Test
+    public void parsesBatchResultsInOrder() throws IOException {
+        List<UploadResponse> responses = UploadResponse.parseList(new StringReader("{\"code\":200,\"data\":["
+                + "{\"code\":200,\"url\":\"https://x/a.jpg\"},{\"code\":\"202\",\"message\":\"不支持的文件类型\"},null]}"));
+
+        assertEquals(3, responses.size());
+        assertEquals("https://x/a.jpg", responses.get(0).getUrl());
+        assertFalse(responses.get(1).isSuccessful());
+        assertFalse(responses.get(2).isSuccessful());
+        assertEquals(1, UploadResponse.parseList(new StringReader("[{\"status\":true}]")).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonJson() throws IOException {
+        UploadResponse.parse(new StringReader("<html>502 Bad Gateway</html>"));
+    }
+}
@@ -0,0 +1,23 @@
+plugins {
+    application
+}
+
+// 无界面的 JVM 宿主：监视本地目录（NAS、电脑上的相机导入目录）并上传，也用于在 Linux 上做负载测试
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    implementation(project(":core"))
+    testImplementation(libs.junit)
+}
+
+// ./gradlew :desktop:run --args="autosync.properties /srv/photos"，或 :desktop:installDist 后运行 build/install/desktop/bin/desktop
+application {
+    mainClass.set("cn.sab1e.autosync.DesktopRunner")
+}
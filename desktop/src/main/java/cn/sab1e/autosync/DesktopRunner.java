@@ -0,0 +1,171 @@
+package cn.sab1e.autosync;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同步引擎的桌面宿主，在 Linux 服务器、NAS 或电脑上无界面运行：
+ * <pre>
+ * desktop [--once] &lt;设置文件&gt; &lt;目录&gt;...
+ * </pre>
+ * 设置文件为 properties 格式，键与 app 相同（api_url、token、backend 等），另外可以设置
+ * extensions、recursive、rescan_minutes 和 debounce_seconds。与 app 相同，文件上传后删除。
+ * 默认一直运行：目录变化且平静 debounce_seconds 秒后同步一次，没有变化时每 rescan_minutes 分钟扫描一次；
+ * --once 只同步一次，全部成功时退出码为 0，用于脚本和负载测试。
+ * 上传日志保存在设置文件旁的 .journal 文件中，重启后接着补做删除，退避、隔离和已上传内容的记录都保留。
+ * 不支持上传前压缩（需要 Android 的图片解码器）。
+ */
+public final class DesktopRunner {
+
+    static final String KEY_EXTENSIONS = "extensions";
+    static final String KEY_RECURSIVE = "recursive";
+    static final String KEY_RESCAN_MINUTES = "rescan_minutes";
+    static final String KEY_DEBOUNCE_SECONDS = "debounce_seconds";
+
+    private static final String TAG = "DesktopRunner";
+    private static final int DEFAULT_RESCAN_MINUTES = 15;
+    private static final int DEFAULT_DEBOUNCE_SECONDS = 5;
+    // 等待正在进行的上传响应取消、写完日志的时间
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    private final SyncConfig config;
+    private final List<SyncSource> sources;
+    private final SourceScanner scanner;
+    private final DocumentStore store = new FileSystemStore();
+    private final UploadJournal journal;
+    private volatile SyncEngine engine;
+    private volatile boolean stopping;
+    // 主线程已经结束同步、正在退出，停止时不必再等它
+    private volatile boolean finished;
+
+    DesktopRunner(SyncConfig config, List<SyncSource> sources, UploadJournal journal, long settleMillis) {
+        this.config = config;
+        this.journal = journal;
+        this.sources = sources;
+        this.scanner = new FileSystemScanner(settleMillis);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        boolean once = false;
+        List<String> positional = new ArrayList<>();
+        for (String arg : args) {
+            if ("--once".equals(arg)) {
+                once = true;
+            } else {
+                positional.add(arg);
+            }
+        }
+        if (positional.size() < 2) {
+            System.err.println("用法: desktop [--once] <设置文件> <目录>...");
+            System.exit(2);
+        }
+
+        Path settingsFile = Paths.get(positional.get(0)).toAbsolutePath();
+        PropertiesSettings settings = PropertiesSettings.load(settingsFile);
+        SyncConfig config = SyncConfig.from(settings);
+        if (config.isTransformEnabled()) {
+            SyncLog.e(TAG, "desktop 不支持上传前压缩，将上传原文件");
+        }
+        boolean recursive = settings.getBoolean(KEY_RECURSIVE, true);
+        List<Path> roots = new ArrayList<>();
+        List<SyncSource> sources = new ArrayList<>();
+        for (String directory : positional.subList(1, positional.size())) {
+            Path root = Paths.get(directory).toAbsolutePath().normalize();
+            if (!Files.isDirectory(root)) {
+                System.err.println("目录不存在: " + root);
+                System.exit(2);
+            }
+            roots.add(root);
+            sources.add(new SyncSource(root.toString(), root.toString(), SyncSource.MIN_INTERVAL_MINUTES,
+                    SyncSource.parseExtensions(settings.getString(KEY_EXTENSIONS, null)), recursive, null));
+        }
+        long rescanMillis = TimeUnit.MINUTES.toMillis(positive(settings, KEY_RESCAN_MINUTES, DEFAULT_RESCAN_MINUTES));
+        long debounceMillis = TimeUnit.SECONDS.toMillis(positive(settings, KEY_DEBOUNCE_SECONDS, DEFAULT_DEBOUNCE_SECONDS));
+
+        // 同一份设置只允许一个实例同步，锁在进程退出后自动释放
+        try (SyncLock lock = SyncLock.tryAcquire(new File(settingsFile + ".lock"))) {
+            if (lock == null) {
+                System.err.println("已有实例在使用 " + settingsFile);
+                System.exit(1);
+            }
+            FileUploadJournal journal = FileUploadJournal.open(Paths.get(settingsFile + ".journal"));
+            // 平静 debounceMillis 之后才同步，最后修改时间在这之内的文件还在写入
+            DesktopRunner runner = new DesktopRunner(config, sources, journal, debounceMillis);
+            Thread mainThread = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> runner.stop(mainThread)));
+            if (once) {
+                SyncEngine.Report report = runner.runOnce();
+                runner.finished = true;
+                System.exit(report.isAllSucceeded() && report.getTrippedBy() == null ? 0 : 1);
+            }
+            runner.watch(roots, recursive, rescanMillis, debounceMillis);
+        }
+    }
+
+    /**
+     * 先同步一次，然后等目录变化或到了定期扫描时间再同步，直到进程被停止。
+     */
+    void watch(List<Path> roots, boolean recursive, long rescanMillis, long debounceMillis) throws IOException {
+        try (DirectoryWatcher watcher = new DirectoryWatcher(roots, recursive)) {
+            while (!stopping) {
+                runOnce();
+                if (watcher.awaitChange(rescanMillis, debounceMillis)) {
+                    SyncLog.d(TAG, "目录有变化，开始同步");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    SyncEngine.Report runOnce() {
+        SyncEngine engine = new SyncEngine.Builder(journal, store, scanner)
+                .setStopped(() -> stopping)
+                .build();
+        this.engine = engine;
+        engine.recover();
+        // 桌面环境按不计费、接电处理，只有 run_budget_mb 限制单次同步的流量
+        RunBudget budget = config.toPolicy().budget(false, true);
+        SyncEngine.Report report = engine.run(config, sources, budget, System.currentTimeMillis());
+        if (!report.getMetrics().isEmpty()) {
+            SyncLog.i(TAG, "同步指标: " + report.getMetrics());
+        }
+        if (report.getTrippedBy() == RetryPolicy.FailureKind.AUTH) {
+            SyncLog.e(TAG, "认证失败，请检查 Token 或密钥");
+        } else if (report.getTrippedBy() == RetryPolicy.FailureKind.UNREACHABLE) {
+            SyncLog.e(TAG, "服务器不可达，下次扫描时重试");
+        }
+        return report;
+    }
+
+    /**
+     * 进程收到停止信号时调用：中断正在进行的上传，等主线程把日志写完。
+     */
+    private void stop(Thread mainThread) {
+        if (finished) {
+            return;
+        }
+        stopping = true;
+        SyncEngine current = engine;
+        if (current != null) {
+            current.cancel();
+        }
+        mainThread.interrupt();
+        try {
+            mainThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int positive(PropertiesSettings settings, String key, int defaultValue) {
+        int value = SyncConfig.parseInt(settings.getString(key, ""), defaultValue);
+        return value > 0 ? value : defaultValue;
+    }
+}
@@ -0,0 +1,109 @@
+package cn.sab1e.autosync;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用 WatchService 监视同步目录，recursive 时新建的子目录自动加入监视。
+ * 只关心新建和修改：上传后删除本地文件产生的事件不应再触发同步。
+ * 复制一批文件会连续产生事件，{@link #awaitChange} 等到事件停止一段时间后才返回，一批文件只触发一次同步。
+ * 事件只用来决定何时同步，需要上传哪些文件仍由完整扫描决定，所以事件丢失（OVERFLOW）也不影响结果。
+ */
+public class DirectoryWatcher implements Closeable {
+
+    private static final String TAG = "DirectoryWatcher";
+
+    private final WatchService watchService;
+    private final boolean recursive;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    public DirectoryWatcher(List<Path> roots, boolean recursive) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.recursive = recursive;
+        for (Path root : roots) {
+            register(root);
+        }
+    }
+
+    /**
+     * 等待目录变化，最多等 timeoutMillis。有变化时继续等到连续 quietMillis 没有新事件，再返回 true；超时返回 false。
+     */
+    public boolean awaitChange(long timeoutMillis, long quietMillis) throws InterruptedException {
+        WatchKey key = watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (key == null) {
+            return false;
+        }
+        while (key != null) {
+            handle(key);
+            key = watchService.poll(quietMillis, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private void handle(WatchKey key) {
+        Path directory = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null || !recursive || event.kind() != ENTRY_CREATE) {
+                continue;
+            }
+            Path child = directory.resolve((Path) event.context());
+            if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    register(child);
+                } catch (IOException e) {
+                    SyncLog.e(TAG, "无法监视目录: " + child, e);
+                }
+            }
+        }
+        if (!key.reset()) {
+            // 目录已被删除
+            keys.remove(key);
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        if (!recursive) {
+            keys.put(directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), directory);
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                // 与 FileSystemScanner 一致，跳过隐藏目录
+                if (!dir.equals(directory) && dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                keys.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                SyncLog.e(TAG, "无法监视目录: " + file, e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -0,0 +1,90 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 遍历本地文件系统中的同步目录，treeUri 是目录的绝对路径。
+ * documentId 是相对于同步目录、以 / 分隔的路径，uri 是文件的绝对路径；类型按扩展名推断，未知时为 null。
+ * 以 . 开头的文件和目录（同步软件的临时文件、系统元数据）和符号链接不处理。
+ */
+public class FileSystemScanner implements SourceScanner {
+
+    private static final String TAG = "FileSystemScanner";
+
+    private final long settleMillis;
+
+    public FileSystemScanner() {
+        this(0);
+    }
+
+    /**
+     * @param settleMillis 修改时间在这段时间之内的文件可能还在写入，本次跳过。上传后会删除本地文件，不能上传写了一半的文件
+     */
+    public FileSystemScanner(long settleMillis) {
+        this.settleMillis = settleMillis;
+    }
+
+    @Override
+    public boolean walk(String treeUri, boolean recursive, BooleanSupplier stopped, Sink sink) throws InterruptedException {
+        Path root = Paths.get(treeUri);
+        if (!Files.isDirectory(root)) {
+            SyncLog.e(TAG, "同步目录不存在: " + treeUri);
+            return false;
+        }
+        return walk(treeUri, root, root, recursive, stopped, sink);
+    }
+
+    private boolean walk(String treeUri, Path root, Path directory, boolean recursive, BooleanSupplier stopped,
+                         Sink sink) throws InterruptedException {
+        long now = System.currentTimeMillis();
+        List<SyncEntry> entries = new ArrayList<>();
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.startsWith(".")) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                if (attributes.isDirectory()) {
+                    children.add(path);
+                } else if (attributes.isRegularFile()
+                        && now - attributes.lastModifiedTime().toMillis() >= settleMillis) {
+                    String documentId = root.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+                    entries.add(new SyncEntry(treeUri, documentId, path.toAbsolutePath().toString(), name,
+                            MimeSniffer.fromExtension(name), attributes.size(), attributes.lastModifiedTime().toMillis(), now));
+                }
+            }
+        } catch (IOException e) {
+            SyncLog.e(TAG, "无法读取目录: " + directory, e);
+            return false;
+        }
+        if (!entries.isEmpty()) {
+            sink.accept(entries);
+        }
+
+        boolean complete = true;
+        if (recursive) {
+            for (Path child : children) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (stopped.getAsBoolean()) {
+                    return false;
+                }
+                complete &= walk(treeUri, root, child, true, stopped, sink);
+            }
+        }
+        return complete && !stopped.getAsBoolean();
+    }
+}
@@ -0,0 +1,37 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 直接读取和删除本地文件系统中的文件，与 {@link FileSystemScanner} 配合使用。
+ */
+public class FileSystemStore implements DocumentStore {
+
+    private static final String TAG = "FileSystemStore";
+
+    @Override
+    public FileChannel openChannel(SyncEntry entry) throws IOException {
+        return FileChannel.open(Paths.get(entry.getUri()), StandardOpenOption.READ);
+    }
+
+    @Override
+    public InputStream openStream(SyncEntry entry) throws IOException {
+        return Files.newInputStream(Paths.get(entry.getUri()));
+    }
+
+    @Override
+    public boolean delete(String treeUri, String documentId) {
+        try {
+            Files.deleteIfExists(Paths.get(treeUri).resolve(documentId));
+            return true;
+        } catch (IOException e) {
+            SyncLog.e(TAG, "删除失败: " + documentId, e);
+            return false;
+        }
+    }
+}
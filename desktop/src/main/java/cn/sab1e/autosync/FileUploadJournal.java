@@ -0,0 +1,190 @@
+package cn.sab1e.autosync;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 保存在本地文件中的上传日志，desktop 重启后仍能补做删除、遵守退避和隔离、识别已上传过的内容。
+ * 文件是追加写入的文本，每行一条记录，同一文件的记录以最后一行为准；打开时重放并重写成快照。
+ * 服务器已确认（UPLOADED）的记录在删除本地文件之前强制落盘，其余记录只写到操作系统，
+ * 断电时最多丢失最近的退避状态，不会丢失“已上传”这一事实。
+ * 写入失败只记日志：最坏情况是重启后重新上传，不会删除未上传的文件。
+ */
+public class FileUploadJournal extends MemoryUploadJournal implements Closeable {
+
+    private static final String TAG = "FileUploadJournal";
+    private static final String ROW = "R";
+    private static final String REMOVED = "X";
+    private static final String CONTENT = "C";
+    // 打开后追加的记录超过这么多行时，在下次完整扫描后重写快照
+    private static final int COMPACT_THRESHOLD = 10_000;
+
+    private final Path file;
+    private FileChannel channel;
+    private int appended;
+
+    private FileUploadJournal(Path file) {
+        this.file = file;
+    }
+
+    public static FileUploadJournal open(Path file) throws IOException {
+        FileUploadJournal journal = new FileUploadJournal(file);
+        journal.load();
+        journal.compact();
+        return journal;
+    }
+
+    @Override
+    public synchronized void prune(String treeUri, Set<String> present) {
+        super.prune(treeUri, present);
+        if (appended > COMPACT_THRESHOLD) {
+            try {
+                compact();
+            } catch (IOException e) {
+                SyncLog.e(TAG, "重写上传日志失败", e);
+            }
+        }
+    }
+
+    @Override
+    protected void onRowChanged(Row row) {
+        append(String.join("\t", ROW, encode(row.treeUri), encode(row.documentId), String.valueOf(row.size),
+                String.valueOf(row.lastModified), String.valueOf(row.state), String.valueOf(row.attempts),
+                String.valueOf(row.nextAttemptAt), encode(row.remoteId), encode(row.uploadSession)),
+                row.state == STATE_UPLOADED);
+    }
+
+    @Override
+    protected void onRowRemoved(Row row) {
+        append(String.join("\t", REMOVED, encode(row.treeUri), encode(row.documentId)), false);
+    }
+
+    @Override
+    protected void onContentRecorded(String sha256, long size) {
+        append(String.join("\t", CONTENT, sha256, String.valueOf(size)), false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void load() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    apply(line.split("\t", -1));
+                } catch (RuntimeException e) {
+                    // 进程在写入一行的中途被杀死时最后一行不完整，忽略
+                    SyncLog.e(TAG, "忽略无法解析的记录: " + line);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // 第一次运行
+        }
+    }
+
+    private void apply(String[] fields) {
+        switch (fields[0]) {
+            case ROW:
+                Row row = new Row(decode(fields[1]), decode(fields[2]), Long.parseLong(fields[3]), Long.parseLong(fields[4]));
+                row.state = Integer.parseInt(fields[5]);
+                row.attempts = Integer.parseInt(fields[6]);
+                row.nextAttemptAt = Long.parseLong(fields[7]);
+                row.remoteId = decode(fields[8]);
+                row.uploadSession = decode(fields[9]);
+                restoreRow(row);
+                break;
+            case REMOVED:
+                restoreRemoved(decode(fields[1]), decode(fields[2]));
+                break;
+            case CONTENT:
+                restoreContent(fields[1], Long.parseLong(fields[2]));
+                break;
+            default:
+                throw new IllegalArgumentException("unknown record " + fields[0]);
+        }
+    }
+
+    /**
+     * 把当前状态写成快照：先写临时文件并落盘，再原子替换，任何时刻被杀死都至少留下完整的旧文件或新文件。
+     */
+    private synchronized void compact() throws IOException {
+        close();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel = out;
+            for (Row row : snapshotRows()) {
+                onRowChanged(row);
+            }
+            for (Map.Entry<String, Long> content : snapshotContents().entrySet()) {
+                onContentRecorded(content.getKey(), content.getValue());
+            }
+            out.force(true);
+        } finally {
+            channel = null;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        appended = 0;
+    }
+
+    private void append(String line, boolean durable) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (durable) {
+                channel.force(false);
+            }
+            appended++;
+        } catch (IOException e) {
+            SyncLog.e(TAG, "写入上传日志失败", e);
+        }
+    }
+
+    private static String encode(String value) {
+        if (value == null) {
+            return "";
+        }
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String decode(String value) {
+        if (value.isEmpty()) {
+            return null;
+        }
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
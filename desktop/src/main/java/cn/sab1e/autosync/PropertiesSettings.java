@@ -0,0 +1,44 @@
+package cn.sab1e.autosync;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * 从 properties 文件读取设置，键与 app 的 SharedPreferences 相同（见 {@link SyncConfig} 的 KEY_ 常量）。
+ * 文件按 UTF-8 读取，只读。
+ */
+public class PropertiesSettings implements SyncSettings {
+
+    private final Properties properties;
+
+    public PropertiesSettings(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static PropertiesSettings load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(file);
+             Reader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new PropertiesSettings(properties);
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        String value = properties.getProperty(key);
+        return value != null ? value.trim() : defaultValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = properties.getProperty(key);
+        return value != null ? Boolean.parseBoolean(value.trim()) : defaultValue;
+    }
+}
@@ -0,0 +1,76 @@
+package cn.sab1e.autosync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class FileUploadJournalTest {
+
+    private static final String TREE = "/srv/photos";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void stateSurvivesRestart() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("autosync.journal");
+        SyncEntry uploaded = entry("a b.jpg");
+        SyncEntry failed = entry("album/c.jpg");
+        try (FileUploadJournal journal = FileUploadJournal.open(file)) {
+            journal.merge(TREE, Arrays.asList(uploaded, failed));
+            journal.markUploaded(uploaded, UploadResponse.of(200, "https://img.example/a.jpg", "42"));
+            journal.markFailed(TREE, failed.getDocumentId(), UploadJournal.STATE_FAILED, 1,
+                    System.currentTimeMillis() + 60_000, "500");
+            journal.recordContent("abc", 1024);
+        }
+
+        try (FileUploadJournal journal = FileUploadJournal.open(file)) {
+            List<UploadJournal.JournalEntry> undeleted = journal.recover();
+            assertEquals(1, undeleted.size());
+            assertEquals("a b.jpg", undeleted.get(0).getDocumentId());
+            assertEquals("42", undeleted.get(0).getRemoteId());
+            // 还在退避中
+            assertTrue(journal.merge(TREE, Collections.singletonList(failed)).isEmpty());
+            assertEquals(1, journal.getAttempts(TREE, failed.getDocumentId()));
+            assertTrue(journal.hasContent("abc"));
+            assertTrue(journal.hasContentOfSize(1024));
+        }
+    }
+
+    @Test
+    public void prunedRowsStayRemovedAndTornLineIsIgnored() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("autosync.journal");
+        SyncEntry kept = entry("a.jpg");
+        SyncEntry gone = entry("b.jpg");
+        try (FileUploadJournal journal = FileUploadJournal.open(file)) {
+            journal.merge(TREE, Arrays.asList(kept, gone));
+            journal.setState(TREE, kept.getDocumentId(), UploadJournal.STATE_QUARANTINED);
+            journal.prune(TREE, Collections.singleton(kept.getDocumentId()));
+        }
+        // 进程在写入一行的中途被杀死
+        Files.write(file, "R\t%2Fsrv".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (FileUploadJournal journal = FileUploadJournal.open(file)) {
+            assertEquals(UploadJournal.STATE_QUARANTINED, journal.getState(TREE, kept.getDocumentId()));
+            assertEquals(-1, journal.getState(TREE, gone.getDocumentId()));
+            assertFalse(journal.merge(TREE, Collections.singletonList(gone)).isEmpty());
+        }
+    }
+
+    private static SyncEntry entry(String documentId) {
+        return new SyncEntry(TREE, documentId, TREE + "/" + documentId, documentId, "image/jpeg", 1024, 1000, 2000);
+    }
+}
@@ -0,0 +1,43 @@
+plugins {
+    alias(libs.plugins.androidTest)
+}
+
+android {
+    namespace = "cn.sab1e.autosync.macrobenchmark"
+    compileSdk = 34
+
+    defaultConfig {
+        minSdk = 30
+        targetSdk = 34
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_1_8
+        targetCompatibility = JavaVersion.VERSION_1_8
+    }
+
+    // 与 app 的 benchmark 构建类型对应：release 配置、debug 签名
+    buildTypes {
+        create("benchmark") {
+            isDebuggable = true
+            signingConfig = getByName("debug").signingConfig
+            matchingFallbacks += listOf("release")
+        }
+    }
+
+    targetProjectPath = ":app"
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.benchmark.macro.junit4)
+}
+
+// 只保留 benchmark 变体：./gradlew :macrobenchmark:connectedBenchmarkAndroidTest
+androidComponents {
+    beforeVariants(selector().all()) {
+        it.enable = it.buildType == "benchmark"
+    }
+}
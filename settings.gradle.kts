@@ -21,4 +21,8 @@ dependencyResolutionManagement {
 
 rootProject.name = "AutoSync"
 include(":app")
+include(":core")
+include(":desktop")
+include(":benchmark")
+include(":macrobenchmark")
  
\ No newline at end of file